@@ -0,0 +1,97 @@
+package com.ociweb.iot.hardware.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ociweb.gl.impl.schema.TrafficAckSchema;
+import com.ociweb.gl.impl.schema.TrafficReleaseSchema;
+import com.ociweb.iot.hardware.impl.test.BenchmarkHardware;
+import com.ociweb.iot.hardware.impl.test.TestSerial;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Chunks pumped by the SerialDataWriterStage into TestSerial, the port itself costs nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerialDataWriterStageBenchmark {
+
+	private static final int CHUNKS = 8; //written per release
+
+	@Param({"16", "256"})
+	public int chunkSize;
+
+	private SerialDataWriterStage stage;
+	private TestSerial serial;
+	private Pipe<SerialOutputSchema> outputPipe;
+	private Pipe<TrafficReleaseSchema> goPipe;
+	private Pipe<TrafficAckSchema> ackPipe;
+	private byte[] chunk;
+	private final byte[] received = new byte[4096];
+
+	@Setup
+	public void setup() {
+		GraphManager gm = new GraphManager();
+		BenchmarkHardware hardware = new BenchmarkHardware(gm);
+
+		outputPipe = SerialOutputSchema.instance.newPipe(CHUNKS*2, chunkSize);
+		goPipe = TrafficReleaseSchema.instance.newPipe(16, 0);
+		ackPipe = TrafficAckSchema.instance.newPipe(16, 0);
+		outputPipe.initBuffers();
+		goPipe.initBuffers();
+		ackPipe.initBuffers();
+
+		serial = new TestSerial();
+		chunk = new byte[chunkSize];
+		for (int i = 0; i < chunkSize; i++) {
+			chunk[i] = (byte)i;
+		}
+
+		stage = new SerialDataWriterStage(gm, new Pipe[]{outputPipe}, new Pipe[]{goPipe}, new Pipe[]{ackPipe}, hardware, serial);
+		stage.startup();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNKS)
+	public int pump() {
+		int i = CHUNKS;
+		while (--i>=0) {
+			PipeWriter.presumeWriteFragment(outputPipe, SerialOutputSchema.MSG_CHUNKEDSTREAM_1);
+			PipeWriter.writeBytes(outputPipe, SerialOutputSchema.MSG_CHUNKEDSTREAM_1_FIELD_BYTEARRAY_2, chunk);
+			PipeWriter.publishWrites(outputPipe);
+		}
+		PipeWriter.presumeWriteFragment(goPipe, TrafficReleaseSchema.MSG_RELEASE_20);
+		PipeWriter.writeInt(goPipe, TrafficReleaseSchema.MSG_RELEASE_20_FIELD_COUNT_22, CHUNKS);
+		PipeWriter.publishWrites(goPipe);
+
+		stage.run();
+		BenchmarkHardware.drain(ackPipe);
+		
+		//the echo pipe of TestSerial stands in for the port and must be emptied
+		int total = 0;
+		int count;
+		while ((count = serial.readInto(received, 0, received.length, received, 0, 0)) > 0) {
+			total += count;
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.ociweb.iot.hardware.impl.test;
+
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeReader;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Test hardware for benchmarks. The clock can be moved forward so a polling stage
+ * runs its next block at once instead of sleeping until it is due.
+ */
+public class BenchmarkHardware extends TestHardware {
+
+	private long skippedNS;
+	
+	public BenchmarkHardware(GraphManager gm) {
+		super(gm, new String[0]);
+		isInUnitTest = true;
+	}
+
+	public void skipAhead(long durationNS) {
+		skippedNS += durationNS;
+	}
+	
+	@Override
+	public long nanoTime() {
+		return System.nanoTime() + skippedNS;
+	}
+	
+	/**
+	 * Releases every fragment on the pipe, stands in for the stage which would consume it.
+	 * @return count of fragments released
+	 */
+	public static int drain(Pipe<?> pipe) {
+		int count = 0;
+		while (PipeReader.tryReadFragment(pipe)) {
+			PipeReader.releaseReadLock(pipe);
+			count++;
+		}
+		return count;
+	}
+	
+}
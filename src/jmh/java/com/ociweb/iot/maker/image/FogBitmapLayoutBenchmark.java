@@ -0,0 +1,90 @@
+package com.ociweb.iot.maker.image;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every pixel of a bitmap written then read through the FogBitmapLayout accessors.
+ * The bitmap is square since address() steps x by whole rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FogBitmapLayoutBenchmark {
+
+	private static final int WIDTH = 256;
+	private static final int HEIGHT = 256;
+
+	@Param({"gray", "rgb"})
+	public FogColorSpace colorSpace;
+
+	@Param({"8", "12"})
+	public byte componentDepth;
+
+	private FogBitmapLayout layout;
+	private byte[] bmp;
+	private int components;
+
+	@Setup
+	public void setup() {
+		layout = new FogBitmapLayout(colorSpace);
+		layout.setComponentDepth(componentDepth);
+		layout.setWidth(WIDTH);
+		layout.setHeight(HEIGHT);
+		bmp = layout.allocateBitmap();
+		components = colorSpace.getComponentCount();
+	}
+
+	@Benchmark
+	public byte[] setComponent() {
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int z = 0; z < components; z++) {
+					layout.setComponent(bmp, x, y, z, x+y+z);
+				}
+			}
+		}
+		return bmp;
+	}
+
+	@Benchmark
+	public long getComponent() {
+		long sum = 0;
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int z = 0; z < components; z++) {
+					sum += layout.getComponent(bmp, x, y, z);
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double getValue() {
+		double sum = 0;
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int z = 0; z < components; z++) {
+					sum += layout.getValue(bmp, x, y, z);
+				}
+			}
+		}
+		return sum;
+	}
+
+}
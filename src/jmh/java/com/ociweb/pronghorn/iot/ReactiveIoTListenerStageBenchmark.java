@@ -0,0 +1,110 @@
+package com.ociweb.pronghorn.iot;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ociweb.gl.impl.stage.ReactiveManagerPipeConsumer;
+import com.ociweb.iot.grove.simple_analog.SimpleAnalogTwig;
+import com.ociweb.iot.grove.simple_digital.SimpleDigitalTwig;
+import com.ociweb.iot.hardware.impl.test.BenchmarkHardware;
+import com.ociweb.iot.maker.AnalogListener;
+import com.ociweb.iot.maker.DigitalListener;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Dispatch of analog and digital samples from the GroveResponseSchema pipe to a listener.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactiveIoTListenerStageBenchmark {
+
+	private static final int BATCH = 32; //samples dispatched per call, half analog half digital
+
+	private ReactiveIoTListenerStage stage;
+	private Pipe<GroveResponseSchema> responsePipe;
+	private SampleListener listener;
+	private int value;
+
+	private static class SampleListener implements AnalogListener, DigitalListener {
+		Blackhole blackhole;
+
+		@Override
+		public void analogEvent(Port port, long time, long durationMillis, int average, int value) {
+			blackhole.consume(average);
+		}
+
+		@Override
+		public void digitalEvent(Port port, long time, long durationMillis, int value) {
+			blackhole.consume(value);
+		}
+	}
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		GraphManager gm = new GraphManager();
+		BenchmarkHardware hardware = new BenchmarkHardware(gm);
+		hardware.connect(SimpleAnalogTwig.AngleSensor, Port.A0);
+		hardware.connect(SimpleDigitalTwig.Button, Port.D2);
+
+		responsePipe = GroveResponseSchema.instance.newPipe(BATCH*2, 0);
+		responsePipe.initBuffers();
+
+		listener = new SampleListener();
+		listener.blackhole = blackhole;
+		stage = new ReactiveIoTListenerStage(gm, listener, new Pipe[]{responsePipe}, new Pipe[0],
+				                             new ArrayList<ReactiveManagerPipeConsumer>(), hardware, -1);
+		stage.startup();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void consumeResponseMessage() {
+		long now = System.currentTimeMillis();
+		long nowNS = System.nanoTime();
+		int i = BATCH/2;
+		while (--i>=0) {
+			value++;
+			PipeWriter.presumeWriteFragment(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30);
+			PipeWriter.writeInt(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31, 0);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_TIME_11, now);
+			PipeWriter.writeInt(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_VALUE_32, value&0x3FF);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_PREVDURATION_35, 0);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12, nowNS);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13, 0);
+			PipeWriter.publishWrites(responsePipe);
+
+			//alternates so every digital sample is a change which is sent on
+			PipeWriter.presumeWriteFragment(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20);
+			PipeWriter.writeInt(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CONNECTOR_21, 2);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_TIME_11, now);
+			PipeWriter.writeInt(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_VALUE_22, value&1);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_PREVDURATION_25, 0);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12, nowNS);
+			PipeWriter.writeLong(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13, 0);
+			PipeWriter.publishWrites(responsePipe);
+		}
+		stage.consumeResponseMessage(listener, responsePipe);
+	}
+
+}
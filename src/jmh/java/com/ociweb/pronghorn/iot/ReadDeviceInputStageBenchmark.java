@@ -0,0 +1,64 @@
+package com.ociweb.pronghorn.iot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ociweb.iot.grove.simple_analog.SimpleAnalogTwig;
+import com.ociweb.iot.grove.simple_digital.SimpleDigitalTwig;
+import com.ociweb.iot.hardware.impl.test.BenchmarkHardware;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * One scheduled block of analog and digital reads from TestHardware published by the ReadDeviceInputStage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadDeviceInputStageBenchmark {
+
+	private BenchmarkHardware hardware;
+	private ReadDeviceInputStage stage;
+	private Pipe<GroveResponseSchema> responsePipe;
+	private long blockNS;
+
+	@Setup
+	public void setup() {
+		GraphManager gm = new GraphManager();
+		hardware = new BenchmarkHardware(gm);
+		hardware.connect(SimpleAnalogTwig.AngleSensor, Port.A0, 10);
+		hardware.connect(SimpleAnalogTwig.AngleSensor, Port.A1, 10);
+		hardware.connect(SimpleDigitalTwig.Button, Port.D2, 10);
+		hardware.connect(SimpleDigitalTwig.Button, Port.D3, 10);
+		
+		responsePipe = GroveResponseSchema.instance.newPipe(64, 0);
+		responsePipe.initBuffers();
+		
+		stage = new ReadDeviceInputStage(gm, responsePipe, hardware);
+		blockNS = hardware.buildADPollSchedule().commonClock;
+		stage.startup();
+	}
+
+	@Benchmark
+	public int pollBlock() {
+		hardware.skipAhead(blockNS);
+		stage.run();
+		return BenchmarkHardware.drain(responsePipe);
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ociweb.gl.impl.schema.TrafficAckSchema;
+import com.ociweb.gl.impl.schema.TrafficReleaseSchema;
+import com.ociweb.iot.grove.real_time_clock.RTCTwig;
+import com.ociweb.iot.grove.three_axis_accelerometer_16g.ThreeAxisAccelerometer_16gTwig;
+import com.ociweb.iot.grove.three_axis_accelerometer_16g.ThreeAxisAccelerometer_16g_Constants;
+import com.ociweb.iot.hardware.I2CConnection;
+import com.ociweb.iot.hardware.impl.test.BenchmarkHardware;
+import com.ociweb.pronghorn.iot.schema.I2CCommandSchema;
+import com.ociweb.pronghorn.iot.schema.I2CResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Polls and commands through the I2CJFFIStage with the emulated devices of TestI2CBacking,
+ * this measures the stage itself since the bus costs nothing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I2CJFFIStageBenchmark {
+
+	private static final int COMMANDS = 16; //sent per release
+	private static final byte[] COMMAND = {ThreeAxisAccelerometer_16g_Constants.ADXL345_POWER_CTL, 0x08};
+
+	@State(Scope.Thread)
+	public static class StageState {
+
+		BenchmarkHardware hardware;
+		I2CJFFIStage stage;
+		Pipe<TrafficReleaseSchema> goPipe;
+		Pipe<I2CCommandSchema> commandPipe;
+		Pipe<TrafficAckSchema> ackPipe;
+		Pipe<I2CResponseSchema> responsePipe;
+		long blockNS;
+
+		void setup(int pollMS) {
+			I2CJFFIStage.debugCommands = false;
+			GraphManager gm = new GraphManager();
+			hardware = new BenchmarkHardware(gm);
+			hardware.emulateKnownI2CDevices();
+			hardware.connect(ThreeAxisAccelerometer_16gTwig.ADXL345.GetXYZ, pollMS);
+			hardware.connect(RTCTwig.RTC.ReadTime, pollMS);
+
+			goPipe = TrafficReleaseSchema.instance.newPipe(64, 0);
+			commandPipe = I2CCommandSchema.instance.newPipe(COMMANDS*4, 64);
+			ackPipe = TrafficAckSchema.instance.newPipe(64, 0);
+			responsePipe = I2CResponseSchema.instance.newPipe(64, 256);
+			goPipe.initBuffers();
+			commandPipe.initBuffers();
+			ackPipe.initBuffers();
+			responsePipe.initBuffers();
+
+			stage = new I2CJFFIStage(gm, new Pipe[]{goPipe}, new Pipe[]{commandPipe}, new Pipe[]{ackPipe}, responsePipe, hardware);
+			blockNS = hardware.buildI2CPollSchedule(I2CConnection.DEFAULT_BUS).commonClock;
+			stage.startup();
+		}
+	}
+
+	public static class PollState extends StageState {
+		@Setup
+		public void setup() {
+			setup(10);
+		}
+	}
+
+	public static class CommandState extends StageState {
+		@Setup
+		public void setup() {
+			setup(1000); //polls rarely get in the way of the commands
+		}
+	}
+
+	/**
+	 * One scheduled block, every device is read once and the responses published.
+	 */
+	@Benchmark
+	public int pollBlock(PollState s) {
+		s.hardware.skipAhead(s.blockNS);
+		s.stage.run();
+		BenchmarkHardware.drain(s.ackPipe);
+		return BenchmarkHardware.drain(s.responsePipe);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COMMANDS)
+	public int commands(CommandState s) {
+		int i = COMMANDS;
+		while (--i>=0) {
+			PipeWriter.presumeWriteFragment(s.commandPipe, I2CCommandSchema.MSG_COMMAND_7);
+			PipeWriter.writeInt(s.commandPipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_CONNECTOR_11, 0);
+			PipeWriter.writeInt(s.commandPipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_ADDRESS_12, ThreeAxisAccelerometer_16g_Constants.ADXL345_DEVICE);
+			PipeWriter.writeBytes(s.commandPipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_BYTEARRAY_2, COMMAND);
+			PipeWriter.publishWrites(s.commandPipe);
+		}
+		PipeWriter.presumeWriteFragment(s.goPipe, TrafficReleaseSchema.MSG_RELEASE_20);
+		PipeWriter.writeInt(s.goPipe, TrafficReleaseSchema.MSG_RELEASE_20_FIELD_COUNT_22, COMMANDS);
+		PipeWriter.publishWrites(s.goPipe);
+
+		s.stage.run();
+		BenchmarkHardware.drain(s.responsePipe);
+		return BenchmarkHardware.drain(s.ackPipe);
+	}
+
+}
@@ -6,6 +6,7 @@
 package com.ociweb.iot.astropi;
 
 import com.ociweb.iot.hardware.I2CConnection;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.hardware.I2CIODevice;
 import com.ociweb.iot.maker.FogCommandChannel;
 import com.ociweb.iot.maker.IODeviceTransducer;
@@ -51,6 +52,24 @@ public enum AstroPiTwig {
                     return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null);
                 }
             },
+            GetAccelGyroFIFO(){
+                @Override
+                public int defaultPullRateMS() {
+                    return 20; //32 samples at 952Hz fill the FIFO in 33ms
+                }
+                @Override
+                public I2CConnection getI2CConnection() {
+                    byte[] REG_ADDR = {AstroPi_Constants.OUT_X_L_G};
+                    byte I2C_ADDR = AstroPi_Constants.LSM9DS1_AG_ADDR;
+                    byte BYTESTOREAD = 12; //each FIFO slot holds the gyro then the accelerometer values
+                    byte REG_ID = AstroPi_Constants.FIFO_SRC; //just an identifier
+                    //the gyro and accelerometer outputs are not next to each other so each slot is read in two parts,
+                    //the slot is popped once OUT_Z_H_XL has been read
+                    I2CFIFO FIFO = new I2CFIFO(new byte[]{AstroPi_Constants.FIFO_SRC}, 0x3F, 32, 
+                                               new byte[][]{{AstroPi_Constants.OUT_X_L_G},{AstroPi_Constants.OUT_X_L_XL}}, new int[]{6,6});
+                    return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null, FIFO);
+                }
+            },
             GetMag(){
                 @Override
                 public I2CConnection getI2CConnection() {
@@ -8,10 +8,12 @@ package com.ociweb.iot.astropi;
 import com.ociweb.iot.astropi.listeners.MagListener;
 import com.ociweb.iot.astropi.listeners.AccelListener;
 import com.ociweb.iot.astropi.listeners.GyroListener;
+import com.ociweb.iot.astropi.listeners.IMUBatchListener;
 import com.ociweb.iot.astropi.listeners.AstroPiListener;
 import static com.ociweb.iot.astropi.AstroPi_Constants.*;
 
 import com.ociweb.gl.api.transducer.StartupListenerTransducer;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.maker.FogCommandChannel;
 import com.ociweb.iot.maker.IODeviceTransducer;
 import com.ociweb.iot.transducer.I2CListenerTransducer;
@@ -38,6 +40,9 @@ public class IMUTransducer implements IODeviceTransducer,I2CListenerTransducer,S
             if(item instanceof MagListener){
                 this.magListener = (MagListener) item;
             }
+            if(item instanceof IMUBatchListener){
+                this.batchListener = (IMUBatchListener) item;
+            }
         
         }
     }
@@ -74,6 +79,9 @@ public class IMUTransducer implements IODeviceTransducer,I2CListenerTransducer,S
         initGyro();
         initAccel();
         initMag();
+        if (null != batchListener) {
+            initFIFO();
+        }
         System.out.println("Calibrating the sensors...");
     }
     
@@ -230,6 +238,20 @@ public class IMUTransducer implements IODeviceTransducer,I2CListenerTransducer,S
         
     }
     
+    /**
+     * Queue the gyroscope and accelerometer samples in the FIFO so they can be drained in bursts
+     * by the GetAccelGyroFIFO twig. Both are sampled at the gyroscope rate.
+     */
+    private void initFIFO(){
+        // CTRL_REG9 (Default value: 0x00)
+        // [0][SLEEP_G][0][FIFO_TEMP_EN][DRDY_mask_bit][I2C_DISABLE][FIFO_EN][STOP_ON_FTH]
+        agWriteByte(CTRL_REG9, 0x02);
+        // FIFO_CTRL (Default value: 0x00)
+        // [FMODE2][FMODE1][FMODE0][FTH4][FTH3][FTH2][FTH1][FTH0]
+        // FMODE[2:0] - 110 continuous mode, oldest samples are dropped once full
+        agWriteByte(FIFO_CTRL, 0xC0);
+    }
+    
     private void initMag()
     {
         MagSettings.CTRL_REG1_MVal = 0;
@@ -516,6 +538,14 @@ public class IMUTransducer implements IODeviceTransducer,I2CListenerTransducer,S
     private GyroListener gyroListener;
     private AccelListener accelListener;
     private MagListener magListener;
+    private IMUBatchListener batchListener;
+    
+    private static final int FIFO_DEPTH = 32;
+    //gyro output data rate for each sampleRate setting, the FIFO runs at this rate
+    private static final double[] GYRO_ODR_HZ = {14.9, 14.9, 59.5, 119, 238, 476, 952};
+    private final long[] batchTimes = new long[FIFO_DEPTH];
+    private final double[] batchGyro = new double[FIFO_DEPTH*3];
+    private final double[] batchAccel = new double[FIFO_DEPTH*3];
     
     //Calibrate the sensor by taking 8 samples (ignoring the first sample) and average them. Then set
     // it to be the Bias value
@@ -568,6 +598,22 @@ public class IMUTransducer implements IODeviceTransducer,I2CListenerTransducer,S
                 }
             }
         }
+        if(addr == AstroPi_Constants.LSM9DS1_AG_ADDR && register == AstroPi_Constants.FIFO_SRC && null != batchListener){
+            int count = length/12;
+            for(int i = 0; i<count; i++){
+                int[] g = this.interpretData(backing, position+(i*12), 6, mask);
+                for(int j = 0; j<3; j++){
+                    batchGyro[(i*3)+j] = calcGyro(g[j]-GyroSettings.gBiasRaw[j]);
+                }
+                int[] a = this.interpretData(backing, position+(i*12)+6, 6, mask);
+                for(int j = 0; j<3; j++){
+                    batchAccel[(i*3)+j] = calcAccel(a[j]-AccelSettings.aBiasRaw[j]);
+                }
+            }
+            long intervalNS = (long)(1_000_000_000L/GYRO_ODR_HZ[Math.min(GyroSettings.sampleRate, GYRO_ODR_HZ.length-1)]);
+            I2CFIFO.sampleTimes(time, intervalNS, count, batchTimes);
+            batchListener.imuBatch(count, batchTimes, batchGyro, batchAccel);
+        }
         if(addr == AstroPi_Constants.LSM9DS1_M_ADDR){
             if(register == AstroPi_Constants.OUT_X_L_M){
                 if(calibrateMag < 9){
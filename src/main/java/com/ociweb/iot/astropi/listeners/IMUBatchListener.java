@@ -0,0 +1,15 @@
+package com.ociweb.iot.astropi.listeners;
+
+/**
+ * Receives every sample drained from the LSM9DS1 FIFO, connect the GetAccelGyroFIFO twig to use it.
+ * Each sample holds both the gyroscope and the accelerometer values taken at the same time.
+ */
+public interface IMUBatchListener extends AstroPiListener {
+    /**
+     * @param count number of samples in the batch, only this many entries of each array are valid
+     * @param timeUS time of each sample in micro seconds, oldest first
+     * @param gyro x,y,z in DPS for each sample, 3 entries per sample
+     * @param accel x,y,z in g for each sample, 3 entries per sample
+     */
+    void imuBatch(int count, long[] timeUS, double[] gyro, double[] accel);
+}
@@ -0,0 +1,16 @@
+package com.ociweb.iot.grove.six_axis_accelerometer;
+
+/**
+ * Receives every sample drained from the LSM303D FIFO, connect the readAccelFIFO twig to use it.
+ * The data rate, scale and axes are taken from this listener as for {@link AccelValsListener}.
+ */
+public interface AccelBatchListener extends AccelValsListener {
+    /**
+     * @param count number of samples in the batch, only this many entries of each array are valid
+     * @param timeUS time of each sample in micro seconds, oldest first
+     * @param x
+     * @param y
+     * @param z
+     */
+    void accelerationBatch(int count, long[] timeUS, int[] x, int[] y, int[] z);
+}
@@ -9,25 +9,33 @@ package com.ociweb.iot.grove.six_axis_accelerometer;
  */
 
 public enum AccelerometerAccelDataRate {
-    hz3(0x01<<4),
-    hz6(0x02<<4),
-    hz12(0x03<<4),
-    hz25(0x04<<4),
-    hz50(0x05<<4),
-    hz100(0x06<<4),
-    hz200(0x07<<4),
-    hz400(0x08<<4),
-    hz800(0x09<<4),
-    hz1600(0x0A<<4);
+    hz3(0x01<<4, 3.125),
+    hz6(0x02<<4, 6.25),
+    hz12(0x03<<4, 12.5),
+    hz25(0x04<<4, 25),
+    hz50(0x05<<4, 50),
+    hz100(0x06<<4, 100),
+    hz200(0x07<<4, 200),
+    hz400(0x08<<4, 400),
+    hz800(0x09<<4, 800),
+    hz1600(0x0A<<4, 1600);
 
     private final int specification;
+    private final long sampleIntervalNS;
 
-    AccelerometerAccelDataRate(int specification) {
+    AccelerometerAccelDataRate(int specification, double hz) {
         this.specification = specification;
+        this.sampleIntervalNS = (long)(1_000_000_000L/hz);
     }
 
     int getSpecification() {
         return specification;
     }
-}
 
+    /**
+     * @return time between samples at this rate
+     */
+    public long getSampleIntervalNS() {
+        return sampleIntervalNS;
+    }
+}
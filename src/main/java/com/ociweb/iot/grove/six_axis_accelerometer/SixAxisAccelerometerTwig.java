@@ -8,6 +8,7 @@ package com.ociweb.iot.grove.six_axis_accelerometer;
 import static com.ociweb.iot.grove.six_axis_accelerometer.SixAxisAccelerometer_Constants.OUT_X_L_A;
 
 import com.ociweb.iot.hardware.I2CConnection;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.hardware.I2CIODevice;
 import com.ociweb.iot.maker.FogCommandChannel;
 
@@ -30,6 +31,22 @@ public enum SixAxisAccelerometerTwig {
                     return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null);
                 }
             },
+            readAccelFIFO(){
+                @Override
+                public int defaultPullRateMS() {
+                    return 20; //32 samples at 800Hz fill the FIFO in 40ms
+                }
+                @Override
+                public I2CConnection getI2CConnection() { //putting getI2CConnection in i2cOutput twigs allows setup commands to be sent
+                    byte[] REG_ADDR = {OUT_X_L_A};
+                    byte I2C_ADDR = SixAxisAccelerometer_Constants.LSM303D_ADDR;
+                    byte BYTESTOREAD = 6; //for each sample
+                    byte REG_ID = SixAxisAccelerometer_Constants.FIFO_SRC; //just an identifier
+                    //with auto increment the read rolls back to OUT_X_L_A so all samples come in one burst
+                    I2CFIFO FIFO = new I2CFIFO(new byte[]{SixAxisAccelerometer_Constants.FIFO_SRC}, 0x1F, 32, true);
+                    return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null, FIFO);
+                }
+            },
             readMag(){
                 @Override
                 public I2CConnection getI2CConnection() { //putting getI2CConnection in i2cOutput twigs allows setup commands to be sent
@@ -8,6 +8,7 @@ package com.ociweb.iot.grove.six_axis_accelerometer;
 import static com.ociweb.iot.grove.six_axis_accelerometer.SixAxisAccelerometer_Constants.*;
 
 import com.ociweb.gl.api.transducer.StartupListenerTransducer;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.maker.FogCommandChannel;
 import com.ociweb.iot.maker.IODeviceTransducer;
 import com.ociweb.iot.transducer.I2CListenerTransducer;
@@ -25,6 +26,12 @@ public class SixAxisAccelerometer_Transducer implements IODeviceTransducer,I2CLi
     private final MagValsListener maglistener;
     private final TempValsListener tempListener;
     
+    private static final int FIFO_DEPTH = 32;
+    private final long[] batchTimes = new long[FIFO_DEPTH];
+    private final int[] batchX = new int[FIFO_DEPTH];
+    private final int[] batchY = new int[FIFO_DEPTH];
+    private final int[] batchZ = new int[FIFO_DEPTH];
+    
     public SixAxisAccelerometer_Transducer(FogCommandChannel ch, AccelValsListener accellistener,  MagValsListener maglistener, TempValsListener tempListener) {
         this.target = ch;
         this.accellistener = accellistener;
@@ -43,6 +50,10 @@ public class SixAxisAccelerometer_Transducer implements IODeviceTransducer,I2CLi
             axWriteByte(CTRL_REG1, accelDataRate | useRegisters | accelAxes);
             final int accelScale =  accellistener.getAccerometerScale().getSpecification();
             axWriteByte(CTRL_REG2, accelScale);
+            if (accellistener instanceof AccelBatchListener) {
+                axWriteByte(CTRL_REG0, 0x40); //FIFO_EN
+                axWriteByte(FIFO_CTRL, 0x40); //stream mode, oldest samples are dropped once full
+            }
         }
         else {
             axWriteByte(CTRL_REG1, 0);
@@ -94,6 +105,17 @@ public class SixAxisAccelerometer_Transducer implements IODeviceTransducer,I2CLi
                 short[] xyz_accel = this.interpretData(backing, position, length, mask);
                 accellistener.accelerationValues(xyz_accel[0], xyz_accel[1], xyz_accel[2]);
             }
+            if (accellistener instanceof AccelBatchListener && register == FIFO_SRC) {
+                int count = length/6;
+                for (int i = 0; i < count; i++) {
+                    short[] xyz_accel = this.interpretData(backing, position+(i*6), 6, mask);
+                    batchX[i] = xyz_accel[0];
+                    batchY[i] = xyz_accel[1];
+                    batchZ[i] = xyz_accel[2];
+                }
+                I2CFIFO.sampleTimes(time, accellistener.getAccerometerDataRate().getSampleIntervalNS(), count, batchTimes);
+                ((AccelBatchListener)accellistener).accelerationBatch(count, batchTimes, batchX, batchY, batchZ);
+            }
             if (maglistener != null && register == OUT_X_L_M) {
                 short[] xyz_mag = this.interpretData(backing, position, length, mask);
                 maglistener.magneticValues(xyz_mag[0], xyz_mag[1], xyz_mag[2]);
@@ -0,0 +1,15 @@
+package com.ociweb.iot.grove.three_axis_accelerometer_16g;
+
+/**
+ * Receives every sample drained from the ADXL345 FIFO, connect the GetXYZFIFO twig to use it.
+ */
+public interface AccelBatchListener extends ThreeAxisAccelerometer_16gListener {
+    /**
+     * @param count number of samples in the batch, only this many entries of each array are valid
+     * @param timeUS time of each sample in micro seconds, oldest first
+     * @param x
+     * @param y
+     * @param z
+     */
+    void accelerationBatch(int count, long[] timeUS, int[] x, int[] y, int[] z);
+}
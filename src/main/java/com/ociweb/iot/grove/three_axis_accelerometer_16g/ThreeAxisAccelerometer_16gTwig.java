@@ -6,6 +6,7 @@
 package com.ociweb.iot.grove.three_axis_accelerometer_16g;
 
 import com.ociweb.iot.hardware.I2CConnection;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.hardware.I2CIODevice;
 import com.ociweb.iot.maker.FogCommandChannel;
 
@@ -27,6 +28,22 @@ public enum ThreeAxisAccelerometer_16gTwig {
                 return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null);
             }
         },
+        GetXYZFIFO(){
+            @Override
+            public int defaultPullRateMS() {
+                return 20; //32 samples at 800Hz fill the FIFO in 40ms
+            }
+            @Override
+            public I2CConnection getI2CConnection() { //putting getI2CConnection in i2cOutput twigs allows setup commands to be sent
+                byte[] REG_ADDR = {ThreeAxisAccelerometer_16g_Constants.ADXL345_DATAX0};
+                byte I2C_ADDR = ThreeAxisAccelerometer_16g_Constants.ADXL345_DEVICE;
+                byte BYTESTOREAD = 6; //for each sample
+                byte REG_ID = ThreeAxisAccelerometer_16g_Constants.ADXL345_FIFO_STATUS; //just an identifier
+                //each FIFO entry is popped by its own read of the data registers
+                I2CFIFO FIFO = new I2CFIFO(new byte[]{ThreeAxisAccelerometer_16g_Constants.ADXL345_FIFO_STATUS}, 0x3F, 32, false);
+                return new I2CConnection(this, I2C_ADDR, REG_ADDR, BYTESTOREAD, REG_ID, null, FIFO);
+            }
+        },
         GetTapAct(){
             @Override
             public I2CConnection getI2CConnection() { //putting getI2CConnection in i2cOutput twigs allows setup commands to be sent
@@ -11,6 +11,7 @@ import com.ociweb.pronghorn.pipe.DataOutputBlobWriter;
 import static com.ociweb.iot.grove.three_axis_accelerometer_16g.ThreeAxisAccelerometer_16g_Constants.*;
 
 import com.ociweb.gl.api.transducer.StartupListenerTransducer;
+import com.ociweb.iot.hardware.I2CFIFO;
 import com.ociweb.iot.maker.IODeviceTransducer;
 import com.ociweb.iot.transducer.I2CListenerTransducer;
 
@@ -23,6 +24,14 @@ public class ThreeAxisAccelerometer_16g_Transducer implements IODeviceTransducer
     private AccelValsListener accellistener;
     private ActTapListener acttaplistener;
     private AccelInterruptListener interrlistener;
+    private AccelBatchListener batchlistener;
+    
+    private static final int FIFO_DEPTH = 32;
+    private long sampleIntervalNS = 1_000_000_000L/800;
+    private final long[] batchTimes = new long[FIFO_DEPTH];
+    private final int[] batchX = new int[FIFO_DEPTH];
+    private final int[] batchY = new int[FIFO_DEPTH];
+    private final int[] batchZ = new int[FIFO_DEPTH];
 
     public ThreeAxisAccelerometer_16g_Transducer(FogCommandChannel ch, ThreeAxisAccelerometer_16gListener ... l){
         this.target = ch;
@@ -37,6 +46,9 @@ public class ThreeAxisAccelerometer_16g_Transducer implements IODeviceTransducer
             if(item instanceof AccelInterruptListener){
                 this.interrlistener =  (AccelInterruptListener) item;
             }
+            if(item instanceof AccelBatchListener){
+                this.batchlistener = (AccelBatchListener) item;
+            }
         }
         
     }
@@ -57,6 +69,9 @@ public class ThreeAxisAccelerometer_16g_Transducer implements IODeviceTransducer
             if(item instanceof AccelInterruptListener){
                 this.interrlistener =  (AccelInterruptListener) item;
             }
+            if(item instanceof AccelBatchListener){
+                this.batchlistener = (AccelBatchListener) item;
+            }
         }
     }
     
@@ -67,6 +82,9 @@ public class ThreeAxisAccelerometer_16g_Transducer implements IODeviceTransducer
         this.powerOn();
         this.setRange(2);
         this.setRate(800);
+        if (null != batchlistener) {
+            this.enableFIFO();
+        }
     }
     /**
      * Start the device in measurement mode, with auto-sleep disabled and sleep mode disabled
@@ -159,7 +177,9 @@ public class ThreeAxisAccelerometer_16g_Transducer implements IODeviceTransducer
                 break;
             default:
                 _s = ADXL345_RATE_400;
+                rate = 400;
         }
+        sampleIntervalNS = 1_000_000_000L/rate; //used to rebuild the time of each FIFO sample
         axWriteByte(ADXL345_BW_RATE,_s);
         
         
@@ -362,6 +382,14 @@ during which a second value tap can powerOn. The scale factor is 1.25ms/LSB. A
         axWriteByte(ADXL345_FIFO_CTL,_b);
     }
     
+    /**
+     * Put the FIFO in stream mode so samples are queued between reads of the GetXYZFIFO twig,
+     * once full the oldest samples are dropped.
+     */
+    public void enableFIFO(){
+        writeFIFO_CTL_Reg(0b10000000);
+    }
+    
 /**
      * Convert the 6 bytes from I2C read to the correct two's complement representation of X,Y,Z
      * @param backing circular buffer containing data from I2C read
@@ -403,6 +431,17 @@ during which a second value tap can powerOn. The scale factor is 1.25ms/LSB. A
                 short[] xyzVals = this.interpretData(backing, position, length, mask);
                 accellistener.accelerationValues(xyzVals[0]*4, xyzVals[1]*4, xyzVals[2]*4);
             }
+            if(register == ADXL345_FIFO_STATUS && null != batchlistener){
+                int count = length/6;
+                for(int i = 0; i<count; i++){
+                    short[] xyzVals = this.interpretData(backing, position+(i*6), 6, mask);
+                    batchX[i] = xyzVals[0]*4;
+                    batchY[i] = xyzVals[1]*4;
+                    batchZ[i] = xyzVals[2]*4;
+                }
+                I2CFIFO.sampleTimes(time, sampleIntervalNS, count, batchTimes);
+                batchlistener.accelerationBatch(count, batchTimes, batchX, batchY, batchZ);
+            }
             if(register == ADXL345_ACT_TAP_STATUS){
                 int actX = (backing[position] & 0b01000000)>>6;
                 int actY = (backing[position] & 0b00100000)>>5;
@@ -0,0 +1,1532 @@
+package com.ociweb.iot.hardware;
+
+import static com.ociweb.iot.hardware.HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.gl.api.Behavior;
+import com.ociweb.gl.api.HTTPSession;
+import com.ociweb.gl.api.MsgCommandChannel;
+import com.ociweb.gl.api.MsgRuntime;
+import com.ociweb.gl.impl.BuilderImpl;
+import com.ociweb.gl.impl.ChildClassScanner;
+import com.ociweb.gl.impl.schema.IngressMessages;
+import com.ociweb.gl.impl.schema.MessagePubSub;
+import com.ociweb.gl.impl.schema.MessageSubscription;
+import com.ociweb.gl.impl.schema.TrafficAckSchema;
+import com.ociweb.gl.impl.schema.TrafficOrderSchema;
+import com.ociweb.gl.impl.schema.TrafficReleaseSchema;
+import com.ociweb.gl.impl.stage.TrafficCopStage;
+import com.ociweb.iot.grove.simple_digital.SimpleDigitalTwig;
+import com.ociweb.iot.hardware.impl.DirectHardwareAnalogDigitalOutputStage;
+import com.ociweb.iot.hardware.impl.SerialDataReaderStage;
+import com.ociweb.iot.hardware.impl.SerialDataWriterStage;
+import com.ociweb.iot.hardware.impl.SerialInputSchema;
+import com.ociweb.iot.hardware.impl.SerialOutputSchema;
+import com.ociweb.iot.hardware.impl.edison.EdisonConstants;
+import com.ociweb.iot.impl.AnalogBlockListenerBase;
+import com.ociweb.iot.impl.AnalogListenerBase;
+import com.ociweb.iot.impl.DigitalListenerBase;
+import com.ociweb.iot.impl.I2CListenerBase;
+import com.ociweb.iot.impl.ImageListenerBase;
+import com.ociweb.iot.impl.RotaryListenerBase;
+import com.ociweb.iot.impl.SerialListenerBase;
+import com.ociweb.iot.maker.Baud;
+import com.ociweb.iot.maker.FogRuntime;
+import com.ociweb.iot.maker.Hardware;
+import com.ociweb.iot.maker.PiImageListenerStage;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.iot.transducer.AnalogListenerTransducer;
+import com.ociweb.iot.transducer.DigitalListenerTransducer;
+import com.ociweb.iot.transducer.I2CListenerTransducer;
+import com.ociweb.iot.transducer.ImageListenerTransducer;
+import com.ociweb.iot.transducer.RotaryListenerTransducer;
+import com.ociweb.iot.transducer.SerialListenerTransducer;
+import com.ociweb.pronghorn.iot.EDFPollSchedule;
+import com.ociweb.pronghorn.iot.ReactiveIoTListenerStage;
+import com.ociweb.pronghorn.iot.DigitalEdgeWatcherStage;
+import com.ociweb.pronghorn.iot.GroveResponseMergeStage;
+import com.ociweb.pronghorn.iot.QuadratureDecoderStage;
+import com.ociweb.pronghorn.iot.ReadDeviceInputStage;
+import com.ociweb.pronghorn.iot.i2c.GPIOEdgeBacking;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+import com.ociweb.pronghorn.iot.i2c.I2CBacking;
+import com.ociweb.pronghorn.iot.i2c.I2CJFFIStage;
+import com.ociweb.pronghorn.iot.i2c.I2CResponseMergeStage;
+import com.ociweb.pronghorn.iot.i2c.impl.GPIOCharDevBacking;
+import com.ociweb.pronghorn.iot.i2c.impl.GPIOSysfsLineBacking;
+import com.ociweb.pronghorn.iot.i2c.impl.I2CCaptureBacking;
+import com.ociweb.pronghorn.iot.i2c.impl.I2CNativeLinuxBacking;
+import com.ociweb.pronghorn.iot.i2c.impl.I2CReplayBacking;
+import com.ociweb.pronghorn.iot.rs232.RS232Client;
+import com.ociweb.pronghorn.iot.rs232.RS232Clientable;
+import com.ociweb.pronghorn.iot.schema.GroveRequestSchema;
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.iot.schema.I2CCommandSchema;
+import com.ociweb.pronghorn.iot.schema.I2CResponseSchema;
+import com.ociweb.pronghorn.iot.schema.ImageSchema;
+import com.ociweb.pronghorn.network.schema.ClientHTTPRequestSchema;
+import com.ociweb.pronghorn.network.schema.HTTPRequestSchema;
+import com.ociweb.pronghorn.network.schema.NetPayloadSchema;
+import com.ociweb.pronghorn.network.schema.NetResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeConfig;
+import com.ociweb.pronghorn.pipe.util.hash.IntHashTable;
+import com.ociweb.pronghorn.stage.PronghornStage;
+import com.ociweb.pronghorn.stage.route.ReplicatorStage;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+import com.ociweb.pronghorn.stage.test.PipeCleanerStage;
+import com.ociweb.pronghorn.util.math.PMath;
+import com.ociweb.pronghorn.util.math.ScriptedSchedule;
+
+public abstract class HardwareImpl extends BuilderImpl implements Hardware {
+
+
+	private static final int MAX_MOVING_AVERAGE_SUPPORTED = 101; //TOOD: is this still needed, remove???
+
+	private static final HardwareConnection[] EMPTY = new HardwareConnection[0];
+
+	protected boolean configCamera = false;
+	protected boolean configI2C;       //Humidity, LCD need I2C address so..
+	private long i2cHeartbeatMS = DEFAULT_I2C_HEARTBEAT_MS; //unchanged i2c readings are repeated this often
+	public static final long DEFAULT_I2C_HEARTBEAT_MS = 1000;
+	private final I2CTrafficClass[] i2cTrafficClass = new I2CTrafficClass[128]; //commands for each address, LATENCY when not set
+	private boolean edfPolling; //inputs are polled earliest deadline first instead of by script
+	private int gpioChip = -1; //lines are on /dev/gpiochipN when set instead of sysfs
+	private long digitalEdgePorts; //digital inputs published on edge instead of polled, bit per port
+	private int quadratureRateMS; //rotary encoders are decoded by their own stage when set
+	private boolean digitalBank; //polled digital inputs are read together and published as one bitmask
+	private GPIOLineBacking bankBacking;
+	private final int[] analogBlockSamples = new int[Port.ANALOGS.length]; //samples per block message, 0 sends each on its own
+	public static final int MAX_ANALOG_BLOCK_SAMPLES = 256;
+	private int hardPollCPU = -1; //analog and digital polling owns this cpu and busy waits when set
+	private long hardPollPeriodNS; //period of the inputs connected with a rate of 0 when hard polling
+	private int hardI2CPollCPU = -1; //I2C polling owns this cpu and busy waits when set
+
+	protected long debugI2CRateLastTime;
+
+	protected HardwareConnection[] digitalInputs; //Button, Motion
+	protected HardwareConnection[] digitalOutputs;//Relay Buzzer
+
+	protected HardwareConnection[] analogInputs;  //Light, UV, Moisture
+	protected HardwareConnection[] pwmOutputs;    //Servo   //(only 3, 5, 6, 9, 10, 11 when on edison)
+
+	protected I2CConnection[] i2cInputs;
+	protected I2CConnection[] i2cOutputs;
+
+	private static final int DEFAULT_LENGTH = 16;
+	private static final int DEFAULT_PAYLOAD_SIZE = 128;
+	private static final int I2C_RESPONSE_PAYLOAD_SIZE = 384; //room for a full 32 slot FIFO of 12 byte samples, e.g. the LSM9DS1 gyro and accelerometer
+	private static final boolean DEFAULT_EVERY_VALUE = false;
+
+	private int i2cBus;
+	protected I2CBacking i2cBackingInternal;
+	private I2CBacking[] i2cBusBackings = new I2CBacking[0]; //for every bus other than the default
+	private Pipe<I2CCommandSchema>[] i2cCommandPipes = new Pipe[0]; //command channel pipes and the bus each one writes to
+	private int[] i2cCommandPipeBus = new int[0];
+	private String i2cCaptureDir; //when set every bus is recorded here
+	private String i2cReplayDir;  //when set every bus is served from the recordings here
+	private boolean i2cReplayOriginalTiming;
+
+	protected static final long MS_TO_NS = 1_000_000;
+
+
+	private static final Logger logger = LoggerFactory.getLogger(HardwareImpl.class);
+
+	protected final IODevice[] deviceOnPort= new IODevice[Port.values().length];
+
+	/////////////////
+	///Pipes for initial startup declared subscriptions. (Not part of graph)
+	private final int maxStartupSubs = 64;
+	private final int maxTopicLengh  = 128;
+	private Pipe<MessagePubSub> tempPipeOfStartupSubscriptions;
+	/////////////////
+	/////////////////
+
+	protected ReentrantLock devicePinConfigurationLock = new ReentrantLock();
+
+	protected RS232Client rs232Client;
+	protected String rs232ClientDevice = "/dev/ttyMFD1";//custom hardware should override this edison value
+	protected Baud   rs232ClientBaud = Baud.B_____9600;
+	protected String bluetoothDevice = null;
+
+
+	private static final boolean debug = false;
+
+    private int IDX_PIN = -1;
+    private int IDX_I2C = -1;
+    private int IDX_SER = -1;
+	
+    private int imageTriggerRateMillis = 1250;
+
+	public void setImageTriggerRate(int triggerRateMillis) {
+		if (triggerRateMillis < 1250) {
+			throw new RuntimeException("Image listeners cannot be used with trigger rates of less than 1250 MS.");
+		}
+
+		this.imageTriggerRateMillis = triggerRateMillis;
+	}
+
+	public IODevice getConnectedDevice(Port p) {
+    	return deviceOnPort[p.ordinal()];
+    }
+
+	public HardwareImpl(GraphManager gm, String[] args, int i2cBus) {
+		this(gm, args, i2cBus, false,false,EMPTY,EMPTY,EMPTY,EMPTY,EMPTY);
+	}
+
+	protected HardwareImpl(GraphManager gm, String[] args, int i2cBus, boolean publishTime, boolean configI2C, HardwareConnection[] multiDigitalInput,
+			HardwareConnection[] digitalInputs, HardwareConnection[] digitalOutputs, HardwareConnection[] pwmOutputs, HardwareConnection[] analogInputs) {
+
+		super(gm, args);
+				ReactiveIoTListenerStage.initOperators(operators);
+		this.pcm.addConfig(new PipeConfig<HTTPRequestSchema>(HTTPRequestSchema.instance, 
+									                   		 2, //only a few requests when FogLight  
+									                         MAXIMUM_INCOMMING_REST_SIZE));
+
+		this.pcm.addConfig(new PipeConfig<NetPayloadSchema>(NetPayloadSchema.instance,
+															2, //only a few requests when FogLight 
+															MINIMUM_TLS_BLOB_SIZE)); 
+				
+		this.pcm.addConfig(new PipeConfig<SerialInputSchema>(SerialInputSchema.instance,
+				                                            DEFAULT_LENGTH, 
+				                                            DEFAULT_PAYLOAD_SIZE));
+		
+		this.pcm.addConfig(new PipeConfig<I2CResponseSchema>(I2CResponseSchema.instance,
+				                                            DEFAULT_LENGTH, 
+				                                            I2C_RESPONSE_PAYLOAD_SIZE));
+
+		this.i2cBus = i2cBus;
+
+		this.configI2C = configI2C; //may be removed.
+
+		this.digitalInputs = digitalInputs;
+		this.digitalOutputs = digitalOutputs;
+		this.pwmOutputs = pwmOutputs;
+		this.analogInputs = analogInputs;
+
+		this.getTempPipeOfStartupSubscriptions().initBuffers();
+	}
+
+	public I2CBacking getI2CBacking() {
+		if (null == i2cBackingInternal) {
+			i2cBackingInternal = i2cSession(null==i2cReplayDir ? getI2CBacking((byte)i2cBus, false) : null, i2cBus);
+		}
+		return i2cBackingInternal;
+	}
+
+	/**
+	 * Wraps the backing of a bus so it is recorded, or replaces it with the recording when replaying.
+	 * @param backing opened backing for the bus, may be null when replaying
+	 */
+	protected I2CBacking i2cSession(I2CBacking backing, int bus) {
+		if (null != i2cReplayDir) {
+			return new I2CReplayBacking(i2cSessionFile(i2cReplayDir, bus), i2cReplayOriginalTiming).configure((byte)bus);
+		}
+		if (null != i2cCaptureDir && null != backing && !(backing instanceof I2CCaptureBacking)) {
+			return new I2CCaptureBacking(backing, i2cSessionFile(i2cCaptureDir, bus)).configure((byte)bus);
+		}
+		return backing;
+	}
+
+	private static Path i2cSessionFile(String directory, int bus) {
+		return Paths.get(directory, "i2c-"+bus+".cap");
+	}
+
+	public Hardware captureI2C(String directory) {
+		this.i2cCaptureDir = directory;
+		//backings opened while detecting the platform are wrapped now
+		if (null != i2cBackingInternal) {
+			i2cBackingInternal = i2cSession(i2cBackingInternal, i2cBus);
+		}
+		for(int i = 0; i<i2cBusBackings.length; i++) {
+			if (null != i2cBusBackings[i]) {
+				i2cBusBackings[i] = i2cSession(i2cBusBackings[i], i);
+			}
+		}
+		return this;
+	}
+
+	public Hardware replayI2C(String directory, boolean originalTiming) {
+		this.i2cReplayDir = directory;
+		this.i2cReplayOriginalTiming = originalTiming;
+		//any backing opened while detecting the platform is replaced on next use
+		this.i2cBackingInternal = null;
+		Arrays.fill(i2cBusBackings, null);
+		return this;
+	}
+
+	/**
+	 * @param bus I2C bus number or I2CConnection.DEFAULT_BUS
+	 * @return backing for this bus, each bus has its own.
+	 */
+	public I2CBacking getI2CBacking(int bus) {
+		bus = i2cBusOf(bus);
+		if (bus == i2cBus) {
+			return getI2CBacking();
+		}
+		if (bus >= i2cBusBackings.length) {
+			i2cBusBackings = Arrays.copyOf(i2cBusBackings, bus+1);
+		}
+		if (null == i2cBusBackings[bus]) {
+			i2cBusBackings[bus] = i2cSession(null==i2cReplayDir ? getI2CBacking((byte)bus, true) : null, bus);
+			if (null == i2cBusBackings[bus]) {
+				throw new UnsupportedOperationException("Unable to open I2C bus "+bus);
+			}
+		}
+		return i2cBusBackings[bus];
+	}
+
+	public int i2cBusOf(int bus) {
+		return I2CConnection.DEFAULT_BUS==bus ? i2cBus : bus;
+	}
+
+	/**
+	 * @return every bus with a connected device, the default bus is always first.
+	 */
+	public int[] getI2CBuses() {
+		int[] buses = new int[] {i2cBus};
+		buses = addI2CBuses(buses, i2cInputs);
+		buses = addI2CBuses(buses, i2cOutputs);
+		for(int i = 0; i<i2cCommandPipeBus.length; i++) {
+			buses = addI2CBus(buses, i2cBusOf(i2cCommandPipeBus[i]));
+		}
+		return buses;
+	}
+
+	private int[] addI2CBuses(int[] buses, I2CConnection[] connections) {
+		if (null!=connections) {
+			for(int i = 0; i<connections.length; i++) {
+				buses = addI2CBus(buses, i2cBusOf(connections[i].bus));
+			}
+		}
+		return buses;
+	}
+
+	private static int[] addI2CBus(int[] buses, int bus) {
+		int j = buses.length;
+		while (--j>=0 && buses[j]!=bus) {
+		}
+		if (j<0) {
+			buses = Arrays.copyOf(buses, buses.length+1);
+			buses[buses.length-1] = bus;
+		}
+		return buses;
+	}
+
+	/**
+	 * Records which bus the commands of a channel are written to, the same address may be in use on several buses
+	 * so commands are routed by the channel and never by the address alone.
+	 * @param pipe I2C command pipe of a command channel
+	 * @param bus I2C bus number or I2CConnection.DEFAULT_BUS
+	 */
+	public void bindI2CCommandPipe(Pipe<I2CCommandSchema> pipe, int bus) {
+		i2cCommandPipes = Arrays.copyOf(i2cCommandPipes, i2cCommandPipes.length+1);
+		i2cCommandPipeBus = Arrays.copyOf(i2cCommandPipeBus, i2cCommandPipeBus.length+1);
+		i2cCommandPipes[i2cCommandPipes.length-1] = pipe;
+		i2cCommandPipeBus[i2cCommandPipeBus.length-1] = bus;
+	}
+
+	/**
+	 * @return bus the commands on this pipe are written to, pipes which were never bound use the default bus.
+	 */
+	public int i2cBusOfCommandPipe(Pipe<I2CCommandSchema> pipe) {
+		int i = i2cCommandPipes.length;
+		while (--i>=0) {
+			if (pipe == i2cCommandPipes[i]) {
+				return i2cBusOf(i2cCommandPipeBus[i]);
+			}
+		}
+		return i2cBus;
+	}
+
+	private static I2CBacking getI2CBacking(byte deviceNum, boolean reportError) {
+		long start = System.currentTimeMillis();
+		try {
+			return new I2CNativeLinuxBacking().configure(deviceNum);
+		} catch (Throwable t) {
+			if (reportError) {
+				logger.info("warning could not find the i2c bus", t);
+			}
+			//avoid non error case that is used to detect which hardware is running.
+			return null;
+		} finally {
+			logger.info("duration of getI2CBacking {} ", System.currentTimeMillis()-start);
+		}
+	}
+
+	protected HardwareConnection[] growHardwareConnections(HardwareConnection[] original, HardwareConnection toAdd) {
+		final int len = original.length;
+		//Validate that what we are adding is safe
+		int i = len;
+		while (--i>=0) {
+			if (original[i].register == toAdd.register) {
+				throw new UnsupportedOperationException("This connection "+toAdd.register+" already has attachment "+original[i].twig+" so the attachment "+toAdd.twig+" can not be added.");
+			}
+		}
+
+		//Grow the array
+		HardwareConnection[] result = new HardwareConnection[len+1];
+		System.arraycopy(original, 0, result, 0, len);
+		result[len] = toAdd;
+		return result;
+	}
+
+	protected I2CConnection[] growI2CConnections(I2CConnection[] original, I2CConnection toAdd){
+		if (null==original) {
+			return new I2CConnection[] {toAdd};
+		} else {
+			int l = original.length;
+			I2CConnection[] result = new I2CConnection[l+1];
+			System.arraycopy(original, 0, result, 0, l);
+			result[l] = toAdd;
+			return result;
+		}
+	}
+
+	protected Hardware internalConnectAnalog(IODevice t, int connection, int customRate, int customAverageMS, boolean everyValue) {
+		if (t.isInput()) {
+			assert(!t.isOutput());
+			analogInputs = growHardwareConnections(analogInputs, new HardwareConnection(t,connection, customRate, customAverageMS, everyValue));
+		} else {
+			assert(t.isOutput());
+			pwmOutputs = growHardwareConnections(pwmOutputs, new HardwareConnection(t,connection, customRate, customAverageMS, everyValue));
+		}
+		return this;
+	}  
+
+	protected Hardware internalConnectDigital(IODevice t, int connection, int customRate, int customAverageMS, boolean everyValue) {
+		if (t.isInput()) {
+			assert(!t.isOutput());
+			digitalInputs = growHardwareConnections(digitalInputs, new HardwareConnection(t,connection, customRate, customAverageMS, everyValue));
+		} else {
+			assert(t.isOutput());			
+			digitalOutputs = growHardwareConnections(digitalOutputs, new HardwareConnection(t,connection, customRate, customAverageMS, everyValue));
+		}
+		return this;
+	}
+
+	@Override
+	public Hardware connect(I2CIODevice t){
+		logger.debug("Connecting I2C Device "+t.getClass());
+
+		if(t.isInput()){
+			i2cInputs = growI2CConnections(i2cInputs, t.getI2CConnection());
+		}
+
+		if(t.isOutput()){
+			i2cOutputs = growI2CConnections(i2cOutputs, t.getI2CConnection());
+		}
+
+		this.useI2C();
+		return this;
+	}
+	@Override
+	public Hardware connect(I2CIODevice t, int customRateMS){
+		logger.debug("Connecting I2C Device "+t.getClass());
+		if(t.isInput()){
+			i2cInputs = growI2CConnections(i2cInputs, new I2CConnection(t.getI2CConnection(),customRateMS));
+		}
+
+		if(t.isOutput()){
+			i2cOutputs = growI2CConnections(i2cOutputs, t.getI2CConnection());
+		}
+
+		this.useI2C();
+		return this;
+	}
+	@Override
+	public Hardware connect(I2CIODevice t, int customRateMS, int bus){
+		logger.debug("Connecting I2C Device "+t.getClass()+" on bus "+bus);
+		I2CConnection connection = new I2CConnection(t.getI2CConnection(),customRateMS,bus);
+		if(t.isInput()){
+			i2cInputs = growI2CConnections(i2cInputs, connection);
+		}
+
+		if(t.isOutput()){
+			i2cOutputs = growI2CConnections(i2cOutputs, connection);
+		}
+
+		this.useI2C();
+		return this;
+	}
+
+
+	@Override
+	public Hardware connectOnInterrupt(I2CIODevice t, int gpioLine){
+		logger.debug("Connecting I2C Device "+t.getClass()+" read on interrupt from gpio "+gpioLine);
+		assert(t.isInput()) : "only input devices can be read on interrupt";
+		//every interrupt is new data so every value is sent
+		I2CConnection connection = new I2CConnection(t.getI2CConnection(), I2CConnection.DEFAULT_BUS, gpioLine, true);
+		i2cInputs = growI2CConnections(i2cInputs, connection);
+		if(t.isOutput()){
+			i2cOutputs = growI2CConnections(i2cOutputs, connection);
+		}
+
+		this.useI2C();
+		return this;
+	}
+
+
+	public Hardware useSerial(Baud baud) {
+		this.rs232ClientBaud = baud;
+		return this;
+	}
+
+	/**
+	 *
+	 * @param baud
+	 * @param device Name of the port. On UNIX systems this will typically
+	 *             be of the form /dev/ttyX, where X is a port number. On
+	 *             Windows systems this will typically of the form COMX,
+	 *             where X is again a port number.
+	 */
+	public Hardware useSerial(Baud baud, String device) {
+		this.rs232ClientBaud = baud;
+		this.rs232ClientDevice = device;
+		return this;
+	}
+
+	public Hardware useI2C() {
+		this.configI2C = true;
+		return this;
+	}
+	public Hardware useCamera() {
+		this.configCamera = true;
+		return this;
+	}
+	@Deprecated //would be nice if we did not have to do this.
+	public Hardware useI2C(int bus) {
+		this.configI2C = true;
+		this.i2cBus = bus;
+		return this;
+	}
+
+	public Hardware useI2CHeartbeat(int heartbeatMS) {
+		assert(heartbeatMS>=0);
+		this.i2cHeartbeatMS = heartbeatMS;
+		return this;
+	}
+
+	public long getI2CHeartbeatMS() {
+		return this.i2cHeartbeatMS;
+	}
+
+	public Hardware useI2CTrafficClass(int address, I2CTrafficClass trafficClass) {
+		if (I2CTrafficClass.DEADLINE == trafficClass) {
+			throw new UnsupportedOperationException("Only polls are deadline traffic, commands may be LATENCY or BULK");
+		}
+		this.i2cTrafficClass[address] = trafficClass;
+		return this;
+	}
+
+	public I2CTrafficClass getI2CTrafficClass(int address) {
+		I2CTrafficClass result = i2cTrafficClass[address];
+		return null==result ? I2CTrafficClass.LATENCY : result;
+	}
+
+	public Hardware useEarliestDeadlineFirstPolling() {
+		this.edfPolling = true;
+		return this;
+	}
+
+	public boolean isEarliestDeadlineFirstPolling() {
+		return this.edfPolling;
+	}
+
+	public Hardware useHardPolling(int cpu, int fastestPeriodMicros) {
+		if (cpu<0 || fastestPeriodMicros<1) {
+			throw new UnsupportedOperationException("Hard polling needs a cpu and a period of at least 1 microsecond");
+		}
+		if (cpu==hardI2CPollCPU) {
+			throw new UnsupportedOperationException("Cpu "+cpu+" is already spinning for the I2C polling");
+		}
+		this.hardPollCPU = cpu;
+		this.hardPollPeriodNS = fastestPeriodMicros*1_000L;
+		return this;
+	}
+
+	public boolean isHardPolling() {
+		return this.hardPollCPU>=0;
+	}
+
+	public int getHardPollCPU() {
+		return this.hardPollCPU;
+	}
+
+	public Hardware useHardI2CPolling(int cpu) {
+		if (cpu<0) {
+			throw new UnsupportedOperationException("Hard I2C polling needs a cpu");
+		}
+		if (cpu==hardPollCPU) {
+			throw new UnsupportedOperationException("Cpu "+cpu+" is already spinning for the analog and digital polling");
+		}
+		this.hardI2CPollCPU = cpu;
+		return this;
+	}
+
+	public boolean isHardI2CPolling() {
+		return this.hardI2CPollCPU>=0;
+	}
+
+	public int getHardI2CPollCPU() {
+		return this.hardI2CPollCPU;
+	}
+
+	public Hardware useQuadratureDecoding(int publishRateMS) {
+		if (publishRateMS<=0) {
+			throw new UnsupportedOperationException("Publish rate must be positive");
+		}
+		this.quadratureRateMS = publishRateMS;
+		return this;
+	}
+
+	public Hardware useDigitalBank() {
+		this.digitalBank = true;
+		return this;
+	}
+
+	public boolean isDigitalBank() {
+		return this.digitalBank;
+	}
+
+	public Hardware useGPIOCharacterDevice(int chip) {
+		this.gpioChip = chip;
+		return this;
+	}
+
+	/**
+	 * @return chip number of /dev/gpiochipN or -1 when the sysfs files are used
+	 */
+	public int getGPIOCharacterDevice() {
+		return this.gpioChip;
+	}
+
+	public boolean isUseI2C() {
+		return this.configI2C;
+	}
+
+	public abstract HardwarePlatformType getPlatformType();
+	public abstract int read(Port port); //Platform specific
+	public abstract void write(Port port, int value); //Platform specific
+
+	public int maxAnalogMovingAverage() {
+		return MAX_MOVING_AVERAGE_SUPPORTED;
+	}
+
+
+	public void coldSetup(){
+		System.out.println("");
+	}
+
+	protected HardwareConnection[] buildUsedLines() {
+
+		HardwareConnection[] result = new HardwareConnection[digitalInputs.length+
+		                                                     digitalOutputs.length+
+		                                                     pwmOutputs.length+
+		                                                     analogInputs.length+
+		                                                     (configI2C?2:0)];
+
+		int pos = 0;
+		System.arraycopy(digitalInputs, 0, result, pos, digitalInputs.length);
+		pos+=digitalInputs.length;
+
+		findDup(result,pos,digitalOutputs, false);
+		System.arraycopy(digitalOutputs, 0, result, pos, digitalOutputs.length);
+		pos+=digitalOutputs.length;
+
+		findDup(result,pos,pwmOutputs, false);
+		System.arraycopy(pwmOutputs, 0, result, pos, pwmOutputs.length);
+		pos+=pwmOutputs.length;        
+
+		findDup(result,pos,analogInputs, true);
+		int j = analogInputs.length;
+		while (--j>=0) {
+			result[pos++] = new HardwareConnection(analogInputs[j].twig,(int) EdisonConstants.ANALOG_CONNECTOR_TO_PIN[analogInputs[j].register]);
+		}
+
+		if (configI2C) {
+			findDup(result,pos,EdisonConstants.i2cPins, false);
+			System.arraycopy(EdisonConstants.i2cPins, 0, result, pos, EdisonConstants.i2cPins.length);
+			pos+=EdisonConstants.i2cPins.length;
+		}
+
+		return result;
+	}
+
+	private static void findDup(HardwareConnection[] base, int baseLimit, HardwareConnection[] items, boolean mapAnalogs) {
+		int i = items.length;
+		while (--i>=0) {
+			int j = baseLimit;
+			while (--j>=0) {
+				if (mapAnalogs ? base[j].register ==  EdisonConstants.ANALOG_CONNECTOR_TO_PIN[items[i].register] :  base[j]==items[i]) {
+					throw new UnsupportedOperationException("Connector "+items[i]+" is assigned more than once.");
+				}
+			}
+		}     
+	}
+
+
+	public void shutdown() {
+		super.shutdown();
+		//can be overridden by specific hardware impl if shutdown is supported.
+	}
+
+
+	private void createUARTInputStage(Pipe<SerialInputSchema> masterUARTPipe) {
+		RS232Clientable client = buildSerialClient();
+		new SerialDataReaderStage(this.gm, masterUARTPipe, client);
+	}
+
+
+	protected RS232Clientable buildSerialClient() {
+		if (null==rs232Client) {
+			//custom hardware can override this
+			rs232Client = new RS232Client(rs232ClientDevice, rs232ClientBaud);
+		}
+		return rs232Client;
+	}
+
+	protected void createADInputStage(Pipe<GroveResponseSchema> masterResponsePipe) {
+		boolean onEdge = getEdgeDigitalInputs().length>0;
+		boolean encoders = getQuadratureEncoders().length>0;
+		boolean polled = (getAnalogInputs().length+getPolledDigitalInputs().length)>0 || !(onEdge|encoders);
+		
+		//each kind of input has its own producer, they are merged when there is more than one
+		int producers = (polled?1:0)+(onEdge?1:0)+(encoders?1:0);
+		Pipe<GroveResponseSchema>[] inputPipes = new Pipe[producers];
+		if (1==producers) {
+			inputPipes[0] = masterResponsePipe;
+		} else {
+			for(int i = 0; i<producers; i++) {
+				inputPipes[i] = GroveResponseSchema.instance.newPipe(DEFAULT_LENGTH, groveResponsePayloadSize());
+			}
+			new GroveResponseMergeStage(this.gm, inputPipes, masterResponsePipe);
+		}
+		
+		int p = 0;
+		if (polled) {
+			//NOTE: rate is NOT set since stage sets and configs its own rate based on polling need.
+			new ReadDeviceInputStage(this.gm, inputPipes[p++], this);
+		}
+		if (onEdge) {
+			new DigitalEdgeWatcherStage(this.gm, inputPipes[p++], this);
+		}
+		if (encoders) {
+			new QuadratureDecoderStage(this.gm, inputPipes[p++], this, quadratureRateMS);
+		}
+	}
+
+	protected void createI2COutputInputStage(Pipe<I2CCommandSchema>[] i2cPipes,
+			Pipe<TrafficReleaseSchema>[] masterI2CgoOut, Pipe<TrafficAckSchema>[] masterI2CackIn, Pipe<I2CResponseSchema> masterI2CResponsePipe) {
+
+		int[] buses = getI2CBuses();
+		
+		Pipe<I2CResponseSchema>[] busResponsePipes = new Pipe[buses.length];
+		busResponsePipes[0] = masterI2CResponsePipe;
+		if (buses.length>1 && null!=masterI2CResponsePipe) {
+			for(int b = 0; b<buses.length; b++) {
+				busResponsePipes[b] = I2CResponseSchema.instance.newPipe(DEFAULT_LENGTH, I2C_RESPONSE_PAYLOAD_SIZE);
+			}
+			new I2CResponseMergeStage(gm, busResponsePipes, masterI2CResponsePipe);
+		}
+		
+		//each bus gets its own stage with only the command channels bound to that bus,
+		//so every command is acknowledged by the stage which wrote it to the device
+		for(int b = 0; b<buses.length; b++) {
+			int count = 0;
+			for(int i = 0; i<i2cPipes.length; i++) {
+				if (buses[b] == i2cBusOfCommandPipe(i2cPipes[i])) {
+					count++;
+				}
+			}
+			Pipe<I2CCommandSchema>[] busPipes = new Pipe[count];
+			Pipe<TrafficReleaseSchema>[] busGo = new Pipe[count];
+			Pipe<TrafficAckSchema>[] busAck = new Pipe[count];
+			int j = 0;
+			for(int i = 0; i<i2cPipes.length; i++) {
+				if (buses[b] == i2cBusOfCommandPipe(i2cPipes[i])) {
+					busPipes[j] = i2cPipes[i];
+					busGo[j] = masterI2CgoOut[i];
+					busAck[j] = masterI2CackIn[i];
+					j++;
+				}
+			}
+			//TODO: build an output only version of this stage because there is nothing to read
+			new I2CJFFIStage(gm, busGo, busPipes, busAck, busResponsePipes[b], this, buses[b]);
+		}
+	}
+
+	protected void createADOutputStage(Pipe<GroveRequestSchema>[] requestPipes, Pipe<TrafficReleaseSchema>[] masterPINgoOut, Pipe<TrafficAckSchema>[] masterPINackIn) {
+		DirectHardwareAnalogDigitalOutputStage adOutputStage = new DirectHardwareAnalogDigitalOutputStage(gm, requestPipes, masterPINgoOut, masterPINackIn, this);
+	}
+
+
+
+	public boolean isListeningToSerial(Object listener) {
+		return listener instanceof SerialListenerBase
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, SerialListenerTransducer.class);
+	}
+	public boolean isListeningToCamera(Object listener) {
+		return listener instanceof ImageListenerBase
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, ImageListenerTransducer.class);
+	}
+	public boolean isListeningToI2C(Object listener) {
+		return listener instanceof I2CListenerBase
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, I2CListenerTransducer.class);
+	}
+
+	public boolean isListeningToPins(Object listener) {
+		return listener instanceof DigitalListenerBase || 
+				listener instanceof AnalogListenerBase ||
+				listener instanceof AnalogBlockListenerBase ||
+				listener instanceof RotaryListenerBase
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, DigitalListenerTransducer.class)
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, AnalogListenerTransducer.class)
+				|| !ChildClassScanner.visitUsedByClass(listener, deepListener, RotaryListenerTransducer.class);
+	}
+
+	private Pipe<MessagePubSub> getTempPipeOfStartupSubscriptions() {
+		if (null==tempPipeOfStartupSubscriptions) {
+
+			final PipeConfig<MessagePubSub> messagePubSubConfig = new PipeConfig<MessagePubSub>(MessagePubSub.instance, maxStartupSubs,maxTopicLengh);   
+			tempPipeOfStartupSubscriptions = new Pipe<MessagePubSub>(messagePubSubConfig);
+
+		}		
+
+		return tempPipeOfStartupSubscriptions;
+	}
+
+
+	public boolean hasI2CInputs() {
+		return this.i2cInputs!=null && this.i2cInputs.length>0;
+	}
+
+	public boolean hasI2CInputs(int bus) {
+		return getI2CInputs(bus).length>0;
+	}
+
+	public I2CConnection[] getI2CInputs() {
+		return null==i2cInputs?new I2CConnection[0]:i2cInputs;
+	}
+
+	public I2CConnection[] getI2CInputs(int bus) {
+		bus = i2cBusOf(bus);
+		I2CConnection[] all = getI2CInputs();
+		int count = 0;
+		I2CConnection[] result = new I2CConnection[all.length];
+		for(int i = 0; i<all.length; i++) {
+			if (bus == i2cBusOf(all[i].bus)) {
+				result[count++] = all[i];
+			}
+		}
+		return count==all.length ? all : Arrays.copyOf(result, count);
+	}
+
+	public HardwareConnection[] getAnalogInputs() {
+		return analogInputs;
+	}
+
+	public HardwareConnection[] getDigitalInputs() {
+		return digitalInputs;
+	}
+
+	public ScriptedSchedule buildI2CPollSchedule() {
+		return buildI2CPollSchedule(i2cBus);
+	}
+
+	public ScriptedSchedule buildI2CPollSchedule(int bus) {
+		I2CConnection[] localInputs = getI2CInputs(bus);
+
+		//interrupt driven connections are read when their line fires so they are not scheduled
+		int[] polledIdx = new int[localInputs.length];
+		int polledCount = 0;
+		for (int i = 0; i < localInputs.length; i++) {
+			if (I2CConnection.NO_INTERRUPT == localInputs[i].interruptLine) {
+				polledIdx[polledCount++] = i;
+			}
+		}
+		if (0 == polledCount) {
+			return null;
+		}
+		
+		long[] schedulePeriods = new long[polledCount];
+		for (int i = 0; i < polledCount; i++) {
+			schedulePeriods[i] = localInputs[polledIdx[i]].responseMS*MS_TO_NS;
+		}
+		
+		logger.info("Known I2C rates: {}",Arrays.toString(schedulePeriods));
+		ScriptedSchedule schedule = PMath.buildScriptedSchedule(schedulePeriods);
+		if (polledCount != localInputs.length) {
+			//script must hold the index into all the inputs for this bus
+			int[] script = schedule.script;
+			for (int i = 0; i < script.length; i++) {
+				if (-1 != script[i]) {
+					script[i] = polledIdx[script[i]];
+				}
+			}
+		}
+		return groupByAddress(schedule, localInputs);
+
+	}
+
+	/**
+	 * @return earliest deadline first schedule of the polled inputs on this bus, ids are the index into getI2CInputs(bus)
+	 */
+	public EDFPollSchedule buildI2CPollEDF(int bus) {
+		I2CConnection[] localInputs = getI2CInputs(bus);
+		long[] periods = new long[localInputs.length];
+		int[] ids = new int[localInputs.length];
+		int count = 0;
+		for (int i = 0; i < localInputs.length; i++) {
+			if (I2CConnection.NO_INTERRUPT == localInputs[i].interruptLine) {
+				periods[count] = localInputs[i].responseMS*MS_TO_NS;
+				ids[count++] = i;
+			}
+		}
+		return 0==count ? null : new EDFPollSchedule(Arrays.copyOf(periods, count), Arrays.copyOf(ids, count));
+	}
+
+	/**
+	 * @return backing used to watch the interrupt lines of I2C devices, each caller gets its own.
+	 */
+	public GPIOEdgeBacking newGPIOEdgeBacking() {
+		return gpioChip>=0 ? new GPIOCharDevBacking("/dev/gpiochip"+gpioChip) : new GPIOSysfsLineBacking();
+	}
+
+	/**
+	 * @return backing which reads and writes many lines at once, each caller gets its own.
+	 */
+	public GPIOLineBacking newGPIOLineBacking() {
+		return gpioChip>=0 ? new GPIOCharDevBacking("/dev/gpiochip"+gpioChip) : new GPIOSysfsLineBacking();
+	}
+
+	/**
+	 * @return true if the digital ports are GPIO lines of this board, false when they sit behind another chip, e.g. the GrovePi Atmega.
+	 */
+	public boolean hasDirectGPIO() {
+		return true;
+	}
+
+	/**
+	 * @return GPIO line number of the pin behind this port, platforms which remap their pins override this.
+	 */
+	public int gpioLine(Port port) {
+		return port.port;
+	}
+
+	/**
+	 * Reorders each block of the schedule so connections sharing an address are adjacent.
+	 * Every block keeps the same members so the rates are unchanged, this only cuts down
+	 * on switching the bus from one device address to another.
+	 */
+	static ScriptedSchedule groupByAddress(ScriptedSchedule schedule, I2CConnection[] connections) {
+		int[] script = schedule.script;
+		int[] block = new int[script.length];
+		
+		int start = 0;
+		while (start<script.length) {
+			int end = start;
+			while (end<script.length && -1!=script[end]) {
+				end++;
+			}
+			int len = end-start;
+			System.arraycopy(script, start, block, 0, len);
+			
+			//stable, addresses are taken in the order they first appear in the block
+			int j = start;
+			for(int i = 0; i<len; i++) {
+				if (-1 != block[i]) {
+					byte address = connections[block[i]].address;
+					for(int k = i; k<len; k++) {
+						if (-1!=block[k] && address==connections[block[k]].address) {
+							script[j++] = block[k];
+							block[k] = -1;
+						}
+					}
+				}
+			}
+			start = end+1;
+		}
+		return schedule;
+	}
+
+	public boolean hasDigitalOrAnalogInputs() {
+		return (analogInputs.length+digitalInputs.length)>0;
+	}
+
+	public boolean hasDigitalOrAnalogOutputs() {
+		return (pwmOutputs.length+digitalOutputs.length)>0;
+	}
+
+	public HardwareConnection[] combinedADConnections() {
+		HardwareConnection[] localAInputs = getAnalogInputs();
+		HardwareConnection[] localDInputs = scheduledDigitalInputs();
+
+		int totalCount = localAInputs.length + localDInputs.length;
+
+		HardwareConnection[] results = new HardwareConnection[totalCount];
+		System.arraycopy(localAInputs, 0, results, 0,                   localAInputs.length);
+		System.arraycopy(localDInputs, 0, results, localAInputs.length, localDInputs.length);
+
+		return results;
+	}
+
+	/**
+	 * @return polled digital inputs, when banked they are all replaced by one at the fastest of their rates
+	 */
+	private HardwareConnection[] scheduledDigitalInputs() {
+		HardwareConnection[] polled = getPolledDigitalInputs();
+		HardwareConnection[] banked = getBankedDigitalInputs();
+		if (banked.length==0) {
+			return polled;
+		}
+		HardwareConnection[] result = new HardwareConnection[polled.length-banked.length+1];
+		int count = 0;
+		int rateMS = Integer.MAX_VALUE;
+		for (int i = 0; i < polled.length; i++) {
+			if (SimpleDigitalTwig.RotaryEncoder==polled[i].twig) {
+				result[count++] = polled[i];
+			} else {
+				rateMS = Math.min(rateMS, polled[i].responseMS);
+			}
+		}
+		result[count] = new HardwareConnection(banked[0].twig, banked[0].register, rateMS, banked[0].movingAverageWindowMS, banked[0].sendEveryValue);
+		return result;
+	}
+
+	/**
+	 * @return polled digital inputs which are read together, empty unless useDigitalBank was called
+	 */
+	public HardwareConnection[] getBankedDigitalInputs() {
+		HardwareConnection[] polled = getPolledDigitalInputs();
+		if (!digitalBank) {
+			return EMPTY;
+		}
+		HardwareConnection[] result = new HardwareConnection[polled.length];
+		int count = 0;
+		for (int i = 0; i < polled.length; i++) {
+			//encoders need both pins read back to back so they are left out
+			if (SimpleDigitalTwig.RotaryEncoder!=polled[i].twig) {
+				result[count++] = polled[i];
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Reads all the given digital inputs in one pass, with the GPIO character device this is one call.
+	 * The same inputs must be passed each time.
+	 *
+	 * @return bit n is the value of digital port n
+	 */
+	public long readDigitalBank(HardwareConnection[] inputs) {
+		long result = 0;
+		if (gpioChip>=0) {
+			if (null==bankBacking) {
+				int[] lines = new int[inputs.length];
+				for (int i = 0; i < lines.length; i++) {
+					lines[i] = gpioLine(Port.DIGITALS[inputs[i].register]);
+				}
+				bankBacking = newGPIOLineBacking();
+				bankBacking.configure(lines, new int[0], 0);
+			}
+			long values = bankBacking.readInputs();
+			for (int i = 0; i < inputs.length; i++) {
+				result |= (1L & (values>>>i))<<inputs[i].register;
+			}
+		} else {
+			for (int i = 0; i < inputs.length; i++) {
+				if (0!=read(Port.DIGITALS[inputs[i].register])) {
+					result |= 1L<<inputs[i].register;
+				}
+			}
+		}
+		return result;
+	}
+
+	private long pollPeriodNS(HardwareConnection connection) {
+		//only a hard polled input can go faster than once a millisecond
+		return (0==connection.responseMS && isHardPolling()) ? hardPollPeriodNS : connection.responseMS*MS_TO_NS;
+	}
+
+	private long[] adPollPeriods() {
+		HardwareConnection[] localAInputs = getAnalogInputs();
+		HardwareConnection[] localDInputs = scheduledDigitalInputs();
+
+		int totalCount = localAInputs.length + localDInputs.length;
+		if (0==totalCount) {
+			return null;
+		}
+
+		long[] schedulePeriods = new long[totalCount];
+		int j = 0;
+		for (int i = 0; i < localAInputs.length; i++) {
+			schedulePeriods[j++] = pollPeriodNS(localAInputs[i]);
+		}
+		for (int i = 0; i < localDInputs.length; i++) {
+			schedulePeriods[j++] = pollPeriodNS(localDInputs[i]);
+		}
+		//analogs then the digitals
+		return schedulePeriods;
+	}
+
+	public ScriptedSchedule buildADPollSchedule() {
+		long[] schedulePeriods = adPollPeriods();
+		return null==schedulePeriods ? null : PMath.buildScriptedSchedule(schedulePeriods);
+	}
+
+	/**
+	 * @return earliest deadline first schedule of the analog and digital inputs, ids are the index into combinedADConnections()
+	 */
+	public EDFPollSchedule buildADPollEDF() {
+		long[] schedulePeriods = adPollPeriods();
+		if (null==schedulePeriods) {
+			return null;
+		}
+		int[] ids = new int[schedulePeriods.length];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i;
+		}
+		return new EDFPollSchedule(schedulePeriods, ids);
+	}
+
+	public byte convertToPort(byte connection) {
+		return connection;
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port, int customRateMS, int customAvgWindowMS, boolean everyValue) {
+		
+		int portsLeft = t.pinsUsed();
+
+		while (--portsLeft >= 0){
+			deviceOnPort[port.ordinal()] = t;
+
+			if (0 != (port.mask&Port.IS_ANALOG)) {
+				internalConnectAnalog(t, port.port, customRateMS, customAvgWindowMS, everyValue);
+			}
+			else if (0 != (port.mask&Port.IS_DIGITAL)) {
+				internalConnectDigital(t, port.port, customRateMS, customAvgWindowMS, everyValue);
+			}
+			port = Port.nextPort(port);
+		}
+		return this;
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port, int customRateMS, boolean everyValue, int samplesPerBlock) {
+		if (!t.isInput() || 0 == (port.mask&Port.IS_ANALOG)) {
+			throw new UnsupportedOperationException("Only analog inputs can be sampled in blocks");
+		}
+		if (!everyValue) {
+			throw new UnsupportedOperationException("Blocks hold every sample, everyValue must be true");
+		}
+		if (samplesPerBlock<1 || samplesPerBlock>MAX_ANALOG_BLOCK_SAMPLES) {
+			throw new UnsupportedOperationException("Samples per block must be from 1 to "+MAX_ANALOG_BLOCK_SAMPLES);
+		}
+		int portsLeft = t.pinsUsed();
+		Port p = port;
+		while (--portsLeft >= 0){
+			analogBlockSamples[p.port] = samplesPerBlock;
+			p = Port.nextPort(p);
+		}
+		return connect(t, port, customRateMS, everyValue);
+	}
+
+	/**
+	 * @return samples in each block message for this analog port, 0 when each is sent on its own
+	 */
+	public int getAnalogBlockSamples(int analogPort) {
+		return analogBlockSamples[analogPort];
+	}
+
+	/**
+	 * @return largest variable length field on the pin response pipes, room for the biggest analog block
+	 */
+	public int groveResponsePayloadSize() {
+		int max = 0;
+		for (int i = 0; i < analogBlockSamples.length; i++) {
+			max = Math.max(max, analogBlockSamples[i]);
+		}
+		return Math.max(DEFAULT_PAYLOAD_SIZE, max<<2);
+	}
+
+	@Override
+	public Hardware connectOnEdge(ADIODevice t, Port port) {
+		if (!t.isInput() || 1!=t.range() || 0 == (port.mask&Port.IS_DIGITAL)) {
+			throw new UnsupportedOperationException("Only digital inputs can be connected on edge");
+		}
+		if (!hasDirectGPIO()) {
+			throw new UnsupportedOperationException("Digital ports on this board are not GPIO lines so they can not be connected on edge, use connect instead");
+		}
+		int portsLeft = t.pinsUsed();
+		Port p = port;
+		while (--portsLeft >= 0){
+			digitalEdgePorts |= 1L<<p.port;
+			p = Port.nextPort(p);
+		}
+		return connect(t, port);
+	}
+
+	/**
+	 * @return true if this digital input is published on edge instead of being polled
+	 */
+	public boolean isOnEdge(HardwareConnection connection) {
+		return 0 != (digitalEdgePorts & (1L<<connection.register));
+	}
+
+	/**
+	 * @return true if this is a pin of a rotary encoder decoded by its own stage instead of being polled
+	 */
+	public boolean isQuadratureEncoder(HardwareConnection connection) {
+		return quadratureRateMS>0 && SimpleDigitalTwig.RotaryEncoder==connection.twig;
+	}
+
+	public HardwareConnection[] getEdgeDigitalInputs() {
+		return filterDigitalInputs(INPUT_ON_EDGE);
+	}
+
+	public HardwareConnection[] getPolledDigitalInputs() {
+		return (0==digitalEdgePorts && 0==quadratureRateMS) ? getDigitalInputs() : filterDigitalInputs(INPUT_POLLED);
+	}
+
+	/**
+	 * @return one connection for each rotary encoder decoded by its own stage, the lower of its two ports
+	 */
+	public HardwareConnection[] getQuadratureEncoders() {
+		HardwareConnection[] pins = filterDigitalInputs(INPUT_ENCODER);
+		//both pins of an encoder are connected one after the other
+		HardwareConnection[] result = new HardwareConnection[pins.length>>1];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = pins[i<<1];
+		}
+		return result;
+	}
+
+	private static final int INPUT_POLLED = 0;
+	private static final int INPUT_ON_EDGE = 1;
+	private static final int INPUT_ENCODER = 2;
+
+	private int inputKind(HardwareConnection connection) {
+		return isQuadratureEncoder(connection) ? INPUT_ENCODER : (isOnEdge(connection) ? INPUT_ON_EDGE : INPUT_POLLED);
+	}
+
+	private HardwareConnection[] filterDigitalInputs(int kind) {
+		HardwareConnection[] localDInputs = getDigitalInputs();
+		HardwareConnection[] result = new HardwareConnection[localDInputs.length];
+		int count = 0;
+		for (int i = 0; i < localDInputs.length; i++) {
+			if (kind == inputKind(localDInputs[i])) {
+				result[count++] = localDInputs[i];
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port, int customRateMS, int customAvgWindowMS) {
+		return connect(t,port,customRateMS, customAvgWindowMS ,DEFAULT_EVERY_VALUE);
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port, int customRateMS) {
+		return connect(t,port,customRateMS, DEFAULT_AVERAGE_WINDOW_MS ,false);
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port, int customRateMS, boolean everyValue) {
+		return connect(t,port,customRateMS, DEFAULT_AVERAGE_WINDOW_MS ,everyValue);
+	}
+
+	@Override
+	public Hardware connect(ADIODevice t, Port port) {
+		return connect (t, port, t.defaultPullRateMS(),DEFAULT_AVERAGE_WINDOW_MS,false);
+	}
+
+	public void releasePinOutTraffic(int count, MsgCommandChannel<?> gcc) {		
+		MsgCommandChannel.publishGo(count, IDX_PIN, gcc);		
+	}
+
+	public void releaseI2CTraffic(int count, MsgCommandChannel<?> gcc) {
+		MsgCommandChannel.publishGo(count, IDX_I2C, gcc);
+	}
+
+	@Override
+	public void releasePubSubTraffic(int count, MsgCommandChannel<?> gcc) {
+		MsgCommandChannel.publishGo(count, IDX_MSG, gcc);
+	}
+
+	public void buildStages(MsgRuntime runtime) {
+
+		IntHashTable subscriptionPipeLookup2 = MsgRuntime.getSubPipeLookup(runtime);
+		GraphManager gm2 = MsgRuntime.getGraphManager(runtime);
+		
+		Pipe<I2CResponseSchema>[] i2cResponsePipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, I2CResponseSchema.instance);
+		Pipe<GroveResponseSchema>[] responsePipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, GroveResponseSchema.instance);
+
+		Pipe<SerialOutputSchema>[] serialOutputPipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, SerialOutputSchema.instance);
+		Pipe<I2CCommandSchema>[] i2cPipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, I2CCommandSchema.instance);
+		Pipe<GroveRequestSchema>[] pinRequestPipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, GroveRequestSchema.instance);
+		Pipe<SerialInputSchema>[] serialInputPipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, SerialInputSchema.instance);
+		Pipe<ImageSchema>[] imageInputPipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, ImageSchema.instance);
+		Pipe<NetResponseSchema>[] httpClientResponsePipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, NetResponseSchema.instance);
+		Pipe<MessageSubscription>[] subscriptionPipes = GraphManager.allPipesOfTypeWithNoProducer(gm2, MessageSubscription.instance);
+
+		Pipe<TrafficOrderSchema>[] orderPipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, TrafficOrderSchema.instance);
+		Pipe<ClientHTTPRequestSchema>[] httpClientRequestPipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, ClientHTTPRequestSchema.instance);
+		Pipe<MessagePubSub>[] messagePubSub = GraphManager.allPipesOfTypeWithNoConsumer(gm2, MessagePubSub.instance);
+		Pipe<IngressMessages>[] ingressMessagePipes = GraphManager.allPipesOfTypeWithNoConsumer(gm2, IngressMessages.instance);
+
+
+		//TODO: must pull out those pubSub Pipes for direct connections
+		//TODO: new MessageSchema for direct messages from point to point
+		//      create the pipe instead of pub sub and attach?
+		//TODO: declare up front once in connections, direct connect topics
+		//      upon seeing these we build a new pipe
+
+
+		int commandChannelCount = orderPipes.length;
+
+		int eventSchemas = 0;
+		IDX_PIN = pinRequestPipes.length>0 ? eventSchemas++ : -1;
+		IDX_I2C = i2cPipes.length>0 || i2cResponsePipes.length > 0 ? eventSchemas++ : -1;  //the 'or' check is to ensure that reading without a cmd channel works
+		IDX_MSG = (IntHashTable.isEmpty(subscriptionPipeLookup2) && subscriptionPipes.length==0 && messagePubSub.length==0) ? -1 : eventSchemas++;
+		IDX_NET = useNetClient(httpClientRequestPipes) ? eventSchemas++ : -1;
+		IDX_SER = serialOutputPipes.length>0 ? eventSchemas++ : -1;
+
+		long timeout = 20_000; //20 seconds
+
+		//TODO: can we share this while with the parent BuilderImpl, I think so..
+		int maxGoPipeId = 0;
+
+		int t = commandChannelCount;
+
+		Pipe<TrafficReleaseSchema>[][] masterGoOut = new Pipe[eventSchemas][0];
+		Pipe<TrafficAckSchema>[][]     masterAckIn = new Pipe[eventSchemas][0];
+
+		if (IDX_PIN >= 0) {	
+			masterGoOut[IDX_PIN] = new Pipe[pinRequestPipes.length];
+			masterAckIn[IDX_PIN] = new Pipe[pinRequestPipes.length];
+		}		
+		if (IDX_I2C >= 0) {
+			masterGoOut[IDX_I2C] = new Pipe[i2cPipes.length];
+			masterAckIn[IDX_I2C] = new Pipe[i2cPipes.length];
+		}		
+		if (IDX_MSG >= 0) {
+			masterGoOut[IDX_MSG] = new Pipe[messagePubSub.length];
+			masterAckIn[IDX_MSG] = new Pipe[messagePubSub.length];
+		}		
+		if (IDX_NET >= 0) {
+			masterGoOut[IDX_NET] = new Pipe[httpClientRequestPipes.length];
+			masterAckIn[IDX_NET] = new Pipe[httpClientRequestPipes.length];
+		}		
+		if (IDX_SER >=0) {
+			masterGoOut[IDX_SER] = new Pipe[serialOutputPipes.length];
+			masterAckIn[IDX_SER] = new Pipe[serialOutputPipes.length];
+		}
+
+
+		while (--t>=0) {
+
+			int features = getFeatures(gm2, orderPipes[t]);
+
+			Pipe<TrafficReleaseSchema>[] goOut = new Pipe[eventSchemas];
+			Pipe<TrafficAckSchema>[] ackIn = new Pipe[eventSchemas];
+
+			boolean isDynamicMessaging = (features&Behavior.DYNAMIC_MESSAGING) != 0;
+			boolean isNetRequester     = (features&Behavior.NET_REQUESTER) != 0;
+			boolean isPinWriter        = (features&FogRuntime.PIN_WRITER) != 0;
+			boolean isI2CWriter        = (features&FogRuntime.I2C_WRITER) != 0;
+			boolean isSerialWriter     = (features&FogRuntime.SERIAL_WRITER) != 0;
+
+			boolean hasConnections = false;
+			if (isDynamicMessaging && IDX_MSG>=0) {
+				hasConnections = true;		 		
+				maxGoPipeId = populateGoAckPipes(maxGoPipeId, masterGoOut, masterAckIn, goOut, ackIn, IDX_MSG);
+			}
+			if (isNetRequester && IDX_NET>=0) {
+				hasConnections = true;		 		
+				maxGoPipeId = populateGoAckPipes(maxGoPipeId, masterGoOut, masterAckIn, goOut, ackIn, IDX_NET);
+			}
+			if (isPinWriter && IDX_PIN>=0) {
+				hasConnections = true;	
+				maxGoPipeId = populateGoAckPipes(maxGoPipeId, masterGoOut, masterAckIn, goOut, ackIn, IDX_PIN);
+			}
+			if (isI2CWriter && IDX_I2C>=0) {
+				hasConnections = true;		 		
+				maxGoPipeId = populateGoAckPipes(maxGoPipeId, masterGoOut, masterAckIn, goOut, ackIn, IDX_I2C);
+			}
+			if (isSerialWriter && IDX_SER>=0) {
+				hasConnections = true;		 		
+				maxGoPipeId = populateGoAckPipes(maxGoPipeId, masterGoOut, masterAckIn, goOut, ackIn, IDX_SER);
+			}
+
+			if (true | hasConnections) {
+				TrafficCopStage trafficCopStage = new TrafficCopStage(gm, timeout, orderPipes[t], ackIn, goOut, runtime, this);
+			} else {
+				//this optimization can no longer be done due to the use of shutdown on command channel.
+				//    revisit this later...
+				//TODO: we can reintroduce this as long has we have a stage here which does shutdown on -1;
+				PipeCleanerStage.newInstance(gm, orderPipes[t]);
+			}
+		}
+
+		initChannelBlocker(maxGoPipeId);
+		buildHTTPClientGraph(httpClientResponsePipes, httpClientRequestPipes, masterGoOut, masterAckIn);
+
+		if (IDX_MSG <0) {
+			logger.trace("saved some resources by not starting up the unused pub sub service.");
+		} else {
+			createMessagePubSubStage(subscriptionPipeLookup2, ingressMessagePipes,
+					messagePubSub,
+					masterGoOut[IDX_MSG], masterAckIn[IDX_MSG], subscriptionPipes);
+		}
+
+		int c = masterGoOut.length;
+		while (--c>=0) {
+			if (!PronghornStage.noNulls(masterGoOut[c])) {
+				throw new UnsupportedOperationException("Flag is missing in command channel for "+featureName(c));
+			}
+			if (!PronghornStage.noNulls(masterAckIn[c])) {
+				throw new UnsupportedOperationException("Flag is missing in command channel for "+featureName(c));
+			}
+		}		
+
+
+		//////////////////
+		//only build and connect I2C if it is used for either in or out  
+		//////////////////
+		Pipe<I2CResponseSchema> masterI2CResponsePipe = null;
+		if (i2cResponsePipes.length>0) {
+			masterI2CResponsePipe =  I2CResponseSchema.instance.newPipe(DEFAULT_LENGTH, I2C_RESPONSE_PAYLOAD_SIZE);
+			ReplicatorStage.newInstance(gm, masterI2CResponsePipe, i2cResponsePipes);
+		}
+
+		if (i2cPipes.length>0 || (null!=masterI2CResponsePipe)) {
+			createI2COutputInputStage(i2cPipes, masterGoOut[IDX_I2C], masterAckIn[IDX_I2C], masterI2CResponsePipe);
+		}
+
+		//////////////
+		//only build and connect gpio input responses if it is used
+		//////////////
+		if (responsePipes.length>1) {
+			Pipe<GroveResponseSchema> masterResponsePipe = GroveResponseSchema.instance.newPipe(DEFAULT_LENGTH, groveResponsePayloadSize());
+			ReplicatorStage.newInstance(gm, masterResponsePipe, responsePipes);
+			createADInputStage(masterResponsePipe);
+		} else {
+			if (responsePipes.length==1) {
+				createADInputStage(responsePipes[0]);
+			}
+		}
+
+		/////////////
+		//only build serial output if data is sent
+		/////////////
+		if (serialOutputPipes.length>0) {	
+			assert(null!=masterGoOut[IDX_SER]);
+			assert(serialOutputPipes.length == masterGoOut[IDX_SER].length) : serialOutputPipes.length+" == "+masterGoOut[IDX_SER].length;
+			createSerialOutputStage(serialOutputPipes, masterGoOut[IDX_SER], masterAckIn[IDX_SER]);			
+		}
+
+		//////////////
+		//only build serial input if the data is consumed
+		//////////////
+		if (serialInputPipes.length>1) {
+			Pipe<SerialInputSchema> masterUARTPipe = new Pipe<SerialInputSchema>(pcm.getConfig(SerialInputSchema.class));
+
+			new ReplicatorStage<SerialInputSchema>(gm, masterUARTPipe, serialInputPipes);   
+			createUARTInputStage(masterUARTPipe);
+		} else {
+			if (serialInputPipes.length==1) {
+				createUARTInputStage(serialInputPipes[0]);
+			} else {
+
+
+			}
+		}
+		
+				///////////////
+		//only build image input if the data is consumed
+		///////////////
+		// TODO: Is this where we determine what kind of platform to listen on (e.g., Edison, Pi)?
+		if (imageInputPipes.length > 1) {
+			Pipe<ImageSchema> masterImagePipe = ImageSchema.instance.newPipe(DEFAULT_LENGTH, DEFAULT_PAYLOAD_SIZE);
+			new ReplicatorStage<ImageSchema>(gm, masterImagePipe, imageInputPipes);
+			new PiImageListenerStage(gm, masterImagePipe, imageTriggerRateMillis);
+		} else if (imageInputPipes.length == 1){
+			new PiImageListenerStage(gm, imageInputPipes[0], imageTriggerRateMillis);
+		}
+		///////////////
+		//only build direct pin output when we detected its use
+		///////////////
+		if (IDX_PIN>=0) {
+			assert(PronghornStage.noNulls(masterGoOut[IDX_PIN])) : "Go Pipe must not contain nulls";
+			assert(PronghornStage.noNulls(masterAckIn[IDX_PIN])) : "Ack Pipe must not contain nulls";
+
+			createADOutputStage(pinRequestPipes, masterGoOut[IDX_PIN], masterAckIn[IDX_PIN]);
+		}
+	}
+
+	private String featureName(final int c) {
+
+		if (c == IDX_I2C) {
+			//FogRuntime.I2C_WRITER;
+			return "I2C_WRITER";
+		}
+		if (c == IDX_MSG) {
+			//Behavior.DYNAMIC_MESSAGING;
+			return "DYNAMIC_MESSAGING";
+		}
+		if (c == IDX_NET) { //TODO: where is the responder??
+			//Behavior.NET_REQUESTER;
+			return "NET_REQUESTER";
+		}
+		if (c == IDX_PIN) {
+			//FogRuntime.PIN_WRITER;
+			return "PIN_WRITER";
+		}
+		if (c == IDX_SER) {
+			//FogRuntime.SERIAL_WRITER;
+			return "SERIAL_WRITER";
+		}
+
+		return null;
+	}
+
+	protected void createSerialOutputStage(Pipe<SerialOutputSchema>[] serialOutputPipes,
+			Pipe<TrafficReleaseSchema>[] masterGoOut, Pipe<TrafficAckSchema>[] masterAckIn) {
+		new SerialDataWriterStage(gm, serialOutputPipes, masterGoOut, masterAckIn,
+				this, this.buildSerialClient());
+	}
+
+	public static int serialIndex(HardwareImpl hardware) {
+		return hardware.IDX_SER;
+	}
+
+	public static int i2cIndex(HardwareImpl hardware) {
+		return hardware.IDX_I2C;
+	}
+
+	@Override
+	public int pubSubIndex() {
+		return IDX_MSG;
+	}
+
+	@Override
+	public int netIndex() {
+		return IDX_NET;
+	}
+
+	public boolean isTestHardware() {
+		return false;
+	}
+
+
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.ociweb.iot.hardware;
 
+import com.ociweb.iot.hardware.impl.grovepi.GrovePiConstants;
+
 /**
  * Contains all the information necessary for reading specific I2C Devices. Is used by I2CJFFIStage.
  * @author alexherriott
@@ -14,12 +16,27 @@ public class I2CConnection extends HardwareConnection {
 	public final byte[] setup;			//setup bytes sent to initialize communications
 	public final int readBytesAtStartUp;            // number of bytes to read at start up
 	public final long delayAfterRequestNS; //delay between read request and i2c.read
+	public final boolean writeReadCombined; //read request and i2c.read done as one transaction with no delay
+	public final int bus;				//i2c bus this device is on, DEFAULT_BUS for the one chosen by the hardware
+	public final int interruptLine;		//gpio line raised when data is ready, NO_INTERRUPT when polled on schedule
+	public final I2CFIFO fifo;			//device queues samples which are drained together, null when each poll reads one value
+
+	public static final int DEFAULT_BUS = -1;
+	public static final int NO_INTERRUPT = -1;
 
 // TODO: this has to become configurable
 	private final static int GROVE_PI_MIN_SCAN_DELAY_NS = 80_000;
 	
 	public I2CConnection(I2CConnection original ,int responseMS){// for connectI2C(device,response_time) method
-		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, original.setup, responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, original.sendEveryValue);
+		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, original.setup, responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, original.sendEveryValue, original.bus, original.interruptLine, original.fifo);
+	}
+
+	public I2CConnection(I2CConnection original ,int responseMS, int bus){// for connectI2C(device,response_time,bus) method
+		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, original.setup, responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, original.sendEveryValue, bus, original.interruptLine, original.fifo);
+	}
+
+	public I2CConnection(I2CConnection original ,int bus, int interruptLine, boolean everyValue){// for connectOnInterrupt(device,line) method
+		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, original.setup, original.responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, everyValue || null!=original.fifo, bus, interruptLine, original.fifo);
 	}
 
 	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup) {
@@ -31,7 +48,7 @@ public class I2CConnection extends HardwareConnection {
 	}
 
 	public I2CConnection(I2CConnection original, byte[] newSetup){
-		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, newSetup, original.responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, original.sendEveryValue);
+		this(original.twig, original.address, original.readCmd, original.readBytes, original.register, newSetup, original.responseMS, HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS, original.sendEveryValue, original.bus, original.interruptLine, original.fifo);
 	}
         
 	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup, boolean everyValue) {
@@ -42,6 +59,10 @@ public class I2CConnection extends HardwareConnection {
 		this.register = register;
 		this.setup = setup;
 		this.delayAfterRequestNS = GROVE_PI_MIN_SCAN_DELAY_NS +twig.pullResponseMinWaitNS();
+		this.writeReadCombined = isCombinable(twig, address, readCmd);
+		this.bus = DEFAULT_BUS;
+		this.interruptLine = NO_INTERRUPT;
+		this.fifo = null;
 		this.readBytesAtStartUp = 0;
 	}
 
@@ -53,6 +74,10 @@ public class I2CConnection extends HardwareConnection {
 		this.register = register;
 		this.setup = setup;
 		this.delayAfterRequestNS = GROVE_PI_MIN_SCAN_DELAY_NS +twig.pullResponseMinWaitNS();
+		this.writeReadCombined = isCombinable(twig, address, readCmd);
+		this.bus = DEFAULT_BUS;
+		this.interruptLine = NO_INTERRUPT;
+		this.fifo = null;
 		this.readBytesAtStartUp = readBytesAtStartUp;
 	}
 
@@ -61,6 +86,21 @@ public class I2CConnection extends HardwareConnection {
 	}
 
 	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup, int pullRateMS, int customAverageMS, boolean everyValue) {
+		this(twig,address,readCmd,readBytes,register,setup,pullRateMS,customAverageMS,everyValue,DEFAULT_BUS);
+	}
+
+	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup, int pullRateMS, int customAverageMS, boolean everyValue, int bus) {
+		this(twig,address,readCmd,readBytes,register,setup,pullRateMS,customAverageMS,everyValue,bus,NO_INTERRUPT,null);
+	}
+
+	/**
+	 * For devices read through their FIFO, readBytes is the size of one sample and every batch is sent.
+	 */
+	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup, I2CFIFO fifo) {
+		this(twig,address,readCmd,readBytes,register,setup,twig.defaultPullRateMS(),HardwareConnection.DEFAULT_AVERAGE_WINDOW_MS,true,DEFAULT_BUS,NO_INTERRUPT,fifo);
+	}
+
+	public I2CConnection(IODevice twig, byte address, byte[] readCmd, int readBytes, int register, byte[] setup, int pullRateMS, int customAverageMS, boolean everyValue, int bus, int interruptLine, I2CFIFO fifo) {
 		super(twig, UNKOWN_REGISTER, pullRateMS, customAverageMS, everyValue);
 		this.address = address;
 		this.readCmd = readCmd;
@@ -68,9 +108,18 @@ public class I2CConnection extends HardwareConnection {
 		this.register = register;
 		this.setup = setup;
 		this.delayAfterRequestNS = GROVE_PI_MIN_SCAN_DELAY_NS +twig.pullResponseMinWaitNS();
+		this.writeReadCombined = isCombinable(twig, address, readCmd);
+		this.bus = bus;
+		this.interruptLine = interruptLine;
+		this.fifo = fifo;
 		this.readBytesAtStartUp = 0;
 	}
 
+	private static boolean isCombinable(IODevice twig, byte address, byte[] readCmd) {
+		//the GrovePi firmware must be given time to scan after each request so it is never combined
+		return null!=readCmd && 0==twig.pullResponseMinWaitNS() && GrovePiConstants.BOARD_ADDR!=address;
+	}
+
 	@Override
 	public String toString() {
 		return twig.getClass().getSimpleName()+" "+address;        
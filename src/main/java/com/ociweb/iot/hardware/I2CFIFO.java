@@ -0,0 +1,54 @@
+package com.ociweb.iot.hardware;
+
+/**
+ * Describes the sample FIFO of an I2C device. When a connection has one the I2CJFFIStage
+ * reads the fill level first then drains every queued sample, all are published together
+ * in one response so the device can sample much faster than it is polled.
+ */
+public class I2CFIFO {
+
+	public final byte[] statusCmd;	//bytes sent to device to read the fill level
+	public final int countMask;		//bits of the status byte which hold the count of queued samples
+	public final int depth;			//most samples the device can hold
+	public final boolean burst;		//all samples can be read in one transaction, the device rolls back to the first data register
+	public final byte[][] partCmds;	//each sample is read as one transaction per part, null when a sample is one transaction
+	public final int[] partBytes;	//length of each part, together they make up the readBytes of the connection
+
+	public I2CFIFO(byte[] statusCmd, int countMask, int depth, boolean burst) {
+		this.statusCmd = statusCmd;
+		this.countMask = countMask;
+		this.depth = depth;
+		this.burst = burst;
+		this.partCmds = null;
+		this.partBytes = null;
+	}
+
+	/**
+	 * For devices whose sample is spread over registers which are not next to each other,
+	 * e.g. a gyro and accelerometer sharing one FIFO slot.
+	 */
+	public I2CFIFO(byte[] statusCmd, int countMask, int depth, byte[][] partCmds, int[] partBytes) {
+		assert(partCmds.length == partBytes.length);
+		this.statusCmd = statusCmd;
+		this.countMask = countMask;
+		this.depth = depth;
+		this.burst = false;
+		this.partCmds = partCmds;
+		this.partBytes = partBytes;
+	}
+
+	/**
+	 * Rebuilds the time of each sample in a drained batch, the newest was taken just before the read.
+	 * @param timeMS time the batch was read
+	 * @param sampleIntervalNS period of the device output data rate
+	 * @param count samples in the batch
+	 * @param target receives the time of each sample, oldest first, in micro seconds
+	 */
+	public static void sampleTimes(long timeMS, long sampleIntervalNS, int count, long[] target) {
+		long newestUS = timeMS*1000;
+		for (int i = 0; i < count; i++) {
+			target[i] = newestUS - (((count-1-i)*sampleIntervalNS)/1000);
+		}
+	}
+
+}
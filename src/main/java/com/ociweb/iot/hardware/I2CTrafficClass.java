@@ -0,0 +1,15 @@
+package com.ociweb.iot.hardware;
+
+/**
+ * Priority of traffic on an I2C bus. Scheduled polls always come first, the bus time
+ * left between them is given to commands by the class of the device they are sent to.
+ */
+public enum I2CTrafficClass {
+
+	DEADLINE, //scheduled polls, late when a poll starts after its block should have ended
+	LATENCY,  //short commands which must go out soon after release, e.g. motor drivers
+	BULK;     //large transfers, e.g. display frames, only sent when they fit before the next poll
+
+	public static final I2CTrafficClass[] CLASSES = values();
+
+}
@@ -19,12 +19,18 @@ public class DirectHardwareAnalogDigitalOutputStage extends AbstractTrafficOrder
 
 	private static final Logger logger = LoggerFactory.getLogger(DirectHardwareAnalogDigitalOutputStage.class);
 
+	//sets which would not change what a port holds are not written
+	private final OutputCache digitalOutputs = new OutputCache(Port.DIGITALS.length);
+	private final OutputCache analogOutputs = new OutputCache(Port.ANALOGS.length);
 
 	/**
 	 * Using real hardware support this stage turns on and off digital pins and sets PWM for analog out.
 	 * It supports time based blocks (in ms) specific to each connection.  This way no other commands are
 	 * send to that connection until the time expires.  This is across all pipes.
 	 * 
+	 * A set is only written if it differs from what the port already holds. It is written before its
+	 * message is counted against the release, since that count may publish the ack.
+	 * 
 	 * 
 	 * @param graphManager
 	 * @param ccToAdOut
@@ -56,26 +62,34 @@ public class DirectHardwareAnalogDigitalOutputStage extends AbstractTrafficOrder
 	            switch(msgIdx){
 	                                
 	                case GroveRequestSchema.MSG_DIGITALSET_110:
-	                	((HardwareImpl)hardware).write(Port.DIGITALS[PipeReader.readInt(pipe,GroveRequestSchema.MSG_DIGITALSET_110_FIELD_CONNECTOR_111)], 
-	                            PipeReader.readInt(pipe,GroveRequestSchema.MSG_DIGITALSET_110_FIELD_VALUE_112));
+	                	int digitalConnector = PipeReader.readInt(pipe,GroveRequestSchema.MSG_DIGITALSET_110_FIELD_CONNECTOR_111);
+	                	int digitalValue = PipeReader.readInt(pipe,GroveRequestSchema.MSG_DIGITALSET_110_FIELD_VALUE_112);
+	                	if (digitalOutputs.isChange(digitalConnector, digitalValue)) {
+	                		((HardwareImpl)hardware).write(Port.DIGITALS[digitalConnector], digitalValue);
+	                	}
 	                    break;
 	                                     	                    
 	                case GroveRequestSchema.MSG_BLOCKCONNECTION_220:
-						blockConnectionDuration(PipeReader.readInt(pipe,GroveRequestSchema.MSG_BLOCKCONNECTION_220_FIELD_CONNECTOR_111),
+	                	int blockedConnector = PipeReader.readInt(pipe,GroveRequestSchema.MSG_BLOCKCONNECTION_220_FIELD_CONNECTOR_111);
+						blockConnectionDuration(blockedConnector,
 								                PipeReader.readLong(pipe,GroveRequestSchema.MSG_BLOCKCONNECTION_220_FIELD_DURATIONNANOS_13));
 		                	
 	                    break;
 	                    
 	                case GroveRequestSchema.MSG_BLOCKCONNECTIONUNTIL_221:
-	                    blockConnectionUntil(PipeReader.readInt(pipe,GroveRequestSchema.MSG_BLOCKCONNECTIONUNTIL_221_FIELD_CONNECTOR_111),
+	                	int untilConnector = PipeReader.readInt(pipe,GroveRequestSchema.MSG_BLOCKCONNECTIONUNTIL_221_FIELD_CONNECTOR_111);
+	                    blockConnectionUntil(untilConnector,
 	                                         PipeReader.readLong(pipe,GroveRequestSchema.MSG_BLOCKCONNECTIONUNTIL_221_FIELD_TIMEMS_114));
 	                                                
 	                    break;   
 	                    
 	                case GroveRequestSchema.MSG_ANALOGSET_140:
 	                    
-	                    ((HardwareImpl)hardware).write(Port.ANALOGS[PipeReader.readInt(pipe,GroveRequestSchema.MSG_ANALOGSET_140_FIELD_CONNECTOR_141)], 
-	                            PipeReader.readInt(pipe,GroveRequestSchema.MSG_ANALOGSET_140_FIELD_VALUE_142));
+	                	int analogConnector = PipeReader.readInt(pipe,GroveRequestSchema.MSG_ANALOGSET_140_FIELD_CONNECTOR_141);
+	                	int analogValue = PipeReader.readInt(pipe,GroveRequestSchema.MSG_ANALOGSET_140_FIELD_VALUE_142);
+	                	if (analogOutputs.isChange(analogConnector, analogValue)) {
+	                		((HardwareImpl)hardware).write(Port.ANALOGS[analogConnector], analogValue);
+	                	}
 	                    break;
 	                    
 	                default:
@@ -91,9 +105,16 @@ public class DirectHardwareAnalogDigitalOutputStage extends AbstractTrafficOrder
 	            decReleaseCount(activePipe);
 	            
 	        }
-
 	        
 	    }
 
+	  @Override
+	  public void shutdown() {
+		  super.shutdown();
+		  logger.debug("outputs written {} of {} digital and {} of {} analog sets", 
+				  digitalOutputs.requested()-digitalOutputs.elided(), digitalOutputs.requested(),
+				  analogOutputs.requested()-analogOutputs.elided(), analogOutputs.requested());
+	  }
+
 	
 }
\ No newline at end of file
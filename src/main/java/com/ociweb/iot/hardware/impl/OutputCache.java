@@ -0,0 +1,48 @@
+package com.ociweb.iot.hardware.impl;
+
+/**
+ * Last value written to each of a set of ports, so a set which would not change what a port
+ * already holds never reaches the hardware.
+ */
+public class OutputCache {
+
+	private final int[] written;
+	private final boolean[] known; //nothing is assumed about the hardware until a port is written
+	private long requested;
+	private long elided;
+
+	public OutputCache(int ports) {
+		this.written = new int[ports];
+		this.known = new boolean[ports];
+	}
+
+	/**
+	 * @return true if the value must be written, it is then taken as what the port holds
+	 */
+	public boolean isChange(int port, int value) {
+		requested++;
+		if (known[port] && written[port] == value) {
+			elided++;
+			return false;
+		}
+		written[port] = value;
+		known[port] = true;
+		return true;
+	}
+
+	public int value(int port) {
+		return written[port];
+	}
+
+	public long requested() {
+		return requested;
+	}
+
+	/**
+	 * @return sets which never reached the hardware because they matched the last write
+	 */
+	public long elided() {
+		return elided;
+	}
+
+}
@@ -13,7 +13,7 @@ public class Util {
         
     }
 
-    public static byte[] rotaryMap = new byte[255];
+    public static byte[] rotaryMap = new byte[256];
     
     static {
         
@@ -34,4 +34,15 @@ public class Util {
 
     }
     
+    public static final byte QUADRATURE_MISSED = 2;
+    
+    //one quarter step of the same sequences as rotaryMap, indexed by (previous<<2)|current
+    //11 10 00 01 11 is +1 each step, a change of both bits means a transition was missed
+    public static final byte[] quadratureMap = new byte[] {
+        0,  1, -1,  QUADRATURE_MISSED,
+       -1,  0,  QUADRATURE_MISSED,  1,
+        1,  QUADRATURE_MISSED,  0, -1,
+        QUADRATURE_MISSED, -1,  1,  0
+    };
+    
 }
@@ -139,6 +139,11 @@ public class GroveV3EdisonImpl extends HardwareImpl {
 		return HardwarePlatformType.INTEL_EDITION;
 	}
 
+	@Override
+	public int gpioLine(Port port) {
+		return EdisonConstants.GPIO_PINS[port.port];
+	}
+
 	@Override
 	public int read(Port port) {        
 		return port.isAnalog() ? EdisonPinManager.analogRead(port.port): EdisonPinManager.digitalRead(port.port);
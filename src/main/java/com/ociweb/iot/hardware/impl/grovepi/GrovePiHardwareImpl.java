@@ -91,6 +91,11 @@ public class GrovePiHardwareImpl extends HardwareImpl {
 		throw new UnsupportedOperationException("GPIO not yet supported");
 	}
 
+	@Override
+	public boolean hasDirectGPIO() {
+		return false; //digital ports are pins of the Atmega, read over I2C
+	}
+
 	@Override
 	public boolean hasI2CInputs() {
 		if (super.hasDigitalOrAnalogInputs()) {
@@ -0,0 +1,93 @@
+package com.ociweb.iot.hardware.impl.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ociweb.pronghorn.iot.i2c.GPIOEdgeBacking;
+
+/**
+ * Stand-in for GPIO interrupt lines. Each line is a plain file holding 0 or 1,
+ * a change from 0 to 1 between checks is reported as a rising edge.
+ */
+public class TestGPIOEdgeBacking implements GPIOEdgeBacking {
+
+	private static final long CHECK_NS = 100_000;
+	
+	private final Path root;
+	private Path[] values;
+	private boolean[] lastHigh;
+
+	public TestGPIOEdgeBacking() {
+		this(Paths.get(System.getProperty("java.io.tmpdir"), "foglight-gpio"));
+	}
+
+	public TestGPIOEdgeBacking(Path root) {
+		this.root = root;
+	}
+
+	@Override
+	public void configure(int[] lines) {
+		if (null != values) {
+			throw new IllegalStateException();
+		}
+		values = new Path[lines.length];
+		lastHigh = new boolean[lines.length];
+		try {
+			Files.createDirectories(root);
+			for(int i = 0; i<lines.length; i++) {
+				values[i] = linePath(lines[i]);
+				Files.write(values[i], "0".getBytes());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public Path linePath(int line) {
+		return root.resolve("gpio"+line);
+	}
+
+	/**
+	 * Drives the stand-in line, for use by tests.
+	 */
+	public void setLine(int line, boolean high) {
+		try {
+			Files.write(linePath(line), (high ? "1" : "0").getBytes());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public int pollEdges(boolean[] fired, int timeoutMS) {
+		long limit = System.nanoTime()+timeoutMS*1_000_000L;
+		int count;
+		while (0==(count = checkEdges(fired)) && System.nanoTime()<limit) {
+			LockSupport.parkNanos(CHECK_NS); //the files can not be watched so they are checked in small steps
+		}
+		return count;
+	}
+
+	private int checkEdges(boolean[] fired) {
+		int count = 0;
+		for(int i = 0; i<values.length; i++) {
+			boolean high;
+			try {
+				byte[] data = Files.readAllBytes(values[i]);
+				high = data.length>0 && '1'==data[0];
+			} catch (IOException e) {
+				high = false; //file is being rewritten, check again next time
+			}
+			if (high && !lastHigh[i]) {
+				fired[i] = true;
+				count++;
+			}
+			lastHigh[i] = high;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.ociweb.iot.hardware.impl.test;
+
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+
+/**
+ * Stand-in for a GPIO character device. Line values are held in memory, tests drive the
+ * inputs with {@link #setInput(int, boolean)} which queues an edge like the kernel would.
+ */
+public class TestGPIOLineBacking implements GPIOLineBacking {
+
+	private static final int QUEUE_SIZE = 256; //like the kernel the oldest edges are lost once full
+
+	private int[] inputs;
+	private int[] outputs;
+	private long inputValues;
+	private long outputValues;
+
+	private final long[] queueTime = new long[QUEUE_SIZE];
+	private final int[] queueInput = new int[QUEUE_SIZE];
+	private final int[] queueKind = new int[QUEUE_SIZE];
+	private long head;
+	private long tail;
+
+	@Override
+	public void configure(int[] inputs, int[] outputs, long initialOutputs) {
+		if (null != this.inputs) {
+			throw new IllegalStateException();
+		}
+		if (inputs.length > MAX_LINES || outputs.length > MAX_LINES) {
+			throw new UnsupportedOperationException();
+		}
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.outputValues = initialOutputs;
+	}
+
+	/**
+	 * Drives the stand-in input line, for use by tests.
+	 */
+	public synchronized void setInput(int line, boolean high) {
+		int i = indexOf(inputs, line);
+		long bit = 1L<<i;
+		if (high != (0 != (inputValues & bit))) {
+			inputValues ^= bit;
+			int pos = (int)(head++ % QUEUE_SIZE);
+			queueTime[pos] = System.nanoTime();
+			queueInput[pos] = i;
+			queueKind[pos] = high ? EDGE_RISING : EDGE_FALLING;
+			tail = Math.max(tail, head-QUEUE_SIZE);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @return value last written to the stand-in output line, for use by tests.
+	 */
+	public synchronized boolean getOutput(int line) {
+		return 0 != (outputValues & (1L<<indexOf(outputs, line)));
+	}
+
+	private static int indexOf(int[] lines, int line) {
+		int i = lines.length;
+		while (--i>=0) {
+			if (lines[i]==line) {
+				return i;
+			}
+		}
+		throw new UnsupportedOperationException("Line "+line+" was not requested");
+	}
+
+	@Override
+	public synchronized long readInputs() {
+		return inputValues;
+	}
+
+	@Override
+	public synchronized void writeOutputs(long values, long mask) {
+		outputValues = (outputValues & ~mask) | (values & mask);
+	}
+
+	@Override
+	public synchronized int readEdges(long[] timeNS, int[] input, int[] kind, int timeoutMS) {
+		if (tail==head && timeoutMS>0) {
+			try {
+				wait(timeoutMS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		int count = 0;
+		while (tail<head && count<timeNS.length) {
+			int pos = (int)(tail++ % QUEUE_SIZE);
+			timeNS[count] = queueTime[pos];
+			input[count] = queueInput[pos];
+			kind[count] = queueKind[pos];
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
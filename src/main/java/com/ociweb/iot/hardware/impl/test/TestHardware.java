@@ -14,8 +14,11 @@ import com.ociweb.iot.hardware.HardwareImpl;
 import com.ociweb.iot.hardware.HardwarePlatformType;
 import com.ociweb.iot.hardware.IODevice;
 import com.ociweb.iot.hardware.impl.DefaultCommandChannel;
+import com.ociweb.iot.hardware.impl.test.emulator.I2CDeviceEmulator;
 import com.ociweb.iot.maker.Port;
 import com.ociweb.pronghorn.iot.ReactiveIoTListenerStage;
+import com.ociweb.pronghorn.iot.i2c.GPIOEdgeBacking;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
 import com.ociweb.pronghorn.iot.i2c.I2CBacking;
 import com.ociweb.pronghorn.iot.rs232.RS232Clientable;
 import com.ociweb.pronghorn.pipe.Pipe;
@@ -52,10 +55,22 @@ public class TestHardware extends HardwareImpl {
 	
 	public I2CBacking getI2CBacking() {
 		if (null == i2cBackingInternal) {
-			i2cBackingInternal = new TestI2CBacking().configure((byte) 1);
+			i2cBackingInternal = i2cSession(new TestI2CBacking().configure((byte) 1), 1);
 		}
 		return i2cBackingInternal;		
 	}
+	
+	public GPIOEdgeBacking newGPIOEdgeBacking() {
+		return new TestGPIOEdgeBacking();
+	}
+	
+	public GPIOLineBacking newGPIOLineBacking() {
+		return new TestGPIOLineBacking();
+	}
+	
+	public I2CBacking getI2CBacking(int bus) {
+		return getI2CBacking(); //all test buses share one backing so test values are found by address alone
+	}
     
     public void enableTelemetry(boolean enable) {
     	if (!isInUnitTest && enable) {
@@ -69,6 +84,20 @@ public class TestHardware extends HardwareImpl {
      	return testSerial;
     }
     
+    /**
+     * Answers reads and writes to this address with a stateful emulator instead of a fixed response.
+     */
+    public void emulateI2C(int address, I2CDeviceEmulator emulator) {
+    	((TestI2CBacking)getI2CBacking()).addEmulator(address, emulator);
+    }
+    
+    /**
+     * Emulates the GrovePi board, ADXL345, DS1307, LSM9DS1, HTS221 and LPS25H at their default addresses.
+     */
+    public void emulateKnownI2CDevices() {
+    	((TestI2CBacking)getI2CBacking()).addKnownEmulators();
+    }
+    
     public void setI2CValueToRead(byte address, byte[] data, int length) {
     	TestI2CBacking testBacking = (TestI2CBacking)getI2CBacking();
     	testBacking.setValueToRead(address, data, length);
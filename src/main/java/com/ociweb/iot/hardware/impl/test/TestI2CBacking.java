@@ -5,6 +5,14 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ociweb.iot.hardware.impl.test.emulator.ADXL345Emulator;
+import com.ociweb.iot.hardware.impl.test.emulator.DS1307Emulator;
+import com.ociweb.iot.hardware.impl.test.emulator.GrovePiEmulator;
+import com.ociweb.iot.hardware.impl.test.emulator.HTS221Emulator;
+import com.ociweb.iot.hardware.impl.test.emulator.I2CDeviceEmulator;
+import com.ociweb.iot.hardware.impl.test.emulator.LPS25HEmulator;
+import com.ociweb.iot.hardware.impl.test.emulator.LSM9DS1Emulator;
+import com.ociweb.iot.hardware.impl.test.emulator.LSM9DS1MagEmulator;
 import com.ociweb.pronghorn.iot.i2c.I2CBacking;
 import com.ociweb.pronghorn.util.Appendables;
 
@@ -28,8 +36,13 @@ public class TestI2CBacking implements I2CBacking{
 	private int      lastWriteIdx;
 	private int      lastWriteCount;
 
+	private final byte[] transferMessage = new byte[MAX_TEST_SIZE];
+
 	public byte[][] responses;
 	public int[] responseLengths;
+	
+	//when present the emulator answers for the address instead of the fixed response
+	private final I2CDeviceEmulator[] emulators = new I2CDeviceEmulator[MAX_ADDRESS+1];
 
 
 	public TestI2CBacking() {
@@ -55,6 +68,28 @@ public class TestI2CBacking implements I2CBacking{
 	}
 
 
+	public void addEmulator(int address, I2CDeviceEmulator emulator) {
+		emulators[address] = emulator;
+	}
+	
+	public I2CDeviceEmulator getEmulator(int address) {
+		return emulators[address];
+	}
+	
+	/**
+	 * Emulates every device with a known register map, the addresses do not collide.
+	 */
+	public TestI2CBacking addKnownEmulators() {
+		addEmulator(GrovePiEmulator.ADDRESS, new GrovePiEmulator());
+		addEmulator(ADXL345Emulator.ADDRESS, new ADXL345Emulator());
+		addEmulator(DS1307Emulator.ADDRESS, new DS1307Emulator());
+		addEmulator(LSM9DS1Emulator.ADDRESS, new LSM9DS1Emulator());
+		addEmulator(LSM9DS1MagEmulator.ADDRESS, new LSM9DS1MagEmulator());
+		addEmulator(HTS221Emulator.ADDRESS, new HTS221Emulator());
+		addEmulator(LPS25HEmulator.ADDRESS, new LPS25HEmulator());
+		return this;
+	}
+
 	@Override
 	public TestI2CBacking configure(byte bus) throws IllegalStateException {
 		if (configured) {
@@ -74,7 +109,9 @@ public class TestI2CBacking implements I2CBacking{
 			throw new IllegalStateException();
 		}
 
-		if (null != responses[address]) {    		
+		if (null != emulators[address]) {
+			emulators[address].read(target, 0, Integer.MAX_VALUE, length, System.nanoTime());
+		} else if (null != responses[address]) {    		
 			System.arraycopy(responses[address], 0, target, 0, Math.min(length, responseLengths[address]));
 		} else {
 			if (!reportedTestHardwareRequest) {
@@ -87,6 +124,24 @@ public class TestI2CBacking implements I2CBacking{
 
 	}
 
+	@Override
+	public boolean readInto(byte address, byte[] target, int pos, int mask, int length) throws IllegalStateException {
+		if (!configured) {
+			throw new IllegalStateException();
+		}
+		if (null != emulators[address]) {
+			emulators[address].read(target, pos, mask, length, System.nanoTime());
+		} else if (null != responses[address]) {
+			int count = Math.min(length, responseLengths[address]);
+			for(int i = 0; i<count; i++) {
+				target[mask & (pos+i)] = responses[address][i];
+			}
+		} else {
+			read(address, target, length);//reports the missing test data
+		}
+		return true;
+	}
+
 	boolean newLineNeeded = false;
 
 	@Override
@@ -103,11 +158,35 @@ public class TestI2CBacking implements I2CBacking{
 
 		lastWriteIdx = (1+lastWriteIdx) & MAX_BACK_MASK;
 
+		if (null != emulators[address]) {
+			emulators[address].write(message, length, System.nanoTime());
+		}
 		consoleSimulationLCD(address, message, length);
 
 		return true;
 	}
 
+	@Override
+	public boolean writeRead(byte address, byte[] message, int length, byte[] target, int pos, int mask, int readLength) throws IllegalStateException {
+		//test bus is never contended so the combined transaction is just the two halves
+		if (length>0) {
+			write(address, message, length);
+		}
+		return readInto(address, target, pos, mask, readLength);
+	}
+
+	@Override
+	public int transfer(byte address, byte[] data, int dataPos, int[] lengths, int lengthsPos, int count) throws IllegalStateException {
+		//recorded as individual writes so tests see the same history as before batching
+		for(int i = 0; i<count; i++) {
+			int len = lengths[lengthsPos+i];
+			System.arraycopy(data, dataPos, transferMessage, 0, len);
+			write(address, transferMessage, len);
+			dataPos += len;
+		}
+		return count;
+	}
+
 
 	protected void consoleSimulationLCD(byte address, byte[] message, int length) {
 		assert(length<=message.length);
@@ -0,0 +1,107 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * ADXL345 accelerometer at 0x53. Produces samples at the BW_RATE output data rate,
+ * in FIFO or stream mode they are queued and each read of DATAZ1 pops the oldest.
+ */
+public class ADXL345Emulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x53;
+	
+	private static final int DEVID = 0x00;
+	private static final int BW_RATE = 0x2C;
+	private static final int DATAX0 = 0x32;
+	private static final int DATAZ1 = 0x37;
+	private static final int FIFO_CTL = 0x38;
+	private static final int FIFO_STATUS = 0x39;
+	
+	private static final int FIFO_DEPTH = 32;
+	private static final long MOTION_PERIOD_NS = 2_000_000_000L;
+	
+	private final short[][] fifo = new short[FIFO_DEPTH][3];
+	private int fifoHead;
+	private int fifoCount;
+	private long lastSampleNS = -1;
+
+	public ADXL345Emulator() {
+		super(false);
+		registers[DEVID] = (byte)0xE5;
+		registers[BW_RATE] = 0x0A; //100Hz
+	}
+	
+	private long sampleIntervalNS() {
+		int code = 0x0F & registers[BW_RATE];
+		//3200Hz is code 15, each step down halves the rate
+		return (1_000_000_000L<<(15-code))/3200;
+	}
+	
+	private boolean isFIFOMode() {
+		return 0 != (0xC0 & registers[FIFO_CTL]);
+	}
+	
+	@Override
+	protected void refresh(long nowNS) {
+		long interval = sampleIntervalNS();
+		if (lastSampleNS<0 || nowNS-lastSampleNS > interval*FIFO_DEPTH) {
+			lastSampleNS = nowNS - interval;
+		}
+		while (lastSampleNS+interval <= nowNS) {
+			lastSampleNS += interval;
+			sample(lastSampleNS);
+		}
+		
+		short[] current = fifoCount>0 ? fifo[fifoHead] : fifo[(fifoHead+FIFO_DEPTH-1)%FIFO_DEPTH];
+		putShortLE(DATAX0,   current[0]);
+		putShortLE(DATAX0+2, current[1]);
+		putShortLE(DATAX0+4, current[2]);
+		registers[FIFO_STATUS] = (byte)fifoCount;
+	}
+
+	private void sample(long timeNS) {
+		int idx;
+		if (!isFIFOMode()) {
+			//bypass, only the newest value is held
+			fifoHead = 0;
+			fifoCount = 0;
+			idx = 0;
+		} else if (fifoCount == FIFO_DEPTH) {
+			//stream mode drops the oldest
+			idx = fifoHead;
+			fifoHead = (fifoHead+1)%FIFO_DEPTH;
+		} else {
+			idx = (fifoHead+fifoCount++)%FIFO_DEPTH;
+		}
+		//256 LSB/g at full resolution, the device is tilting slowly
+		fifo[idx][0] = (short)wave(timeNS, MOTION_PERIOD_NS, 128, 0);
+		fifo[idx][1] = (short)wave(timeNS+(MOTION_PERIOD_NS/4), MOTION_PERIOD_NS, 128, 0);
+		fifo[idx][2] = (short)wave(timeNS, MOTION_PERIOD_NS*3, 16, 256);
+		if (!isFIFOMode()) {
+			fifoCount = 1;
+		}
+	}
+
+	@Override
+	protected byte readRegister(int register) {
+		byte value = registers[register];
+		if (DATAZ1 == register && isFIFOMode() && fifoCount>0) {
+			//the entry is popped once all its data registers have been read
+			fifoHead = (fifoHead+1)%FIFO_DEPTH;
+			fifoCount--;
+			short[] next = fifoCount>0 ? fifo[fifoHead] : fifo[(fifoHead+FIFO_DEPTH-1)%FIFO_DEPTH];
+			putShortLE(DATAX0,   next[0]);
+			putShortLE(DATAX0+2, next[1]);
+			putShortLE(DATAX0+4, next[2]);
+			registers[FIFO_STATUS] = (byte)fifoCount;
+		}
+		return value;
+	}
+
+	@Override
+	protected void written(int register, int value, long nowNS) {
+		if (FIFO_CTL == register) {
+			fifoHead = 0;
+			fifoCount = 0;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * DS1307 real time clock at 0x68. Starts at the host time and keeps running, writing the
+ * time registers sets the clock and setting CH in the seconds register halts it.
+ */
+public class DS1307Emulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x68;
+	
+	private static final int SECONDS = 0x00;
+	private static final int YEAR = 0x06;
+	private static final int CH = 0x80;
+	
+	private long baseSeconds;		//clock value in epoch seconds at baseNS
+	private long baseNS = -1;
+	private boolean halted;
+
+	public DS1307Emulator() {
+		super(false);
+	}
+
+	@Override
+	protected int nextRegister(int register) {
+		//address wraps within the 56 bytes of clock and ram
+		return (register+1) % 0x40;
+	}
+
+	private long now(long nowNS) {
+		if (baseNS<0) {
+			baseNS = nowNS;
+			baseSeconds = System.currentTimeMillis()/1000;
+		}
+		return halted ? baseSeconds : baseSeconds + ((nowNS-baseNS)/1_000_000_000L);
+	}
+	
+	@Override
+	protected void refresh(long nowNS) {
+		LocalDateTime time = LocalDateTime.ofEpochSecond(now(nowNS), 0, ZoneOffset.UTC);
+		registers[SECONDS] = (byte)((halted ? CH : 0) | toBCD(time.getSecond()));
+		registers[1] = toBCD(time.getMinute());
+		registers[2] = toBCD(time.getHour()); //24 hour mode
+		registers[3] = toBCD(time.getDayOfWeek().getValue());
+		registers[4] = toBCD(time.getDayOfMonth());
+		registers[5] = toBCD(time.getMonthValue());
+		registers[6] = toBCD(time.getYear()%100);
+	}
+
+	@Override
+	public void write(byte[] message, int length, long nowNS) {
+		refresh(nowNS); //time registers not written keep the running time
+		super.write(message, length, nowNS);
+	}
+
+	@Override
+	protected void written(int register, int value, long nowNS) {
+		if (register <= YEAR) {
+			//registers hold the new time, the clock restarts from it
+			try {
+				LocalDateTime time = LocalDateTime.of(2000+fromBCD(registers[6]), 
+						                              fromBCD(registers[5]), 
+						                              fromBCD(registers[4]),
+						                              fromBCD(0x3F & registers[2]), 
+						                              fromBCD(registers[1]), 
+						                              fromBCD(0x7F & registers[SECONDS]));
+				halted = 0 != (CH & registers[SECONDS]);
+				baseSeconds = time.toEpochSecond(ZoneOffset.UTC);
+				baseNS = nowNS;
+			} catch (DateTimeException e) {
+				//part way through a multi byte write the date may not be valid yet
+			}
+		}
+	}
+	
+	private static byte toBCD(int value) {
+		return (byte)(((value/10)<<4) | (value%10));
+	}
+	
+	private static int fromBCD(int value) {
+		return (10*(0x0F & (value>>4))) + (0x0F & value);
+	}
+
+}
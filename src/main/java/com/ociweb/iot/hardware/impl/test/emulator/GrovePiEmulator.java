@@ -0,0 +1,123 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+import java.util.Arrays;
+
+import com.ociweb.iot.hardware.impl.grovepi.GrovePiConstants;
+
+/**
+ * Firmware of the GrovePi board at 0x04. Commands are 5 bytes {START_BYTE, command, pin, value, value},
+ * the following read answers the last read command. Inputs follow a wave unless fixed by the test.
+ */
+public class GrovePiEmulator implements I2CDeviceEmulator {
+
+	public static final int ADDRESS = GrovePiConstants.BOARD_ADDR;
+	
+	private static final int PINS = 32;
+	private static final int FREE = -1;
+	private static final long DIGITAL_PERIOD_NS = 2_000_000_000L;
+	private static final long ANALOG_PERIOD_NS = 5_000_000_000L;
+	
+	private final int[] pinMode = new int[PINS];
+	private final int[] digitalOut = new int[PINS];
+	private final int[] analogOut = new int[PINS];
+	private final int[] digitalIn = new int[PINS];
+	private final int[] analogIn = new int[PINS];
+	
+	private int lastCommand;
+	private int lastPin;
+	
+	public GrovePiEmulator() {
+		Arrays.fill(digitalIn, FREE);
+		Arrays.fill(analogIn, FREE);
+	}
+	
+	/**
+	 * @param value 0 or 1, use -1 to return to the generated signal
+	 */
+	public void setDigitalInput(int pin, int value) {
+		digitalIn[pin] = value;
+	}
+	
+	/**
+	 * @param value 0 to 1023, use -1 to return to the generated signal
+	 */
+	public void setAnalogInput(int pin, int value) {
+		analogIn[pin] = value;
+	}
+	
+	public int getDigitalOutput(int pin) {
+		return digitalOut[pin];
+	}
+	
+	public int getAnalogOutput(int pin) {
+		return analogOut[pin];
+	}
+	
+	public int getPinMode(int pin) {
+		return pinMode[pin];
+	}
+	
+	@Override
+	public void write(byte[] message, int length, long nowNS) {
+		if (length < 4 || GrovePiConstants.START_BYTE != message[0]) {
+			return; //firmware ignores anything which is not a command
+		}
+		int command = message[1];
+		int pin = (0xFF & message[2]) % PINS;
+		int value = 0xFF & message[3];
+		switch (command) {
+			case GrovePiConstants.DIGITAL_WRITE:
+				digitalOut[pin] = value;
+				break;
+			case GrovePiConstants.ANALOG_WRITE:
+				analogOut[pin] = value;
+				break;
+			case GrovePiConstants.PIN_MODE:
+				pinMode[pin] = value;
+				break;
+			default:
+				lastCommand = command;
+				lastPin = pin;
+		}
+	}
+
+	@Override
+	public void read(byte[] target, int pos, int mask, int length, long nowNS) {
+		int value;
+		switch (lastCommand) {
+			case GrovePiConstants.DIGITAL_READ:
+				value = FREE != digitalIn[lastPin] ? digitalIn[lastPin] 
+						                           : (((nowNS+(lastPin*DIGITAL_PERIOD_NS/PINS))/(DIGITAL_PERIOD_NS/2))&1) == 0 ? 0 : 1;
+				target[mask & pos] = (byte)value;
+				fill(target, pos+1, mask, length-1, 0);
+				return;
+			case GrovePiConstants.ANALOG_READ:
+				value = FREE != analogIn[lastPin] ? analogIn[lastPin]
+						                          : RegisterMapEmulator.wave(nowNS+(lastPin*ANALOG_PERIOD_NS/PINS), ANALOG_PERIOD_NS, 511, 512);
+				break;
+			case GrovePiConstants.ULTRASONIC_RANGER:
+				value = FREE != analogIn[lastPin] ? analogIn[lastPin]
+						                          : RegisterMapEmulator.wave(nowNS, ANALOG_PERIOD_NS, 90, 110); //cm
+				break;
+			default:
+				//no data, as the firmware answers when polled too fast
+				fill(target, pos, mask, length, -1);
+				return;
+		}
+		if (length >= 3) {
+			target[mask & pos] = (byte)lastCommand;
+			target[mask & (pos+1)] = (byte)(value>>8);
+			target[mask & (pos+2)] = (byte)value;
+			fill(target, pos+3, mask, length-3, 0);
+		} else {
+			fill(target, pos, mask, length, -1);
+		}
+	}
+	
+	private static void fill(byte[] target, int pos, int mask, int length, int value) {
+		for (int i = 0; i < length; i++) {
+			target[mask & (pos+i)] = (byte)value;
+		}
+	}
+
+}
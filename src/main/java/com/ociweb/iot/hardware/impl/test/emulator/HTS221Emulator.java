@@ -0,0 +1,39 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * HTS221 humidity and temperature sensor at 0x5F. The calibration registers map raw output 0 to
+ * 20%rH and 10C, 6000 to 80%rH and 25C. Readings drift slowly over the day.
+ */
+public class HTS221Emulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x5F;
+	
+	private static final int WHO_AM_I = 0x0F;
+	private static final int STATUS_REG = 0x27;
+	private static final int HUMIDITY_OUT_L = 0x28;
+	private static final int TEMP_OUT_L = 0x2A;
+	private static final int CALIB = 0x30;
+	private static final long DRIFT_PERIOD_NS = 60_000_000_000L;
+
+	public HTS221Emulator() {
+		super(true);
+		registers[WHO_AM_I] = (byte)0xBC;
+		registers[CALIB] = 40;		//H0_rH_x2
+		registers[CALIB+1] = (byte)160;	//H1_rH_x2
+		registers[CALIB+2] = 80;	//T0_degC_x8
+		registers[CALIB+3] = (byte)200;	//T1_degC_x8
+		registers[CALIB+5] = 0;		//T1/T0 msb
+		putShortLE(CALIB+6, 0);		//H0_T0_OUT
+		putShortLE(CALIB+10, 6000);	//H1_T0_OUT
+		putShortLE(CALIB+12, 0);	//T0_OUT
+		putShortLE(CALIB+14, 6000);	//T1_OUT
+	}
+
+	@Override
+	protected void refresh(long nowNS) {
+		putShortLE(HUMIDITY_OUT_L, wave(nowNS, DRIFT_PERIOD_NS, 1000, 3000));
+		putShortLE(TEMP_OUT_L, wave(nowNS, DRIFT_PERIOD_NS*2, 800, 4000));
+		registers[STATUS_REG] = 0x03; //both values are always available
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * Stands in for a device on the test I2C bus, see TestI2CBacking.addEmulator.
+ * Calls are made in bus order so an emulator needs no locking.
+ */
+public interface I2CDeviceEmulator {
+
+	/**
+	 * @param message bytes sent by the master, for register devices the first is the register address
+	 * @param length count of bytes in message
+	 * @param nowNS time of the transaction
+	 */
+	void write(byte[] message, int length, long nowNS);
+
+	/**
+	 * Responds to a read by the master.
+	 * @param target ring to write into
+	 * @param pos first position in target
+	 * @param mask target ring mask
+	 * @param length count of bytes requested
+	 * @param nowNS time of the transaction
+	 */
+	void read(byte[] target, int pos, int mask, int length, long nowNS);
+
+}
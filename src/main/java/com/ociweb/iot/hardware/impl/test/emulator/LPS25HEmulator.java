@@ -0,0 +1,33 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * LPS25H pressure and temperature sensor at 0x5C, pressure wanders around 1013 hPa.
+ */
+public class LPS25HEmulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x5C;
+	
+	private static final int WHO_AM_I = 0x0F;
+	private static final int STATUS_REG = 0x27;
+	private static final int PRESS_OUT_XL = 0x28;
+	private static final int TEMP_OUT_L = 0x2B;
+	private static final long DRIFT_PERIOD_NS = 120_000_000_000L;
+
+	public LPS25HEmulator() {
+		super(true);
+		registers[WHO_AM_I] = (byte)0xBD;
+	}
+
+	@Override
+	protected void refresh(long nowNS) {
+		//4096 LSB per hPa
+		int pressure = wave(nowNS, DRIFT_PERIOD_NS, 5*4096, 1013*4096);
+		registers[PRESS_OUT_XL] = (byte)pressure;
+		registers[PRESS_OUT_XL+1] = (byte)(pressure>>8);
+		registers[PRESS_OUT_XL+2] = (byte)(pressure>>16);
+		//T = 42.5 + raw/480, about 22C
+		putShortLE(TEMP_OUT_L, wave(nowNS, DRIFT_PERIOD_NS*2, 480, -9840));
+		registers[STATUS_REG] = 0x03;
+	}
+
+}
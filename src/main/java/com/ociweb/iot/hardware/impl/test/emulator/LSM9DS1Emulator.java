@@ -0,0 +1,120 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * Accelerometer and gyroscope of the LSM9DS1 IMU at 0x6A. Samples are produced at the configured
+ * output data rate. With FIFO_EN and a FIFO mode each slot holds the gyroscope then accelerometer values,
+ * they are read from OUT_X_L_G and OUT_X_L_XL and the slot is popped once OUT_Z_H_XL is read.
+ * See LSM9DS1MagEmulator for the magnetometer at 0x1C.
+ */
+public class LSM9DS1Emulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x6A;
+	
+	private static final int WHO_AM_I = 0x0F;
+	private static final int CTRL_REG1_G = 0x10;
+	private static final int OUT_X_L_G = 0x18;
+	private static final int CTRL_REG6_XL = 0x20;
+	private static final int CTRL_REG8 = 0x22;
+	private static final int CTRL_REG9 = 0x23;
+	private static final int OUT_X_L_XL = 0x28;
+	private static final int OUT_Z_H_XL = 0x2D;
+	private static final int FIFO_CTRL = 0x2E;
+	private static final int FIFO_SRC = 0x2F;
+	
+	private static final int FIFO_DEPTH = 32;
+	private static final int SLOT = 6;//gyro x,y,z then accel x,y,z
+	private static final int[] ODR_HZ = {0, 15, 60, 119, 238, 476, 952, 0};
+	private static final long MOTION_PERIOD_NS = 3_000_000_000L;
+	
+	private final short[][] fifo = new short[FIFO_DEPTH][SLOT];
+	private int fifoHead;
+	private int fifoCount;
+	private boolean overrun;
+	private long lastSampleNS = -1;
+	
+	public LSM9DS1Emulator() {
+		super(false);
+		registers[WHO_AM_I] = 0x68;
+		registers[CTRL_REG8] = 0x04; //IF_ADD_INC
+	}
+
+	private int odrHz() {
+		int gyro = ODR_HZ[0x07 & (registers[CTRL_REG1_G]>>5)];
+		//when the gyro is powered down the accelerometer runs at its own rate
+		return gyro>0 ? gyro : ODR_HZ[0x07 & (registers[CTRL_REG6_XL]>>5)];
+	}
+	
+	private boolean isFIFOMode() {
+		return 0 != (0x02 & registers[CTRL_REG9]) && 0 != (0xE0 & registers[FIFO_CTRL]);
+	}
+	
+	@Override
+	protected void refresh(long nowNS) {
+		int hz = odrHz();
+		if (hz>0) {
+			long interval = 1_000_000_000L/hz;
+			if (lastSampleNS<0 || nowNS-lastSampleNS > interval*FIFO_DEPTH) {
+				lastSampleNS = nowNS - interval;
+			}
+			while (lastSampleNS+interval <= nowNS) {
+				lastSampleNS += interval;
+				sample(lastSampleNS);
+			}
+		}
+		showHead();
+	}
+
+	private void sample(long timeNS) {
+		int idx;
+		if (!isFIFOMode()) {
+			fifoHead = 0;
+			fifoCount = 1;
+			idx = 0;
+		} else if (fifoCount == FIFO_DEPTH) {
+			overrun = true;
+			idx = fifoHead;
+			fifoHead = (fifoHead+1)%FIFO_DEPTH;
+		} else {
+			idx = (fifoHead+fifoCount++)%FIFO_DEPTH;
+		}
+		short[] slot = fifo[idx];
+		//slow rotation about z, gravity on z at 2g scale
+		slot[0] = (short)wave(timeNS, MOTION_PERIOD_NS, 200, 0);
+		slot[1] = (short)wave(timeNS, MOTION_PERIOD_NS*2, 200, 0);
+		slot[2] = (short)wave(timeNS+(MOTION_PERIOD_NS/4), MOTION_PERIOD_NS, 4000, 0);
+		slot[3] = (short)wave(timeNS, MOTION_PERIOD_NS, 1600, 0);
+		slot[4] = (short)wave(timeNS+(MOTION_PERIOD_NS/4), MOTION_PERIOD_NS, 1600, 0);
+		slot[5] = (short)wave(timeNS, MOTION_PERIOD_NS*5, 200, 16384);
+	}
+	
+	private void showHead() {
+		short[] slot = fifoCount>0 ? fifo[fifoHead] : fifo[(fifoHead+FIFO_DEPTH-1)%FIFO_DEPTH];
+		for (int i = 0; i < 3; i++) {
+			putShortLE(OUT_X_L_G+(2*i), slot[i]);
+			putShortLE(OUT_X_L_XL+(2*i), slot[3+i]);
+		}
+		registers[FIFO_SRC] = (byte)((overrun ? 0x40 : 0) | (isFIFOMode() ? fifoCount : 0));
+	}
+
+	@Override
+	protected byte readRegister(int register) {
+		byte value = registers[register];
+		if (OUT_Z_H_XL == register && isFIFOMode() && fifoCount>0) {
+			fifoHead = (fifoHead+1)%FIFO_DEPTH;
+			fifoCount--;
+			overrun = false;
+			showHead();
+		}
+		return value;
+	}
+
+	@Override
+	protected void written(int register, int value, long nowNS) {
+		if (FIFO_CTRL == register || CTRL_REG9 == register) {
+			fifoHead = 0;
+			fifoCount = 0;
+			overrun = false;
+		}
+	}
+
+}
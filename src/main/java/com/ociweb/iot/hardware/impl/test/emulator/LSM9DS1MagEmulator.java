@@ -0,0 +1,30 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * Magnetometer of the LSM9DS1 IMU at 0x1C, the field turns slowly with the device.
+ */
+public class LSM9DS1MagEmulator extends RegisterMapEmulator {
+
+	public static final int ADDRESS = 0x1C;
+	
+	private static final int WHO_AM_I = 0x0F;
+	private static final int OUT_X_L_M = 0x28;
+	private static final int OFFSET_X_REG_L_M = 0x05;
+	private static final long ROTATION_PERIOD_NS = 10_000_000_000L;
+
+	public LSM9DS1MagEmulator() {
+		super(false);
+		registers[WHO_AM_I] = 0x3D;
+	}
+
+	@Override
+	protected void refresh(long nowNS) {
+		for (int i = 0; i < 3; i++) {
+			//hard iron offsets written by the master are removed from the output as the device does
+			int offset = (short)((0xFF & registers[OFFSET_X_REG_L_M+(2*i)]) | (registers[OFFSET_X_REG_L_M+(2*i)+1]<<8));
+			int field = 2 == i ? 1500 : wave(nowNS+(i*ROTATION_PERIOD_NS/4), ROTATION_PERIOD_NS, 3000, 0);
+			putShortLE(OUT_X_L_M+(2*i), field+500-offset);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+/**
+ * Common behavior of devices which expose a map of 8 bit registers. The first byte of each write
+ * selects the register, any following bytes are stored from there. Reads continue from the selected register.
+ */
+public abstract class RegisterMapEmulator implements I2CDeviceEmulator {
+
+	protected final byte[] registers = new byte[256];
+	protected int pointer;
+	private boolean increment = true;
+	private final boolean msbIncrement;
+	
+	/**
+	 * @param msbIncrement true for devices which only move to the next register when bit 7 of the register address is set, eg ST sensors
+	 */
+	protected RegisterMapEmulator(boolean msbIncrement) {
+		this.msbIncrement = msbIncrement;
+	}
+
+	@Override
+	public void write(byte[] message, int length, long nowNS) {
+		if (length == 0) {
+			return;
+		}
+		int address = 0xFF & message[0];
+		if (msbIncrement) {
+			increment = 0 != (0x80 & address);
+			address &= 0x7F;
+		}
+		pointer = address;
+		for (int i = 1; i < length; i++) {
+			registers[pointer] = message[i];
+			written(pointer, 0xFF & message[i], nowNS);
+			advance();
+		}
+	}
+
+	@Override
+	public void read(byte[] target, int pos, int mask, int length, long nowNS) {
+		refresh(nowNS);
+		for (int i = 0; i < length; i++) {
+			target[mask & (pos+i)] = readRegister(pointer);
+			advance();
+		}
+	}
+	
+	private void advance() {
+		if (increment) {
+			pointer = nextRegister(pointer);
+		}
+	}
+	
+	/**
+	 * Value returned to the master, override for registers with side effects on read, eg FIFO pops.
+	 */
+	protected byte readRegister(int register) {
+		return registers[register];
+	}
+
+	/**
+	 * Register read after this one in a burst.
+	 */
+	protected int nextRegister(int register) {
+		return 0xFF & (register+1);
+	}
+
+	/**
+	 * Called after the master has stored a value in this register.
+	 */
+	protected void written(int register, int value, long nowNS) {
+	}
+
+	/**
+	 * Brings the output registers up to date before each read.
+	 */
+	protected abstract void refresh(long nowNS);
+
+	protected void putShortLE(int register, int value) {
+		registers[register] = (byte)value;
+		registers[register+1] = (byte)(value>>8);
+	}
+	
+	/**
+	 * Smooth time varying signal for the output registers.
+	 */
+	protected static int wave(long nowNS, long periodNS, int amplitude, int offset) {
+		return offset + (int)(amplitude * Math.sin((2*Math.PI*(nowNS%periodNS))/periodNS));
+	}
+
+}
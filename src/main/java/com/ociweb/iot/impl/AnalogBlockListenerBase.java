@@ -0,0 +1,21 @@
+package com.ociweb.iot.impl;
+
+import com.ociweb.iot.maker.FogRuntime;
+import com.ociweb.iot.maker.Port;
+
+public interface AnalogBlockListenerBase {
+
+    /**
+     * Invoked with each block of samples from an analog device registered with the
+     * {@link FogRuntime} to be sampled in blocks.
+     *
+     * @param port {@link Port} of the analog device.
+     * @param time UNIX timestamp (milliseconds since the epoch) of the first sample.
+     * @param captureNS monotonic System.nanoTime() when the read of the first sample began.
+     * @param intervalNS average nanoseconds between the samples.
+     * @param samples the values, only valid until this call returns since the array is reused.
+     * @param count number of samples at the front of the array.
+     */
+    void analogBlock(Port port, long time, long captureNS, long intervalNS, int[] samples, int count);
+    
+}
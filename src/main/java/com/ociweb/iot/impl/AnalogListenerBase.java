@@ -16,4 +16,14 @@ public interface AnalogListenerBase {
      * @param value Current value of the analog device.
      */
     void analogEvent(Port port, long time, long durationMillis, int average, int value);
+    
+    /**
+     * Same event with nanosecond timing, override this one when sampling too fast for millisecond times.
+     *
+     * @param captureNS monotonic System.nanoTime() when the read of this value began.
+     * @param readDurationNS nanoseconds from the start of the read until the value was read.
+     */
+    default void analogEvent(Port port, long time, long durationMillis, int average, int value, long captureNS, long readDurationNS) {
+    	analogEvent(port, time, durationMillis, average, value);
+    }
 }
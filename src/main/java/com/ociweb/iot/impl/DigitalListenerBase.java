@@ -4,4 +4,14 @@ import com.ociweb.iot.maker.Port;
 
 public interface DigitalListenerBase {
     public void digitalEvent(Port port, long time, long durationMillis, int value);
+    
+    /**
+     * Same event with nanosecond timing, override this one when sampling too fast for millisecond times.
+     *
+     * @param captureNS monotonic System.nanoTime() when the read of this value began.
+     * @param readDurationNS nanoseconds from the start of the read until the value was read.
+     */
+    public default void digitalEvent(Port port, long time, long durationMillis, int value, long captureNS, long readDurationNS) {
+    	digitalEvent(port, time, durationMillis, value);
+    }
 }
@@ -2,4 +2,23 @@ package com.ociweb.iot.impl;
 
 public interface I2CListenerBase {
 	   public void i2cEvent(int addr, int register, long time, byte[] backing, int position, int length, int mask);
+	   
+	   /**
+	    * Same event with nanosecond timing, override this one when sampling too fast for millisecond times.
+	    *
+	    * @param captureNS monotonic System.nanoTime() when the read was requested.
+	    * @param readDurationNS nanoseconds from the request until the bytes were read.
+	    */
+	   public default void i2cEvent(int addr, int register, long time, byte[] backing, int position, int length, int mask, long captureNS, long readDurationNS) {
+		   i2cEvent(addr, register, time, backing, position, length, mask);
+	   }
+	   
+	   /**
+	    * Same event with the bus it was read on, override this one when the same address is used on more than one bus.
+	    *
+	    * @param bus N of the /dev/i2c-N the device was read on.
+	    */
+	   public default void i2cEvent(int bus, int addr, int register, long time, byte[] backing, int position, int length, int mask, long captureNS, long readDurationNS) {
+		   i2cEvent(addr, register, time, backing, position, length, mask, captureNS, readDurationNS);
+	   }
 }
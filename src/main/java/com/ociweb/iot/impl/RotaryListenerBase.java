@@ -13,7 +13,7 @@ public interface RotaryListenerBase {
      * @param time UNIX timestamp (milliseconds since the epoch) of when this event was received.
      * @param value Current value of the rotary encoder.
      * @param delta Difference since the last value of the rotary encoder.
-     * @param speed Estimated speed in TODO: units of the rotary encoder.
+     * @param speed Estimated speed of the rotary encoder, signed detents per minute when decoded with Hardware.useQuadratureDecoding.
      */
     public void rotaryEvent(Port port, long time, int value, int delta, int speed);
     
@@ -0,0 +1,13 @@
+package com.ociweb.iot.maker;
+
+import com.ociweb.gl.api.Behavior;
+import com.ociweb.iot.impl.AnalogBlockListenerBase;
+
+/**
+ * Functional interface for blocks of analog samples registered with the
+ * {@link FogRuntime}, see {@link Hardware#connect(com.ociweb.iot.hardware.ADIODevice, Port, int, boolean, int)}.
+ */
+@FunctionalInterface
+public interface AnalogBlockListener extends Behavior, AnalogBlockListenerBase {
+
+}
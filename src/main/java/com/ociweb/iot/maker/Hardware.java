@@ -3,6 +3,7 @@ package com.ociweb.iot.maker;
 import com.ociweb.gl.api.Builder;
 import com.ociweb.iot.hardware.ADIODevice;
 import com.ociweb.iot.hardware.I2CIODevice;
+import com.ociweb.iot.hardware.I2CTrafficClass;
 import com.ociweb.iot.hardware.IODevice;
 
 /**
@@ -72,6 +73,31 @@ public interface Hardware extends Builder {
      */
     Hardware connect(ADIODevice device, Port port);
 
+    /**
+     * Connects an analog input whose samples are published in blocks, for sampling too fast to send
+     * each value on its own. Every value is sent, blocks go to {@link AnalogBlockListener} and are
+     * split back into single events for any {@link AnalogListener}.
+     *
+     * @param device {@link IODevice} to connect, must be an analog input.
+     * @param port {@link Port} to connect the device to.
+     * @param customRateMS rate in milliseconds to read the device.
+     * @param everyValue must be true, blocks hold every sample.
+     * @param samplesPerBlock samples in each block, at most 256.
+     * @return A reference to this hardware instance.
+     */
+    Hardware connect(ADIODevice device, Port port, int customRateMS, boolean everyValue, int samplesPerBlock);
+
+    /**
+     * Connects a digital input which is published only when it changes. Nothing is polled, the
+     * edges come from the kernel so buttons and motion sensors are seen in well under a millisecond.
+     * Not available where the digital ports are not GPIO lines of the board, e.g. the GrovePi.
+     *
+     * @param device {@link IODevice} to connect, must be a digital input.
+     * @param port {@link Port} to connect the device to.
+     * @return A reference to this hardware instance.
+     */
+    Hardware connectOnEdge(ADIODevice device, Port port);
+
     /**
      * calls connectI2C to connect the I2C IODevice
      * @param device
@@ -87,6 +113,27 @@ public interface Hardware extends Builder {
      */
     
     Hardware connect(I2CIODevice device, int customRateMS);
+    
+    /**
+     * calls connectI2C to connect the I2C IODevice found on a specific bus,
+     * each bus is polled independently of the others. Commands for a device on another
+     * bus must be sent on a command channel bound to that bus, see FogCommandChannel.useI2CBus.
+     * @param device
+     * @param customRateMS
+     * @param bus I2C bus the device is on, e.g. 3 for /dev/i2c-3
+     * @return A reference to this hardware instance
+     */
+    Hardware connect(I2CIODevice device, int customRateMS, int bus);
+    
+    /**
+     * Connects an I2C input device which raises a GPIO line when it has data ready,
+     * e.g. the data ready or tap interrupt of an accelerometer. The device is read
+     * only when the line fires instead of being polled on a schedule.
+     * @param device
+     * @param gpioLine GPIO line wired to the interrupt pin of the device
+     * @return A reference to this hardware instance
+     */
+    Hardware connectOnInterrupt(I2CIODevice device, int gpioLine);
   
  
     
@@ -106,6 +153,113 @@ public interface Hardware extends Builder {
      */
     Hardware useI2C(int bus);
     
+    /**
+     * I2C readings are only sent to listeners when they change, unchanged readings
+     * are sent again once per heartbeat. Devices connected with everyValue are not affected.
+     *
+     * @param heartbeatMS time between repeats of an unchanged reading, 0 sends every reading.
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useI2CHeartbeat(int heartbeatMS);
+    
+    /**
+     * Sets how commands to a device share the bus with the scheduled polls. LATENCY commands,
+     * the default, are sent as soon as possible and even between the polls of one block.
+     * BULK commands are held back until they fit in the time left before the next poll.
+     * Commands on one channel are never reordered so bulk devices are best given their own channel.
+     *
+     * @param address I2C address of the device.
+     * @param trafficClass LATENCY or BULK
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useI2CTrafficClass(int address, I2CTrafficClass trafficClass);
+    
+    /**
+     * Polls inputs earliest deadline first instead of by a precomputed script. The script repeats
+     * on the common clock of all the poll rates which grows long for odd mixes such as 7ms and 10ms.
+     * Each sample is also timed against when it was planned, see the poll stage for the jitter.
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useEarliestDeadlineFirstPolling();
+    
+    /**
+     * Gives a CPU to the analog and digital polling. The polling thread is pinned to it and waits
+     * for each sample by spinning instead of sleeping, so periods under a millisecond can be kept.
+     * Inputs connected with a rate of 0 are polled at the fastest period. Polling is earliest
+     * deadline first and the achieved rate and jitter are reported by the poll stage.
+     *
+     * @param cpu CPU to pin the polling thread to, best kept free of other work e.g. with isolcpus
+     * @param fastestPeriodMicros period of the inputs connected with a rate of 0
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useHardPolling(int cpu, int fastestPeriodMicros);
+    
+    /**
+     * Gives a CPU to the I2C polling. The stage of each bus with polled inputs is pinned to it,
+     * polls earliest deadline first and spins to each due time instead of sleeping. The achieved
+     * rate and jitter are reported by the I2C stage. With more than one polled bus the stages take
+     * turns on this CPU, it must not be the one given to {@link #useHardPolling(int, int)}.
+     *
+     * @param cpu CPU to pin the I2C polling to, best kept free of other work e.g. with isolcpus
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useHardI2CPolling(int cpu);
+    
+    /**
+     * Uses the Linux GPIO character device /dev/gpiochipN instead of the sysfs files. Lines are
+     * requested together, read or written in one call and their edges carry kernel timestamps.
+     *
+     * @param chip N of /dev/gpiochipN
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useGPIOCharacterDevice(int chip);
+    
+    /**
+     * Decodes rotary encoders on their own stage instead of in the shared poll. The count and a
+     * signed speed in detents per minute are published at this rate while the encoder turns.
+     * With {@link #useGPIOCharacterDevice(int)} every edge is taken from the kernel, otherwise the
+     * pins are sampled in a tight loop.
+     *
+     * @param publishRateMS time between published values
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useQuadratureDecoding(int publishRateMS);
+    
+    /**
+     * Reads all the polled digital inputs together at the fastest of their rates and publishes them
+     * as one bitmask with the ports which changed. Listeners still get one digitalEvent per change.
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware useDigitalBank();
+    
+    /**
+     * Records every I2C read and write, with its timing, so the session can be replayed later.
+     * Each bus is written to its own file named i2c-[bus].cap
+     *
+     * @param directory folder for the capture files.
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware captureI2C(String directory);
+    
+    /**
+     * Serves all I2C reads from a session recorded with captureI2C instead of the devices.
+     *
+     * @param directory folder holding the capture files.
+     * @param originalTiming true to answer at the captured pace, false to answer as fast as possible.
+     *
+     * @return A reference to this hardware instance.
+     */
+    Hardware replayI2C(String directory, boolean originalTiming);
+    
     Hardware useSerial(Baud baud);
     
 	/**
@@ -28,6 +28,12 @@ public interface ListenerFilterIoT extends ListenerFilter {
 	 * @param connections
 	 */
 	ListenerFilterIoT excludeI2CConnections(int ... addresses);
+	
+	/**
+	 * Only the I2C connections on the listed buses, combines with the address filters.
+	 * @param buses N of each /dev/i2c-N
+	 */
+	ListenerFilterIoT includeI2CBuses(int ... buses);
 
 	
 }
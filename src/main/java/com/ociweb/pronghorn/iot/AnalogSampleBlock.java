@@ -0,0 +1,39 @@
+package com.ociweb.pronghorn.iot;
+
+/**
+ * Layout of the samples field of the AnalogBlock message, each sample is a big endian int
+ * written straight into the blob ring so the positions wrap with the mask.
+ */
+public class AnalogSampleBlock {
+
+	public static final int BYTES_PER_SAMPLE = 4;
+
+	/**
+	 * @return bytes written
+	 */
+	public static int write(int[] samples, int count, byte[] blob, int pos, int mask) {
+		for (int i = 0; i < count; i++) {
+			int value = samples[i];
+			blob[mask & pos++] = (byte)(value>>>24);
+			blob[mask & pos++] = (byte)(value>>>16);
+			blob[mask & pos++] = (byte)(value>>>8);
+			blob[mask & pos++] = (byte)value;
+		}
+		return count*BYTES_PER_SAMPLE;
+	}
+
+	/**
+	 * @return samples read into the front of target
+	 */
+	public static int read(byte[] blob, int pos, int mask, int length, int[] target) {
+		int count = Math.min(length/BYTES_PER_SAMPLE, target.length);
+		for (int i = 0; i < count; i++) {
+			target[i] = ((blob[mask & pos++]&0xFF)<<24)
+					  | ((blob[mask & pos++]&0xFF)<<16)
+					  | ((blob[mask & pos++]&0xFF)<<8)
+					  |  (blob[mask & pos++]&0xFF);
+		}
+		return count;
+	}
+
+}
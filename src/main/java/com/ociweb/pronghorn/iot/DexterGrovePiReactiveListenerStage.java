@@ -45,6 +45,9 @@ public class DexterGrovePiReactiveListenerStage extends ReactiveIoTListenerStage
 			int position = PipeReader.readBytesPosition(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
 			int length = PipeReader.readBytesLength(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
 			int mask = PipeReader.readBytesMask(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
+			long captureNS = PipeReader.readLong(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_CAPTURENS_15);
+			long readNS = PipeReader.readLong(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_READDURATIONNS_16);
+			int bus = PipeReader.readInt(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BUS_17);
 
 			
 			logger.debug("Pi listener consuming I2C message from addr: {}",addr);
@@ -55,7 +58,7 @@ public class DexterGrovePiReactiveListenerStage extends ReactiveIoTListenerStage
 				int connector = GrovePiConstants.REGISTER_TO_PORT[register];
 				assert(connector!=-1);
 
-				commonDigitalEventProcessing(Port.DIGITALS[connector], time, tempValue, (DigitalListenerBase)listener);
+				commonDigitalEventProcessing(Port.DIGITALS[connector], time, tempValue, captureNS, readNS, (DigitalListenerBase)listener);
 
 			}
 			else if(listener instanceof AnalogListenerBase && addr==4 && length==3){
@@ -83,7 +86,7 @@ public class DexterGrovePiReactiveListenerStage extends ReactiveIoTListenerStage
 						
 						int finalValue = (range*tempValue)>>10;// divides by 1024;
 					
-						commonAnalogEventProcessing(p2, time, finalValue, (AnalogListenerBase)listener);
+						commonAnalogEventProcessing(p2, time, finalValue, captureNS, readNS, (AnalogListenerBase)listener);
 					}
 				}
 			}else if(listener instanceof RotaryListenerBase && addr==4 && length==2){
@@ -91,7 +94,7 @@ public class DexterGrovePiReactiveListenerStage extends ReactiveIoTListenerStage
 				int tempValue = (((int)tempArray[0])<<8) | (0xFF&((int)tempArray[1]));
 				((RotaryListenerBase)listener).rotaryEvent(Port.DIGITALS[register], time, tempValue, 0, 0);
 			} else if (listener instanceof I2CListenerBase){ //must be last so we only do this if one of the more specific conditions were not met first.
-				super.commonI2CEventProcessing((I2CListenerBase)listener, addr, register, time, backing, position, length, mask);;
+				super.commonI2CEventProcessing((I2CListenerBase)listener, bus, addr, register, time, backing, position, length, mask, captureNS, readNS);
 				logger.debug("Creating I2C event");
 			}
 		}
@@ -0,0 +1,119 @@
+package com.ociweb.pronghorn.iot;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.iot.hardware.HardwareConnection;
+import com.ociweb.iot.hardware.HardwareImpl;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.stage.PronghornStage;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Publishes the digital inputs connected on edge only when they change. The stage blocks in the
+ * kernel until an edge arrives so nothing runs between changes, it must not share its thread.
+ * Each sample carries the time of the edge as captureNS and how long it took to publish as readNS.
+ */
+public class DigitalEdgeWatcherStage extends PronghornStage {
+
+	private static final Logger logger = LoggerFactory.getLogger(DigitalEdgeWatcherStage.class);
+
+	private static final int WAIT_MS = 20; //longest block in the kernel so shutdown is noticed
+	private static final int MAX_EDGES = 64;
+
+	private final Pipe<GroveResponseSchema> responsePipe;
+	private final HardwareImpl hardware;
+	private final HardwareConnection[] connections;
+
+	private GPIOLineBacking backing;
+	private int[] lastValue;
+
+	//edges read but not yet published because the pipe was full
+	private final long[] edgeTime = new long[MAX_EDGES];
+	private final int[] edgeInput = new int[MAX_EDGES];
+	private final int[] edgeKind = new int[MAX_EDGES];
+	private int edgeCount;
+	private int edgePos;
+
+	public DigitalEdgeWatcherStage(GraphManager graphManager, Pipe<GroveResponseSchema> responsePipe, HardwareImpl hardware) {
+		super(graphManager, NONE, responsePipe);
+		this.responsePipe = responsePipe;
+		this.hardware = hardware;
+		this.connections = hardware.getEdgeDigitalInputs();
+
+		GraphManager.addNota(graphManager, GraphManager.PRODUCER, GraphManager.PRODUCER, this);
+		GraphManager.addNota(graphManager, GraphManager.DOT_BACKGROUND, "darksalmon", this);
+	}
+
+	@Override
+	public void startup() {
+		int[] lines = new int[connections.length];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = hardware.gpioLine(Port.DIGITALS[connections[i].register]);
+		}
+		backing = hardware.newGPIOLineBacking();
+		backing.configure(lines, new int[0], 0);
+
+		//transitions are found against the starting values
+		long values = backing.readInputs();
+		lastValue = new int[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			lastValue[i] = (int)(1 & (values>>>i));
+		}
+		logger.debug("digital inputs on edge from gpio lines {}", Arrays.toString(lines));
+	}
+
+	@Override
+	public void run() {
+		do {
+			if (edgePos == edgeCount) {
+				edgePos = 0;
+				edgeCount = backing.readEdges(edgeTime, edgeInput, edgeKind, WAIT_MS);
+				if (0 == edgeCount) {
+					return;
+				}
+			}
+			while (edgePos < edgeCount) {
+				int input = edgeInput[edgePos];
+				int value = GPIOLineBacking.EDGE_RISING == edgeKind[edgePos] ? 1 : 0;
+				if (value != lastValue[input]) {
+					if (!Pipe.hasRoomForWrite(responsePipe)) {
+						return; //try again later, the edge is kept until there is room
+					}
+					lastValue[input] = value;
+					writeEdge(connections[input].register, value, edgeTime[edgePos]);
+				}
+				edgePos++;
+			}
+		} while (true);
+	}
+
+	private void writeEdge(int connector, int value, long edgeNS) {
+		long now = hardware.nanoTime();
+		int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20);
+		Pipe.addIntValue(connector, responsePipe);
+		Pipe.addLongValue(hardware.currentTimeMillis() - ((now-edgeNS)/1_000_000), responsePipe);
+		Pipe.addIntValue(value, responsePipe);
+
+		long duration = 0;
+		Pipe.addLongValue(duration, responsePipe);
+		Pipe.addLongValue(edgeNS, responsePipe);
+		Pipe.addLongValue(now-edgeNS, responsePipe);
+
+		Pipe.publishWrites(responsePipe);
+		Pipe.confirmLowLevelWrite(responsePipe, size);
+	}
+
+	@Override
+	public void shutdown() {
+		if (null != backing) {
+			backing.close();
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.ociweb.pronghorn.iot;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Earliest deadline first schedule of polled inputs. Unlike the ScriptedSchedule no common
+ * clock is needed so any mix of periods costs nothing more than one heap entry each.
+ *
+ * The next due input is always at the root of the heap. After it is sampled its planned and
+ * actual times are kept, the lateness is added to the jitter histogram and the input is moved
+ * out by its period. Inputs are never planned in the past, if one falls more than a period
+ * behind the missed samples are skipped and counted as overruns.
+ */
+public class EDFPollSchedule {
+
+	public static final int JITTER_BUCKETS = 64; //bucket n holds lateness below 2^n ns, bucket 0 is on time
+
+	private final long[] periods;
+	private final int[] ids;
+	private final long[] due;
+	private final int[] heap;
+
+	private final long[] plannedTime;
+	private final long[] actualTime;
+	private final long[] jitter = new long[JITTER_BUCKETS];
+	private long samples;
+	private long maxLateness;
+	private long overruns;
+
+	/**
+	 * @param periodsNS period of each input
+	 * @param ids value returned by {@link #nextId()} for each input, e.g. its index in the connections
+	 */
+	public EDFPollSchedule(long[] periodsNS, int[] ids) {
+		if (periodsNS.length != ids.length || 0 == periodsNS.length) {
+			throw new UnsupportedOperationException("Each of the one or more periods must have an id");
+		}
+		this.periods = periodsNS;
+		this.ids = ids;
+		this.due = new long[periodsNS.length];
+		this.heap = new int[periodsNS.length];
+		this.plannedTime = new long[periodsNS.length];
+		this.actualTime = new long[periodsNS.length];
+		int i = periodsNS.length;
+		while (--i>=0) {
+			if (periodsNS[i] <= 0) {
+				throw new UnsupportedOperationException("Poll period must be positive");
+			}
+			heap[i] = i;
+		}
+	}
+
+	/**
+	 * Every input is due at the start time.
+	 */
+	public void start(long startNS) {
+		Arrays.fill(due, startNS);
+		int i = heap.length;
+		while (--i>=0) {
+			heap[i] = i;
+		}
+	}
+
+	public int nextId() {
+		return ids[heap[0]];
+	}
+
+	public long nextDue() {
+		return due[heap[0]];
+	}
+
+	public long minPeriod() {
+		long result = Long.MAX_VALUE;
+		int i = periods.length;
+		while (--i>=0) {
+			result = Math.min(result, periods[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Records the sample of the next due input and schedules its following sample.
+	 *
+	 * @param actualNS time the sample was taken
+	 * @return false if the sample was a full period or more late and samples were skipped
+	 */
+	public boolean sampled(long actualNS) {
+		int item = heap[0];
+		long planned = due[item];
+		plannedTime[item] = planned;
+		actualTime[item] = actualNS;
+
+		long lateness = Math.max(0, actualNS - planned);
+		jitter[64 - Long.numberOfLeadingZeros(lateness)]++;
+		maxLateness = Math.max(maxLateness, lateness);
+		samples++;
+
+		long next = planned + periods[item];
+		boolean onTime = next > actualNS;
+		if (!onTime) {
+			long behind = 1 + (actualNS - next) / periods[item];
+			overruns += behind;
+			next += behind * periods[item];
+		}
+		due[item] = next;
+		siftDown();
+		return onTime;
+	}
+
+	private void siftDown() {
+		int size = heap.length;
+		int pos = 0;
+		int item = heap[0];
+		int child;
+		while ((child = (pos<<1)+1) < size) {
+			if (child+1 < size && before(heap[child+1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], item)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = item;
+	}
+
+	private boolean before(int a, int b) {
+		//ties keep the order the inputs were given in
+		return due[a] < due[b] || (due[a] == due[b] && a < b);
+	}
+
+	/**
+	 * @return planned time of the last sample of the input with this position in the periods
+	 */
+	public long plannedTime(int input) {
+		return plannedTime[input];
+	}
+
+	/**
+	 * @return actual time of the last sample of the input with this position in the periods
+	 */
+	public long actualTime(int input) {
+		return actualTime[input];
+	}
+
+	/**
+	 * @return counts of samples by lateness, bucket n counts lateness from 2^(n-1) up to 2^n ns
+	 */
+	public long[] jitterHistogram() {
+		return jitter;
+	}
+
+	public long samples() {
+		return samples;
+	}
+
+	public long maxLateness() {
+		return maxLateness;
+	}
+
+	public long overruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return lateness in ns which this percent of the samples did not exceed, rounded up to the end of its bucket
+	 */
+	public long latenessPercentile(double percent) {
+		long limit = (long)Math.ceil(samples * percent / 100d);
+		long total = 0;
+		for (int b = 0; b < JITTER_BUCKETS; b++) {
+			total += jitter[b];
+			if (total >= limit) {
+				return 0 == b ? 0 : Math.min(maxLateness, (1L << b)-1); //upper bound of the bucket
+			}
+		}
+		return maxLateness;
+	}
+
+	public <A extends Appendable> A appendJitter(A target) {
+		try {
+			target.append("samples ").append(Long.toString(samples))
+			      .append(" late p50 ").append(Long.toString(latenessPercentile(50)))
+			      .append("ns p99 ").append(Long.toString(latenessPercentile(99)))
+			      .append("ns max ").append(Long.toString(maxLateness))
+			      .append("ns overruns ").append(Long.toString(overruns));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return target;
+	}
+
+	@Override
+	public String toString() {
+		return appendJitter(new StringBuilder()).toString();
+	}
+
+}
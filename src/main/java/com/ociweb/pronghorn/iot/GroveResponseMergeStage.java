@@ -0,0 +1,108 @@
+package com.ociweb.pronghorn.iot;
+
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeReader;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.PronghornStage;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Merges the samples of each input stage into the single pipe consumed by the listeners.
+ * Order is kept for each input but there is no ordering between inputs.
+ */
+public class GroveResponseMergeStage extends PronghornStage {
+
+	private final Pipe<GroveResponseSchema>[] inputs;
+	private final Pipe<GroveResponseSchema> output;
+	private int shutdownCount;
+
+	public GroveResponseMergeStage(GraphManager graphManager, Pipe<GroveResponseSchema>[] inputs, Pipe<GroveResponseSchema> output) {
+		super(graphManager, inputs, output);
+		this.inputs = inputs;
+		this.output = output;
+		GraphManager.addNota(graphManager, GraphManager.DOT_BACKGROUND, "darksalmon", this);
+	}
+
+	@Override
+	public void run() {
+		int i = inputs.length;
+		while (--i>=0) {
+			Pipe<GroveResponseSchema> input = inputs[i];
+			while (PipeWriter.hasRoomForWrite(output) && PipeReader.tryReadFragment(input)) {
+
+				int msgIdx = PipeReader.getMsgIdx(input);
+				switch (msgIdx) {
+					case GroveResponseSchema.MSG_DIGITALSAMPLE_20:
+						GroveResponseSchema.publishDigitalSample(output,
+								PipeReader.readInt(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CONNECTOR_21),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_TIME_11),
+								PipeReader.readInt(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_VALUE_22),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_PREVDURATION_25),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13));
+						break;
+					case GroveResponseSchema.MSG_ANALOGSAMPLE_30:
+						GroveResponseSchema.publishAnalogSample(output,
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_TIME_11),
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_VALUE_32),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_PREVDURATION_35),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13));
+						break;
+					case GroveResponseSchema.MSG_ENCODER_70:
+						GroveResponseSchema.publishEncoder(output,
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_CONNECTOR_71),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_TIME_11),
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_VALUE_72),
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_DELTA_73),
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_SPEED_74),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_PREVDURATION_75),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_CAPTURENS_12),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ENCODER_70_FIELD_READDURATIONNS_13));
+						break;
+					case GroveResponseSchema.MSG_DIGITALBANK_80:
+						GroveResponseSchema.publishDigitalBank(output,
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_TIME_11),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_PORTS_81),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_VALUES_82),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_CHANGED_83),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_CAPTURENS_12),
+								PipeReader.readLong(input, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_READDURATIONNS_13));
+						break;
+					case GroveResponseSchema.MSG_ANALOGBLOCK_90:
+						//samples may wrap in the blob ring so they are copied with the mask
+						PipeWriter.presumeWriteFragment(output, GroveResponseSchema.MSG_ANALOGBLOCK_90);
+						PipeWriter.writeInt(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91,
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91));
+						PipeWriter.writeLong(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_TIME_11,
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_TIME_11));
+						PipeWriter.writeLong(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92,
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92));
+						PipeWriter.writeInt(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_COUNT_93,
+								PipeReader.readInt(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_COUNT_93));
+						PipeWriter.writeBytes(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94,
+								PipeReader.readBytesBackingArray(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94),
+								PipeReader.readBytesPosition(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94),
+								PipeReader.readBytesLength(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94),
+								PipeReader.readBytesMask(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94));
+						PipeWriter.writeLong(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12,
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12));
+						PipeWriter.writeLong(output, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13,
+								PipeReader.readLong(input, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13));
+						PipeWriter.publishWrites(output);
+						break;
+					case -1:
+						if (++shutdownCount == inputs.length) {
+							PipeWriter.publishEOF(output);
+							requestShutdown();
+						}
+						break;
+				}
+				PipeReader.releaseReadLock(input);
+			}
+		}
+	}
+
+}
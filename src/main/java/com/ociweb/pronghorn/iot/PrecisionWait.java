@@ -0,0 +1,173 @@
+package com.ociweb.pronghorn.iot;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits to a due time by sleeping most of the way and spinning the rest. How late this platform
+ * wakes from a sleep is learned as it runs, in the way TCP learns a round trip time, so the spin
+ * is only as long as the sleep is unreliable. A Pi Zero may overshoot by 100us where a desktop
+ * overshoots by 50us, neither needs a constant tuned for it.
+ *
+ * Times are on the clock given to the constructor, System.nanoTime() by default. Every wait which
+ * was not already past due adds its wake up error to a histogram, see {@link #appendStats(Appendable)}.
+ */
+public class PrecisionWait {
+
+	public static final int ERROR_BUCKETS = 64; //bucket n holds lateness below 2^n ns, bucket 0 is on time
+
+	private static final int SEED_SLEEPS = 8;
+	private static final long SEED_SLEEP_NS = 50_000;
+	private static final long YIELD_LIMIT_NS = 10_000; //closer than this the spin no longer yields
+
+	private final LongSupplier clock;
+	private final long clockCostNS;
+	private long overshootNS;    //smoothed lateness of a sleep
+	private long overshootDevNS; //smoothed deviation of that lateness
+
+	private final long[] errors = new long[ERROR_BUCKETS];
+	private long waits;
+	private long maxLateNS;
+	private long sleptNS;
+	private long spunNS;
+
+	public PrecisionWait() {
+		this(System::nanoTime);
+	}
+
+	public PrecisionWait(LongSupplier clock) {
+		this.clock = clock;
+		this.clockCostNS = SpinWait.measureClockCost(clock);
+		//a few short sleeps so the first real wait does not start from nothing
+		for (int i = 0; i < SEED_SLEEPS; i++) {
+			long start = clock.getAsLong();
+			LockSupport.parkNanos(SEED_SLEEP_NS);
+			learn((clock.getAsLong()-start)-SEED_SLEEP_NS);
+		}
+	}
+
+	/**
+	 * Sleeps and then spins until the due time, returns at once if it has passed.
+	 *
+	 * @return false if the thread was interrupted, the interrupt is left set
+	 */
+	public boolean until(long dueNS) {
+		long start = clock.getAsLong();
+		long remaining = dueNS-start;
+		if (remaining <= 0) {
+			return true;
+		}
+
+		//sleep all but the part the sleep can not be trusted with
+		long sleep = remaining-spinTailNS();
+		long now = start;
+		if (sleep > 0) {
+			LockSupport.parkNanos(sleep);
+			now = clock.getAsLong();
+			if (Thread.currentThread().isInterrupted()) {
+				return false;
+			}
+			learn((now-start)-sleep);
+			sleptNS += now-start;
+		}
+
+		long spinStart = now;
+		long dif;
+		while ((dif = dueNS-(now = clock.getAsLong())) > 0) {
+			if (dif > YIELD_LIMIT_NS) {
+				Thread.yield();
+			}
+		}
+		spunNS += now-spinStart;
+		record(now-dueNS);
+		return true;
+	}
+
+	private void learn(long overshoot) {
+		//gains of 1/8 and 1/4 as used for the TCP round trip time
+		long error = overshoot-overshootNS;
+		overshootNS += error>>3;
+		overshootDevNS += (Math.abs(error)-overshootDevNS)>>2;
+	}
+
+	private void record(long lateNS) {
+		waits++;
+		errors[64-Long.numberOfLeadingZeros(lateNS)]++;
+		maxLateNS = Math.max(maxLateNS, lateNS);
+	}
+
+	/**
+	 * @return time left to spin after a sleep, the learned overshoot with room for its deviation
+	 */
+	public long spinTailNS() {
+		return Math.max(0, overshootNS+(overshootDevNS<<2))+clockCostNS;
+	}
+
+	public long clockCostNS() {
+		return clockCostNS;
+	}
+
+	public long overshootNS() {
+		return overshootNS;
+	}
+
+	public long waits() {
+		return waits;
+	}
+
+	public long maxLateNS() {
+		return maxLateNS;
+	}
+
+	/**
+	 * @return counts of waits by how late they woke, bucket n counts lateness from 2^(n-1) up to 2^n ns
+	 */
+	public long[] errorHistogram() {
+		return errors;
+	}
+
+	/**
+	 * @return share of the waiting time spent spinning, the cpu burned
+	 */
+	public double spinShare() {
+		long total = sleptNS+spunNS;
+		return 0==total ? 0 : spunNS/(double)total;
+	}
+
+	/**
+	 * @return lateness in ns which this percent of the waits did not exceed, rounded up to the end of its bucket
+	 */
+	public long latePercentile(double percent) {
+		long limit = (long)Math.ceil(waits * percent / 100d);
+		long total = 0;
+		for (int b = 0; b < ERROR_BUCKETS; b++) {
+			total += errors[b];
+			if (total >= limit) {
+				return 0 == b ? 0 : Math.min(maxLateNS, (1L << b)-1);
+			}
+		}
+		return maxLateNS;
+	}
+
+	public <A extends Appendable> A appendStats(A target) {
+		try {
+			target.append("waits ").append(Long.toString(waits))
+			      .append(" late p50 ").append(Long.toString(latePercentile(50)))
+			      .append("ns p99 ").append(Long.toString(latePercentile(99)))
+			      .append("ns max ").append(Long.toString(maxLateNS))
+			      .append("ns spin ").append(Long.toString(Math.round(spinShare()*100)))
+			      .append("% tail ").append(Long.toString(spinTailNS()))
+			      .append("ns");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return target;
+	}
+
+	@Override
+	public String toString() {
+		return appendStats(new StringBuilder()).toString();
+	}
+
+}
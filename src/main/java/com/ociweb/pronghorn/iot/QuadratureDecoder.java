@@ -0,0 +1,69 @@
+package com.ociweb.pronghorn.iot;
+
+import com.ociweb.iot.hardware.impl.Util;
+
+/**
+ * Quadrature state machine for a set of rotary encoders, one lookup in Util.quadratureMap for
+ * each new pin state. Counts are kept in quarter steps, a detent is the full cycle of four.
+ *
+ * When both pins change between two states a transition was missed. The direction can not be
+ * known so it is taken to be the same as the last step, such a skip is counted as two steps.
+ */
+public class QuadratureDecoder {
+
+	private final int[] state;
+	private final long[] quarterSteps;
+	private final int[] lastDirection;
+	private final long[] missed;
+
+	public QuadratureDecoder(int encoders) {
+		this.state = new int[encoders];
+		this.quarterSteps = new long[encoders];
+		this.lastDirection = new int[encoders];
+		this.missed = new long[encoders];
+	}
+
+	/**
+	 * Sets the starting pin state without counting a step, state is (pinA<<1)|pinB
+	 */
+	public void reset(int encoder, int pinState) {
+		state[encoder] = 0x3 & pinState;
+	}
+
+	/**
+	 * @param pinState (pinA<<1)|pinB
+	 * @return quarter steps taken, zero when the state did not change
+	 */
+	public int update(int encoder, int pinState) {
+		int next = 0x3 & pinState;
+		int step = Util.quadratureMap[(state[encoder]<<2)|next];
+		state[encoder] = next;
+		if (Util.QUADRATURE_MISSED == step) {
+			missed[encoder]++;
+			step = lastDirection[encoder]<<1;
+		} else if (0 != step) {
+			lastDirection[encoder] = step;
+		}
+		quarterSteps[encoder] += step;
+		return step;
+	}
+
+	public long quarterSteps(int encoder) {
+		return quarterSteps[encoder];
+	}
+
+	/**
+	 * @return whole detents turned, rounded toward zero
+	 */
+	public int detents(int encoder) {
+		return (int)(quarterSteps[encoder]/4);
+	}
+
+	/**
+	 * @return count of transitions which were not seen, a growing count means the encoder is turning faster than it is read
+	 */
+	public long missed(int encoder) {
+		return missed[encoder];
+	}
+
+}
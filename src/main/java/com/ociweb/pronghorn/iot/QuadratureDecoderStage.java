@@ -0,0 +1,191 @@
+package com.ociweb.pronghorn.iot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.iot.hardware.HardwareConnection;
+import com.ociweb.iot.hardware.HardwareImpl;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+import com.ociweb.pronghorn.iot.schema.GroveResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.stage.PronghornStage;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Decodes the rotary encoders on their own thread so no other input waits on them. With the GPIO
+ * character device every edge is queued by the kernel and none are lost, otherwise the pins are
+ * sampled in a tight loop. Counts and speed are published at a fixed rate while the encoder moves.
+ *
+ * The speed is signed and in detents per minute. Transitions which were too fast to be seen are
+ * counted, see {@link #getMissedTransitions(int)}.
+ */
+public class QuadratureDecoderStage extends PronghornStage {
+
+	private static final Logger logger = LoggerFactory.getLogger(QuadratureDecoderStage.class);
+
+	private static final int MAX_EDGES = 64;
+
+	private final Pipe<GroveResponseSchema> responsePipe;
+	private final HardwareImpl hardware;
+	private final HardwareConnection[] encoders;
+	private final long publishNS;
+	private final boolean onEdge;
+
+	private QuadratureDecoder decoder;
+	private GPIOLineBacking backing;
+	private long pinValues; //bit pairs of each encoder, only used on edge
+	private final long[] edgeTime = new long[MAX_EDGES];
+	private final int[] edgeInput = new int[MAX_EDGES];
+	private final int[] edgeKind = new int[MAX_EDGES];
+
+	private long nextPublishNS;
+	private int[] lastDetents;
+	private int[] lastSpeed;
+	private long[] lastPublishNS;
+	private long[] reportedMissed;
+
+	public QuadratureDecoderStage(GraphManager graphManager, Pipe<GroveResponseSchema> responsePipe, HardwareImpl hardware, int publishRateMS) {
+		super(graphManager, NONE, responsePipe);
+		this.responsePipe = responsePipe;
+		this.hardware = hardware;
+		this.encoders = hardware.getQuadratureEncoders();
+		this.publishNS = publishRateMS*1_000_000L;
+		this.onEdge = hardware.getGPIOCharacterDevice()>=0;
+
+		GraphManager.addNota(graphManager, GraphManager.PRODUCER, GraphManager.PRODUCER, this);
+		GraphManager.addNota(graphManager, GraphManager.DOT_BACKGROUND, "darksalmon", this);
+	}
+
+	@Override
+	public void startup() {
+		//sampling must be of the highest priority
+		Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
+
+		decoder = new QuadratureDecoder(encoders.length);
+		lastDetents = new int[encoders.length];
+		lastSpeed = new int[encoders.length];
+		lastPublishNS = new long[encoders.length];
+		reportedMissed = new long[encoders.length];
+
+		if (onEdge) {
+			int[] lines = new int[encoders.length<<1];
+			for (int i = 0; i < encoders.length; i++) {
+				lines[i<<1]     = hardware.gpioLine(Port.DIGITALS[encoders[i].register]);
+				lines[(i<<1)+1] = hardware.gpioLine(Port.DIGITALS[encoders[i].register+1]);
+			}
+			backing = hardware.newGPIOLineBacking();
+			backing.configure(lines, new int[0], 0);
+			pinValues = backing.readInputs();
+			for (int i = 0; i < encoders.length; i++) {
+				decoder.reset(i, pinState(i));
+			}
+		} else {
+			for (int i = 0; i < encoders.length; i++) {
+				decoder.reset(i, sample(encoders[i].register));
+			}
+		}
+
+		long now = hardware.nanoTime();
+		nextPublishNS = now+publishNS;
+		for (int i = 0; i < encoders.length; i++) {
+			lastPublishNS[i] = now;
+		}
+		logger.debug("decoding {} rotary encoders {}", encoders.length, onEdge ? "on edge" : "by sampling");
+	}
+
+	//pin A is the even line, it is the high bit of the state
+	private int pinState(int encoder) {
+		int a = (int)(1 & (pinValues>>>(encoder<<1)));
+		int b = (int)(1 & (pinValues>>>((encoder<<1)+1)));
+		return (a<<1)|b;
+	}
+
+	private int sample(int register) {
+		return (hardware.read(Port.DIGITALS[register])<<1) | hardware.read(Port.DIGITALS[register+1]);
+	}
+
+	@Override
+	public void run() {
+		if (onEdge) {
+			long waitNS = nextPublishNS-hardware.nanoTime();
+			if (waitNS > 0) {
+				int count = backing.readEdges(edgeTime, edgeInput, edgeKind, (int)Math.max(1, waitNS/1_000_000));
+				for (int e = 0; e < count; e++) {
+					long bit = 1L<<edgeInput[e];
+					pinValues = GPIOLineBacking.EDGE_RISING == edgeKind[e] ? pinValues|bit : pinValues&~bit;
+					decoder.update(edgeInput[e]>>1, pinState(edgeInput[e]>>1));
+				}
+			}
+		} else {
+			int i;
+			do {
+				i = encoders.length;
+				while (--i>=0) {
+					decoder.update(i, sample(encoders[i].register));
+				}
+			} while (hardware.nanoTime()<nextPublishNS);
+		}
+
+		long now = hardware.nanoTime();
+		if (now>=nextPublishNS) {
+			publish(now);
+			nextPublishNS += publishNS*Math.max(1, 1+(now-nextPublishNS)/publishNS);
+		}
+	}
+
+	private void publish(long now) {
+		int i = encoders.length;
+		while (--i>=0) {
+			int detents = decoder.detents(i);
+			int delta = detents-lastDetents[i];
+			long elapsed = now-lastPublishNS[i];
+			int speed = (int)((delta*60_000_000_000L)/Math.max(1, elapsed));
+			//one more sample once it stops so the listeners see the speed drop to zero
+			if ((0!=delta || 0!=lastSpeed[i]) && Pipe.hasRoomForWrite(responsePipe)) {
+				writeRotation(encoders[i].register, hardware.currentTimeMillis(), detents, delta, speed, now-elapsed, elapsed);
+				lastDetents[i] = detents;
+				lastSpeed[i] = speed;
+				lastPublishNS[i] = now;
+			} else if (0==delta) {
+				lastPublishNS[i] = now;
+			}
+			if (decoder.missed(i)!=reportedMissed[i]) {
+				logger.debug("rotary encoder on {} missed {} transitions", Port.DIGITALS[encoders[i].register], decoder.missed(i)-reportedMissed[i]);
+				reportedMissed[i] = decoder.missed(i);
+			}
+		}
+	}
+
+	private void writeRotation(int connector, long time, int value, int delta, int speed, long captureNS, long readNS) {
+		int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_ENCODER_70);
+		Pipe.addIntValue(connector, responsePipe);
+		Pipe.addLongValue(time, responsePipe);
+		Pipe.addIntValue(value, responsePipe);
+		Pipe.addIntValue(delta, responsePipe);
+		Pipe.addIntValue(speed, responsePipe);
+
+		long duration = 0;
+		Pipe.addLongValue(duration, responsePipe);
+		Pipe.addLongValue(captureNS, responsePipe);
+		Pipe.addLongValue(readNS, responsePipe);
+
+		Pipe.publishWrites(responsePipe);
+		Pipe.confirmLowLevelWrite(responsePipe, size);
+	}
+
+	/**
+	 * @return transitions which were too fast to be seen on this encoder, in the order of HardwareImpl.getQuadratureEncoders()
+	 */
+	public long getMissedTransitions(int encoder) {
+		return decoder.missed(encoder);
+	}
+
+	@Override
+	public void shutdown() {
+		if (null != backing) {
+			backing.close();
+		}
+	}
+
+}
@@ -13,12 +13,14 @@ import com.ociweb.gl.impl.stage.ReactiveOperators;
 import com.ociweb.iot.hardware.HardwareConnection;
 import com.ociweb.iot.hardware.HardwareImpl;
 import com.ociweb.iot.hardware.impl.SerialInputSchema;
+import com.ociweb.iot.impl.AnalogBlockListenerBase;
 import com.ociweb.iot.impl.AnalogListenerBase;
 import com.ociweb.iot.impl.DigitalListenerBase;
 import com.ociweb.iot.impl.I2CListenerBase;
 import com.ociweb.iot.impl.ImageListenerBase;
 import com.ociweb.iot.impl.RotaryListenerBase;
 import com.ociweb.iot.impl.SerialListenerBase;
+import com.ociweb.iot.maker.AnalogBlockListener;
 import com.ociweb.iot.maker.AnalogListener;
 import com.ociweb.iot.maker.DigitalListener;
 import com.ociweb.iot.maker.I2CListener;
@@ -56,10 +58,13 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
     
     protected boolean[] sendEveryAnalogValue;
     protected boolean[] sendEveryDigitalValue;
+    protected long sendEveryDigitalMask; //same as sendEveryDigitalValue, bit per port for the banked digital reads
     
     
     protected int[] lastAnalogValues;
     protected long[] lastAnalogTimes;
+    
+    private final int[] blockSamples = new int[HardwareImpl.MAX_ANALOG_BLOCK_SAMPLES]; //reused for every analog block
 
     /////////////////////
     //Listener Filters
@@ -68,6 +73,7 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
     private Port[] excludedPorts;//if null then no values are excluded
     private int[] includedI2Cs;//if null then all values are accepted
     private int[] excludedI2Cs;//if null then no values are excluded
+    private int[] includedI2CBuses;//if null then all buses are accepted
 		
     /////////////////////
     private Number stageRate;
@@ -105,6 +111,14 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 					((ReactiveIoTListenerStage)r).consumeResponseMessage(target, input);										
 				}        		                	 
 	        })
+        .addOperator(AnalogBlockListenerBase.class,
+        		GroveResponseSchema.instance,
+	       		 new ReactiveOperator() {
+				@Override
+				public void apply(Object target, Pipe input, ReactiveListenerStage r) {
+					((ReactiveIoTListenerStage)r).consumeResponseMessage(target, input);										
+				}        		                	 
+	        })
         .addOperator(DigitalListenerBase.class, 
         		GroveResponseSchema.instance,
 	       		 new ReactiveOperator() {
@@ -250,6 +264,9 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
         	HardwareConnection con = digitalInputs[d];
         	//System.out.println("seems wrong to covert this: "+con.register);
         	sendEveryDigitalValue[builder.convertToPort(con.register)] = con.sendEveryValue;        	
+        	if (con.sendEveryValue) {
+        		sendEveryDigitalMask |= 1L<<builder.convertToPort(con.register);
+        	}
         }
         
         
@@ -300,8 +317,11 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 			int position = PipeReader.readBytesPosition(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
 			int length = PipeReader.readBytesLength(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
 			int mask = PipeReader.readBytesMask(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12);
+			long captureNS = PipeReader.readLong(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_CAPTURENS_15);
+			long readNS = PipeReader.readLong(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_READDURATIONNS_16);
+			int bus = PipeReader.readInt(p, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BUS_17);
 		    
-		    commonI2CEventProcessing((I2CListenerBase) listener, addr, register, time, backing, position, length, mask);
+		    commonI2CEventProcessing((I2CListenerBase) listener, bus, addr, register, time, backing, position, length, mask, captureNS, readNS);
 
 	}
 
@@ -370,19 +390,51 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
                         commonAnalogEventProcessing(Port.ANALOGS[PipeReader.readInt(p, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31)],
                         				            PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_TIME_11), 
                         				            PipeReader.readInt(p, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_VALUE_32), 
+                        				            PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12), 
+                        				            PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13), 
                         				            (AnalogListenerBase)listener);
                         
                     }   
                 break;               
+                case GroveResponseSchema.MSG_ANALOGBLOCK_90:
+                	
+                    if (listener instanceof AnalogBlockListenerBase || listener instanceof AnalogListenerBase) {
+                    	int count = AnalogSampleBlock.read(PipeReader.readBytesBackingArray(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94), 
+                    			                           PipeReader.readBytesPosition(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94), 
+                    			                           PipeReader.readBytesMask(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94), 
+                    			                           PipeReader.readBytesLength(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94), 
+                    			                           blockSamples);
+                    	commonAnalogBlockProcessing(Port.ANALOGS[PipeReader.readInt(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91)], 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_TIME_11), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13), 
+                    			                    blockSamples, count, listener);
+                    }
+                break;
                 case GroveResponseSchema.MSG_DIGITALSAMPLE_20:
                     
                     if (listener instanceof DigitalListenerBase) {
                         commonDigitalEventProcessing(Port.DIGITALS[PipeReader.readInt(p, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CONNECTOR_21)], 
                         		                     PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_TIME_11), 
                         		                     PipeReader.readInt(p, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_VALUE_22), 
+                        		                     PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12), 
+                        		                     PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13), 
                         		                     (DigitalListenerBase)listener);
                     }   
                 break; 
+                case GroveResponseSchema.MSG_DIGITALBANK_80:
+                	
+                    if (listener instanceof DigitalListenerBase) {
+                    	commonDigitalBankProcessing(PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_TIME_11), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_PORTS_81), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_VALUES_82), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_CHANGED_83), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_CAPTURENS_12), 
+                    			                    PipeReader.readLong(p, GroveResponseSchema.MSG_DIGITALBANK_80_FIELD_READDURATIONNS_13), 
+                    			                    (DigitalListenerBase)listener);
+                    }
+                break;
                 case GroveResponseSchema.MSG_ENCODER_70:
                     
                     if (listener instanceof RotaryListenerBase) {    
@@ -413,19 +465,31 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
     }
     
 
-	protected void commonI2CEventProcessing(I2CListenerBase listener, int addr, int register, long time, byte[] backing, int position, int length, int mask) {
-		if (isIncluded(addr, includedI2Cs) && isNotExcluded(addr, excludedI2Cs)) {
-			listener.i2cEvent(addr, register, time, backing, position, length, mask);
+	protected void commonI2CEventProcessing(I2CListenerBase listener, int bus, int addr, int register, long time, byte[] backing, int position, int length, int mask, long captureNS, long readNS) {
+		if (isIncluded(addr, includedI2Cs) && isNotExcluded(addr, excludedI2Cs) && isIncluded(bus, includedI2CBuses)) {
+			listener.i2cEvent(bus, addr, register, time, backing, position, length, mask, captureNS, readNS);
 		}
 	}
 	    
     
-	protected void commonDigitalEventProcessing(Port port, long time, int value, DigitalListenerBase dListener) {
+	/**
+	 * Expands only the changed ports of a bank, and the ports which send every value, into digital events.
+	 */
+	protected void commonDigitalBankProcessing(long time, long ports, long values, long changed, long captureNS, long readNS, DigitalListenerBase dListener) {
+		long expand = ports & (changed | sendEveryDigitalMask);
+		while (0 != expand) {
+			int port = Long.numberOfTrailingZeros(expand);
+			expand &= expand-1;
+			commonDigitalEventProcessing(Port.DIGITALS[port], time, (int)(1 & (values>>>port)), captureNS, readNS, dListener);
+		}
+	}
+	
+	protected void commonDigitalEventProcessing(Port port, long time, int value, long captureNS, long readNS, DigitalListenerBase dListener) {
 		
 		if (isIncluded(port, includedPorts) && isNotExcluded(port, excludedPorts)) {
 
 			if (sendEveryDigitalValue[port.port]) {
-				dListener.digitalEvent(port, time, 0==lastDigitalTimes[port.port] ? -1 : time-lastDigitalTimes[port.port], value);				
+				dListener.digitalEvent(port, time, 0==lastDigitalTimes[port.port] ? -1 : time-lastDigitalTimes[port.port], value, captureNS, readNS);				
 				if(value!=lastDigitalValues[port.port]){  
 					lastDigitalValues[port.port] = value;
 			    	lastDigitalTimes[port.port] = time;
@@ -433,7 +497,7 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 				
 			} else {			
 				if(value!=lastDigitalValues[port.port]){  
-					dListener.digitalEvent(port, time, 0==lastDigitalTimes[port.port] ? -1 : time-lastDigitalTimes[port.port], value);
+					dListener.digitalEvent(port, time, 0==lastDigitalTimes[port.port] ? -1 : time-lastDigitalTimes[port.port], value, captureNS, readNS);
 				    lastDigitalValues[port.port] = value;
 				    lastDigitalTimes[port.port] = time;
 				}
@@ -441,7 +505,23 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 		}
 	}
 
-	protected void commonAnalogEventProcessing(Port port, long time, int value, AnalogListenerBase aListener) {
+	/**
+	 * Blocks go whole to an AnalogBlockListener, a plain AnalogListener gets one event for each sample.
+	 */
+	protected void commonAnalogBlockProcessing(Port port, long time, long captureNS, long intervalNS, long readNS, int[] samples, int count, Object listener) {
+		if (listener instanceof AnalogBlockListenerBase) {
+			if (isIncluded(port, includedPorts) && isNotExcluded(port, excludedPorts)) {
+				((AnalogBlockListenerBase)listener).analogBlock(port, time, captureNS, intervalNS, samples, count);
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				long offsetNS = i*intervalNS;
+				commonAnalogEventProcessing(port, time+(offsetNS/1_000_000), samples[i], captureNS+offsetNS, readNS, (AnalogListenerBase)listener);
+			}
+		}
+	}
+
+	protected void commonAnalogEventProcessing(Port port, long time, int value, long captureNS, long readNS, AnalogListenerBase aListener) {
 		
 		if (isIncluded(port, includedPorts) && isNotExcluded(port, excludedPorts)) {
 			
@@ -467,13 +547,13 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 					lastAnalogTimes[port.port] = time;   
 					lastAnalogValues[port.port] = runningValue;
 				}
-				aListener.analogEvent(port, time, 0==lastAnalogTimes[port.port] ? Long.MAX_VALUE : time-lastAnalogTimes[port.port], mean, runningValue);
+				aListener.analogEvent(port, time, 0==lastAnalogTimes[port.port] ? Long.MAX_VALUE : time-lastAnalogTimes[port.port], mean, runningValue, captureNS, readNS);
 				
 			} else {								
 				if(runningValue!=lastAnalogValues[port.port]){ 
 										
 					//the duration here is the duration of how long the previous value was held.
-					aListener.analogEvent(port, time, 0==lastAnalogTimes[port.port] ? Long.MAX_VALUE : time-lastAnalogTimes[port.port], mean, runningValue);
+					aListener.analogEvent(port, time, 0==lastAnalogTimes[port.port] ? Long.MAX_VALUE : time-lastAnalogTimes[port.port], mean, runningValue, captureNS, readNS);
 				   
 					lastAnalogValues[port.port] = runningValue;
 				    lastAnalogTimes[port.port] = time;
@@ -484,7 +564,7 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 	
 	@Override
 	public ListenerFilterIoT includePorts(Port ... ports) {
-		if (!startupCompleted && (listener instanceof AnalogListener || listener instanceof DigitalListener)) {
+		if (!startupCompleted && (listener instanceof AnalogListener || listener instanceof AnalogBlockListener || listener instanceof DigitalListener)) {
 			includedPorts = ports;
 			return this;
 		} else {
@@ -498,7 +578,7 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 
 	@Override
 	public ListenerFilterIoT excludePorts(Port ... ports) {
-		if (!startupCompleted && (listener instanceof AnalogListener || listener instanceof DigitalListener)) {
+		if (!startupCompleted && (listener instanceof AnalogListener || listener instanceof AnalogBlockListener || listener instanceof DigitalListener)) {
 			excludedPorts = ports;
 			return this;
 		} else {
@@ -539,6 +619,20 @@ public class ReactiveIoTListenerStage extends ReactiveListenerStage<HardwareImpl
 	    }
 	}
 	
+	@Override
+	public ListenerFilterIoT includeI2CBuses(int... buses) {
+		if (!startupCompleted && listener instanceof I2CListener) {
+			includedI2CBuses = buses;
+			return this;
+	    } else {
+	    	if (startupCompleted) {
+	    		throw new UnsupportedOperationException("ListenerFilters may only be set before startup is called.  Eg. the filters can not be changed at runtime.");
+	    	} else {
+	    		throw new UnsupportedOperationException("The Listener must be an instance of I2CListener in order to call this method.");
+	    	}
+	    }
+	}
+	
 	private <E extends Enum<E>> long[] buildMaskArray(E[] state) {
 		int maxOrdinal = findMaxOrdinal(state);
 		int a = maxOrdinal >> 6;
@@ -5,6 +5,9 @@ import static com.ociweb.iot.grove.simple_digital.SimpleDigitalTwig.RotaryEncode
 
 import java.util.Arrays;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.ociweb.iot.hardware.HardwareConnection;
 import com.ociweb.iot.hardware.HardwareImpl;
 import com.ociweb.iot.hardware.IODevice;
@@ -18,6 +21,8 @@ import com.ociweb.pronghorn.util.math.ScriptedSchedule;
 
 public class ReadDeviceInputStage extends PronghornStage {
 
+	private static final Logger logger = LoggerFactory.getLogger(ReadDeviceInputStage.class);
+
 	private static final short activeBits = 4; //we have a max of 16 physical ports to use on the groveShield
 	private static final short activeSize = (short)(1<<activeBits);
 	private static final short activeIdxMask = (short)activeSize-1;
@@ -49,11 +54,32 @@ public class ReadDeviceInputStage extends PronghornStage {
 	private final Pipe<GroveResponseSchema> responsePipe;    
 	final HardwareImpl hardware;
 	private final ScriptedSchedule schedule;
+	private final EDFPollSchedule edf; //used instead of the script when polling earliest deadline first
+	private final boolean hardPolling; //owns a cpu and spins to each due time, see HardwareImpl.useHardPolling
+	private SpinWait spin;
+	private PrecisionWait precisionWait; //sleeps then spins to each sample time when not hard polling
+	private long hardStartNS;
+	private static final long HARD_SLICE_NS = 10_000_000; //longest spin before giving the scheduler a chance to shut us down
 	private HardwareConnection[] adConnections;
 
 	private long blockStartTime = 0;
 	private Number rate;
 	
+	//digital inputs read together when banked, see HardwareImpl.useDigitalBank
+	private HardwareConnection[] bankInputs;
+	private long bankPorts;
+	private boolean bankEveryValue;
+	private long lastBank;
+	private boolean bankPublished;
+	
+	//analog samples held until a block is full, see HardwareImpl.connect with samplesPerBlock
+	private int[][] blockValues;
+	private int[]   blockCount;
+	private long[]  blockTime;
+	private long[]  blockCaptureNS;
+	private long[]  blockLastNS;
+	private long[]  blockReadNS;
+	
 	public ReadDeviceInputStage(GraphManager graphManager, Pipe<GroveResponseSchema> resposnePipe, HardwareImpl hardware) {
 		super(graphManager, NONE, resposnePipe);
 
@@ -61,11 +87,16 @@ public class ReadDeviceInputStage extends PronghornStage {
 		this.hardware = hardware;
 
 		this.adConnections = hardware.combinedADConnections();
-		this.schedule = hardware.buildADPollSchedule();
+		this.hardPolling = hardware.isHardPolling();
+		this.edf = (hardPolling || hardware.isEarliestDeadlineFirstPolling()) ? hardware.buildADPollEDF() : null;
+		this.schedule = null==edf ? hardware.buildADPollSchedule() : null;
 		
-		assert(null!=schedule) : "should not have been called, there are no inputs configured";
+		assert(null!=schedule || null!=edf) : "should not have been called, there are no inputs configured";
 
-		if (null != this.schedule) {
+		if (null != this.edf) {
+			//wake often enough to sleep the last stretch to each due time ourselves
+			GraphManager.addNota(graphManager, GraphManager.SCHEDULE_RATE, Math.min(edf.minPeriod()>>1, 1_000_000), this); 
+		} else if (null != this.schedule) {
 			long computedRate = (this.schedule.commonClock);
 			do {
 				if (computedRate%10 == 0) {
@@ -157,13 +188,56 @@ public class ReadDeviceInputStage extends PronghornStage {
 
 		//hardware.endPinConfiguration(); //TODO: questionalble, should move else where.
 
+		blockValues = new int[Port.ANALOGS.length][];
+		blockCount = new int[Port.ANALOGS.length];
+		blockTime = new long[Port.ANALOGS.length];
+		blockCaptureNS = new long[Port.ANALOGS.length];
+		blockLastNS = new long[Port.ANALOGS.length];
+		blockReadNS = new long[Port.ANALOGS.length];
+		i = Port.ANALOGS.length;
+		while (--i>=0) {
+			int samples = hardware.getAnalogBlockSamples(i);
+			if (samples>0) {
+				blockValues[i] = new int[samples];
+			}
+		}
+
+		bankInputs = hardware.getBankedDigitalInputs();
+		i = bankInputs.length;
+		while (--i>=0) {
+			bankPorts |= 1L<<bankInputs[i].register;
+			bankEveryValue |= bankInputs[i].sendEveryValue;
+		}
+
+		if (hardPolling) {
+			//startup is on the same thread as run so this pins the polling
+			ThreadAffinity.pinCurrentThread(hardware.getHardPollCPU());
+			spin = new SpinWait(hardware::nanoTime);
+		} else {
+			precisionWait = new PrecisionWait(hardware::nanoTime);
+		}
+		
 		blockStartTime = hardware.nanoTime();//critical Pronghorn contract ensure this start is called by the same thread as run
+		hardStartNS = blockStartTime;
+		if (null != edf) {
+			edf.start(blockStartTime);
+		}
 	}
 
 
 	@Override
 	public void run() {
 		
+		if (hardPolling) {
+			runHardPolling();
+			return;
+		}
+		
+		if (null != edf) {
+			runEarliestDeadlineFirst();
+			return;
+		}
+		
 		do{
 		    long waitTime = blockStartTime - hardware.nanoTime();
 		    long longRate = rate.longValue();
@@ -186,53 +260,12 @@ public class ReadDeviceInputStage extends PronghornStage {
 				}
 				
 				//only check time AFTER we know that there is room on the outgoing pipe.
-				int overhead = 40;//40ns
-				long wait = (blockStartTime - hardware.nanoTime()) - overhead;
-				if (wait>0) {
-					//we must wait a little longer to ensure we 
-					//do not hit the time target too early.
-					try {
-						Thread.sleep(wait/1_000_000, (int)(wait%1_000_000));
-                        long dif;
-                        while ((dif = (blockStartTime - hardware.nanoTime()))>0) {
-                        	if (dif>100) {
-                        		Thread.yield();
-                        	}
-                        }
-						
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						requestShutdown();
-						return;
-					}
+				if (!precisionWait.until(blockStartTime)) {
+					requestShutdown();
+					return;
 				}
 			
-				HardwareConnection hc = adConnections[inProgressIdx];
-				int connector = hc.register;
-				
-				
-				if (RotaryEncoder == hc.twig) {
-					assert (hc.twig.pinsUsed()==2);
-					//rotary encoder
-					//low level write
-					readRotaryEncoder(connector, Port.DIGITALS[connector], hardware.currentTimeMillis()); //TODO: hack for now, needs more testing.
-				} else if (1 == hc.twig.range()) {
-					//digital read
-					int fieldValue = hardware.read(Port.DIGITALS[connector]);
-					//low level write
-					writeBit(responsePipe, connector, hardware.currentTimeMillis(), fieldValue);
-										
-				} else {
-					//analog read
-					int i = hc.twig.pinsUsed();
-					while (--i>=0) {
-						//int intValue = hardware.read(Port.DIGITALS[connector]); //was this way before
-						int intValue = hardware.read(Port.ANALOGS[connector+i]);
-   				    
-						//low level write
-						writeInt(responsePipe, connector+i, hardware.currentTimeMillis(), intValue);
-					}
-				}
+				readConnection(adConnections[inProgressIdx]);
 								
 			}
 			//since we exit early if the pipe is full we must not move this forward until now at the bottom of the loop.
@@ -242,10 +275,156 @@ public class ReadDeviceInputStage extends PronghornStage {
 		
 	}
 
+	private void runEarliestDeadlineFirst() {
+		long longRate = rate.longValue();
+		do {
+			long due = edf.nextDue();
+			long wait = due - hardware.nanoTime();
+			if (wait > longRate) {
+				return; //the scheduler will call again before this is due
+			}
+			if (!Pipe.hasRoomForWrite(responsePipe)) {
+				return;//try again later, no room on output pipe.
+			}
+			if (wait > 0 && !precisionWait.until(due)) {
+				requestShutdown();
+				return;
+			}
+			HardwareConnection hc = adConnections[edf.nextId()];
+			edf.sampled(hardware.nanoTime());
+			readConnection(hc);
+		} while (true);
+	}
+
+	private void runHardPolling() {
+		long sliceEnd = hardware.nanoTime()+HARD_SLICE_NS;
+		do {
+			long due = edf.nextDue();
+			if (due-sliceEnd > 0) {
+				return; //the scheduler will call again before this is due
+			}
+			if (!Pipe.hasRoomForWrite(responsePipe)) {
+				return;//try again later, no room on output pipe.
+			}
+			spin.until(due);
+			HardwareConnection hc = adConnections[edf.nextId()];
+			edf.sampled(hardware.nanoTime());
+			readConnection(hc);
+		} while (true);
+	}
+
+	private void readConnection(HardwareConnection hc) {
+		int connector = hc.register;
+		
+		if (RotaryEncoder == hc.twig) {
+			assert (hc.twig.pinsUsed()==2);
+			//rotary encoder
+			//low level write
+			readRotaryEncoder(connector, Port.DIGITALS[connector], hardware.currentTimeMillis()); //TODO: hack for now, needs more testing.
+		} else if (1 == hc.twig.range() && 0 != bankPorts) {
+			readBank();
+		} else if (1 == hc.twig.range()) {
+			//digital read
+			long captureNS = hardware.nanoTime();
+			int fieldValue = hardware.read(Port.DIGITALS[connector]);
+			long readNS = hardware.nanoTime()-captureNS;
+			//low level write
+			writeBit(responsePipe, connector, hardware.currentTimeMillis(), fieldValue, captureNS, readNS);
+								
+		} else {
+			//analog read
+			int i = hc.twig.pinsUsed();
+			while (--i>=0) {
+				//int intValue = hardware.read(Port.DIGITALS[connector]); //was this way before
+				long captureNS = hardware.nanoTime();
+				int intValue = hardware.read(Port.ANALOGS[connector+i]);
+				long readNS = hardware.nanoTime()-captureNS;
+			    
+				if (null != blockValues[connector+i]) {
+					addToBlock(connector+i, intValue, captureNS, readNS);
+				} else {
+					//low level write
+					writeInt(responsePipe, connector+i, hardware.currentTimeMillis(), intValue, captureNS, readNS);
+				}
+			}
+		}
+	}
+
+	private void addToBlock(int connector, int value, long captureNS, long readNS) {
+		int n = blockCount[connector];
+		if (0 == n) {
+			blockTime[connector] = hardware.currentTimeMillis();
+			blockCaptureNS[connector] = captureNS;
+			blockReadNS[connector] = 0;
+		}
+		blockValues[connector][n++] = value;
+		blockLastNS[connector] = captureNS;
+		blockReadNS[connector] += readNS;
+		
+		if (n == blockValues[connector].length) {
+			//room was checked before this read
+			writeBlock(responsePipe, connector, n);
+			n = 0;
+		}
+		blockCount[connector] = n;
+	}
+
+	private void readBank() {
+		long captureNS = hardware.nanoTime();
+		long values = hardware.readDigitalBank(bankInputs);
+		long readNS = hardware.nanoTime()-captureNS;
+		
+		//every port is new to the listeners on the first read
+		long changed = bankPublished ? values^lastBank : bankPorts;
+		if (0 != changed || bankEveryValue) {
+			writeBank(responsePipe, hardware.currentTimeMillis(), bankPorts, values, changed, captureNS, readNS);
+			lastBank = values;
+			bankPublished = true;
+		}
+	}
+
+	/**
+	 * @return planned and actual times of each sample with the jitter histogram, null unless polling earliest deadline first
+	 */
+	public EDFPollSchedule getPollSchedule() {
+		return edf;
+	}
+
+	/**
+	 * @return samples taken per second since startup, only kept when polling earliest deadline first
+	 */
+	public double getAchievedRate() {
+		long elapsed = hardware.nanoTime()-hardStartNS;
+		return null==edf || elapsed<=0 ? 0 : (edf.samples()*1_000_000_000d)/elapsed;
+	}
+
+	/**
+	 * @return wake up error of the waits for each sample, null when hard polling
+	 */
+	public PrecisionWait getPrecisionWait() {
+		return precisionWait;
+	}
+
+	@Override
+	public String toString() {
+		//the jitter is shown with the stage in the telemetry graph
+		return null==edf ? super.toString() : super.toString()+" "+Math.round(getAchievedRate())+"/s "+edf;
+	}
+
+	@Override
+	public void shutdown() {
+		if (hardPolling) {
+			logger.info("hard polling on cpu {} achieved {} samples/s, {}", hardware.getHardPollCPU(), Math.round(getAchievedRate()), edf);
+		} else if (null != precisionWait) {
+			logger.debug("poll wake up {}", precisionWait);
+		}
+	}
+
 
 	private void readRotaryEncoder(int j, Port port, long timeMS) {
 		byte rotaryPoll=3;
 		int maxCycles = 80; //what if stuck in middle must detect.
+		long captureNS = hardware.nanoTime();
 		do {
 			//TODO: how do we know we have these two on the same clock?
 			int r1  = hardware.read(port); 
@@ -276,7 +455,8 @@ public class ReadDeviceInputStage extends PronghornStage {
 
 		if (frequentScriptLastPublished[j]!=rotationState[j] && Pipe.hasRoomForWrite(responsePipe)) {
 			int speed = (int)Math.min( (cycles - rotationLastCycle[j]), Integer.MAX_VALUE);
-			writeRotation(responsePipe, port.port, hardware.currentTimeMillis(), rotationState[j], rotationState[j]-frequentScriptLastPublished[j], speed);
+			writeRotation(responsePipe, port.port, hardware.currentTimeMillis(), rotationState[j], rotationState[j]-frequentScriptLastPublished[j], speed,
+					      captureNS, hardware.nanoTime()-captureNS);
 
 			frequentScriptLastPublished[j] = rotationState[j];
 			rotationLastCycle[j] = cycles;
@@ -284,7 +464,7 @@ public class ReadDeviceInputStage extends PronghornStage {
 	}
 
 
-	private void writeRotation(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int value, int delta, int speed) {
+	private void writeRotation(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int value, int delta, int speed, long captureNS, long readNS) {
         int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_ENCODER_70);
         Pipe.addIntValue(connector, responsePipe);
         Pipe.addLongValue(time, responsePipe);
@@ -294,6 +474,8 @@ public class ReadDeviceInputStage extends PronghornStage {
         
         long duration = 0;
         Pipe.addLongValue(duration, responsePipe);        
+        Pipe.addLongValue(captureNS, responsePipe);
+        Pipe.addLongValue(readNS, responsePipe);
         
         Pipe.publishWrites(responsePipe);
         Pipe.confirmLowLevelWrite(responsePipe, size);
@@ -302,7 +484,7 @@ public class ReadDeviceInputStage extends PronghornStage {
 
    	
 
-	private void writeBit(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int bitValue) {
+	private void writeBit(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int bitValue, long captureNS, long readNS) {
 	    
 	    int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_DIGITALSAMPLE_20);
         Pipe.addIntValue(connector, responsePipe);
@@ -311,6 +493,8 @@ public class ReadDeviceInputStage extends PronghornStage {
         
         long duration = 0;
         Pipe.addLongValue(duration, responsePipe);        
+        Pipe.addLongValue(captureNS, responsePipe);
+        Pipe.addLongValue(readNS, responsePipe);
         
         Pipe.publishWrites(responsePipe);
         Pipe.confirmLowLevelWrite(responsePipe, size);
@@ -319,7 +503,39 @@ public class ReadDeviceInputStage extends PronghornStage {
 
  
 
-	private void writeInt(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int intValue) {
+	private void writeBank(Pipe<GroveResponseSchema> responsePipe, long time, long ports, long values, long changed, long captureNS, long readNS) {
+		int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_DIGITALBANK_80);
+		Pipe.addLongValue(time, responsePipe);
+		Pipe.addLongValue(ports, responsePipe);
+		Pipe.addLongValue(values, responsePipe);
+		Pipe.addLongValue(changed, responsePipe);
+		Pipe.addLongValue(captureNS, responsePipe);
+		Pipe.addLongValue(readNS, responsePipe);
+		
+		Pipe.publishWrites(responsePipe);
+		Pipe.confirmLowLevelWrite(responsePipe, size);
+	}
+
+	private void writeBlock(Pipe<GroveResponseSchema> responsePipe, int connector, int count) {
+		int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_ANALOGBLOCK_90);
+		Pipe.addIntValue(connector, responsePipe);
+		Pipe.addLongValue(blockTime[connector], responsePipe);
+		Pipe.addLongValue(count>1 ? (blockLastNS[connector]-blockCaptureNS[connector])/(count-1) : 0, responsePipe);
+		Pipe.addIntValue(count, responsePipe);
+		
+		//samples go straight into the blob, no copy
+		int length = AnalogSampleBlock.write(blockValues[connector], count, 
+				                             Pipe.blob(responsePipe), Pipe.getWorkingBlobHeadPosition(responsePipe), Pipe.blobMask(responsePipe));
+		Pipe.moveBlobPointerAndRecordPosAndLength(length, responsePipe);
+		
+		Pipe.addLongValue(blockCaptureNS[connector], responsePipe);
+		Pipe.addLongValue(blockReadNS[connector]/count, responsePipe);
+		
+		Pipe.publishWrites(responsePipe);
+		Pipe.confirmLowLevelWrite(responsePipe, size);
+	}
+
+	private void writeInt(Pipe<GroveResponseSchema> responsePipe, int connector, long time, int intValue, long captureNS, long readNS) {
 	    int size = Pipe.addMsgIdx(responsePipe, GroveResponseSchema.MSG_ANALOGSAMPLE_30);
         Pipe.addIntValue(connector, responsePipe);
         Pipe.addLongValue(time, responsePipe);
@@ -327,6 +543,8 @@ public class ReadDeviceInputStage extends PronghornStage {
         
         long duration = 0;
         Pipe.addLongValue(duration, responsePipe);            
+        Pipe.addLongValue(captureNS, responsePipe);
+        Pipe.addLongValue(readNS, responsePipe);
         
         Pipe.publishWrites(responsePipe);
         Pipe.confirmLowLevelWrite(responsePipe, size);
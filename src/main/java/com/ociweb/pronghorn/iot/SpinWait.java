@@ -0,0 +1,60 @@
+package com.ociweb.pronghorn.iot;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Busy wait for periods too short to sleep, the core is never given up so this is only for a
+ * thread which owns its core, see {@link ThreadAffinity}. The cost of reading the clock is
+ * measured once so the wait ends as close to the due time as the clock allows.
+ *
+ * Times are on the clock given to the constructor, System.nanoTime() by default. Stages pass the
+ * hardware clock so the due times they get from it are waited for on the same clock.
+ */
+public class SpinWait {
+
+	private final LongSupplier clock;
+	private final long clockCostNS;
+
+	public SpinWait() {
+		this(System::nanoTime);
+	}
+
+	public SpinWait(LongSupplier clock) {
+		this.clock = clock;
+		this.clockCostNS = measureClockCost(clock);
+	}
+
+	static long measureClockCost(LongSupplier clock) {
+		//median of a few runs, the first ones are slow until compiled
+		long[] runs = new long[9];
+		for (int r = 0; r < runs.length; r++) {
+			long start = clock.getAsLong();
+			for (int i = 0; i < 1000; i++) {
+				clock.getAsLong();
+			}
+			runs[r] = (clock.getAsLong()-start)/1001;
+		}
+		Arrays.sort(runs);
+		return runs[runs.length>>1];
+	}
+
+	/**
+	 * Spins until the due time on this wait's clock.
+	 *
+	 * @return nanoseconds the wait ended past the due time, 0 or less when on time
+	 */
+	public long until(long dueNS) {
+		//the last read of the clock takes time too, stop half a read early
+		long target = dueNS-(clockCostNS>>1);
+		long now;
+		while (target-(now = clock.getAsLong()) > 0) {
+		}
+		return now-dueNS;
+	}
+
+	public long clockCostNS() {
+		return clockCostNS;
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.ociweb.pronghorn.iot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.pronghorn.iot.i2c.impl.UnixIoctlLib;
+
+/**
+ * Pins the calling thread to one CPU with sched_setaffinity so a polling stage can own a core,
+ * e.g. one of the four on a Pi 3. The kernel should also be kept off that core, see isolcpus.
+ */
+public class ThreadAffinity {
+
+	private static final Logger logger = LoggerFactory.getLogger(ThreadAffinity.class);
+
+	static final int CPU_SET_BYTES = 128; //size of cpu_set_t, room for 1024 cpus
+
+	/**
+	 * @return false if the thread could not be pinned, it then runs wherever the kernel puts it
+	 */
+	public static boolean pinCurrentThread(int cpu) {
+		if (cpu < 0 || cpu >= CPU_SET_BYTES<<3) {
+			throw new UnsupportedOperationException("No such cpu "+cpu);
+		}
+		try {
+			if (0 == UnixIoctlLib.instance.sched_setaffinity(0, CPU_SET_BYTES, cpuSet(cpu))) {
+				logger.info("{} pinned to cpu {}", Thread.currentThread().getName(), cpu);
+				return true;
+			}
+			logger.warn("unable to pin {} to cpu {}, is there such a cpu?", Thread.currentThread().getName(), cpu);
+		} catch (LinkageError e) {
+			logger.warn("unable to pin {} to cpu {}, no native library on this platform", Thread.currentThread().getName(), cpu);
+		}
+		return false;
+	}
+
+	static byte[] cpuSet(int cpu) {
+		byte[] set = new byte[CPU_SET_BYTES];
+		set[cpu>>3] = (byte)(1<<(cpu&7));
+		return set;
+	}
+
+}
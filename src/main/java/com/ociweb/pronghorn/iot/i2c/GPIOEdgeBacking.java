@@ -0,0 +1,27 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+/**
+ * Watches GPIO lines for edges, used by devices which raise an interrupt
+ * line when they have data ready instead of being polled on a schedule.
+ */
+public interface GPIOEdgeBacking {
+
+    /**
+     * Prepares each line as an input which reports rising edges. This method
+     * must be invoked before {@link #pollEdges(boolean[], int)} and only once.
+     *
+     * @param lines GPIO line numbers, e.g. 17 for /sys/class/gpio/gpio17
+     */
+    void configure(int[] lines);
+
+    /**
+     * Checks all the lines, blocking the calling thread until an edge arrives or the timeout passes.
+     *
+     * @param fired set true for each line which had an edge since the last call, others are left unchanged.
+     * @param timeoutMS longest time to wait for an edge, 0 checks without blocking.
+     *
+     * @return count of lines which fired.
+     */
+    int pollEdges(boolean[] fired, int timeoutMS);
+
+}
@@ -0,0 +1,50 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+/**
+ * Reads and writes a set of GPIO lines together and reports timestamped edges on the inputs.
+ * Unlike the per pin sysfs files each call covers all the configured lines at once.
+ */
+public interface GPIOLineBacking {
+
+    int MAX_LINES = 64;
+
+    int EDGE_RISING = 1;
+    int EDGE_FALLING = 2;
+
+    /**
+     * Requests the lines, inputs report both edges. This method must be invoked once before any other.
+     *
+     * @param inputs line offsets on the chip, bit i of {@link #readInputs()} is inputs[i]
+     * @param outputs line offsets on the chip, bit i of {@link #writeOutputs(long, long)} is outputs[i]
+     * @param initialOutputs values the outputs are driven to as soon as they are requested
+     */
+    void configure(int[] inputs, int[] outputs, long initialOutputs);
+
+    /**
+     * @return current value of every input in one read, bit i is inputs[i]
+     */
+    long readInputs();
+
+    /**
+     * Sets the outputs selected by the mask in one write, the others are left unchanged.
+     */
+    void writeOutputs(long values, long mask);
+
+    /**
+     * Collects edges which happened on the inputs, oldest first.
+     *
+     * @param timeNS kernel time of each edge, on the same clock as System.nanoTime()
+     * @param input index into the configured inputs of each edge
+     * @param kind EDGE_RISING or EDGE_FALLING of each edge
+     * @param timeoutMS time to wait for the first edge, 0 returns at once
+     *
+     * @return count of edges written, never more than the length of the arrays
+     */
+    int readEdges(long[] timeNS, int[] input, int[] kind, int timeoutMS);
+
+    /**
+     * Releases the lines.
+     */
+    void close();
+
+}
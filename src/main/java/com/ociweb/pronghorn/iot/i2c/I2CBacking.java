@@ -35,6 +35,22 @@ public interface I2CBacking {
      */
     byte[] read(byte address, byte[] target, int bufferSize);
 
+    /**
+     * Reads a message from the I2C device at the specified address directly into
+     * a ring buffer, such as the blob of a pipe, wrapping at the end of the ring.
+     *
+     * @param address Address of the I2C device to read.
+     * @param target Ring to read into.
+     * @param pos Position in the ring of the first byte, this is masked.
+     * @param mask Mask of the ring, use Integer.MAX_VALUE for a plain array.
+     * @param length Number of bytes to read.
+     *
+     * @return True if all the bytes were read, on failure the first byte is set to -2.
+     *
+     * @throws IllegalStateException if this method is invoked before {@link #configure(byte)}.
+     */
+    boolean readInto(byte address, byte[] target, int pos, int mask, int length);
+
     /**
      * Writes a message to an I2C device at the specified address.
      *
@@ -47,4 +63,42 @@ public interface I2CBacking {
      * @throws IllegalStateException if this method is invoked before {@link #configure(byte)}.
      */
     boolean write(byte address, byte[] message, int length);
+
+    /**
+     * Writes a request to an I2C device and reads its response in one combined
+     * transaction. The bus is not released between the write and the read
+     * (repeated start) so this must only be used for devices which can answer
+     * immediately without any delay after the request.
+     *
+     * @param address Address of the I2C device.
+     * @param message Array of bytes to write to the I2C device, e.g. the register to read.
+     * @param length Number of bytes from message to write, may be zero.
+     * @param target Ring to read the response into, on failure the first byte is set to -2.
+     * @param pos Position in the ring of the first byte, this is masked.
+     * @param mask Mask of the ring, use Integer.MAX_VALUE for a plain array.
+     * @param readLength Number of bytes to read.
+     *
+     * @return True if the full transaction was successful, and false otherwise.
+     *
+     * @throws IllegalStateException if this method is invoked before {@link #configure(byte)}.
+     */
+    boolean writeRead(byte address, byte[] message, int length, byte[] target, int pos, int mask, int readLength);
+
+    /**
+     * Writes many messages to the I2C device at the specified address in as few
+     * system calls as possible. Messages are packed back to back in data and each
+     * is sent as its own write, in order.
+     *
+     * @param address Address of the I2C device to write.
+     * @param data Array holding all the messages back to back.
+     * @param dataPos Position in data of the first message to send.
+     * @param lengths Length of each message.
+     * @param lengthsPos Index in lengths of the first message to send.
+     * @param count Number of messages to send.
+     *
+     * @return Number of messages which were written, the remaining messages can be retried.
+     *
+     * @throws IllegalStateException if this method is invoked before {@link #configure(byte)}.
+     */
+    int transfer(byte address, byte[] data, int dataPos, int[] lengths, int lengthsPos, int count);
 }
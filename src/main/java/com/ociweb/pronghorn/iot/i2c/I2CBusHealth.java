@@ -0,0 +1,143 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import java.io.IOException;
+
+import com.ociweb.pronghorn.util.Appendables;
+
+/**
+ * Error, retry and latency counters for each address on one bus, with the backoff used between
+ * retries and the quarantine of devices which keep failing.
+ *
+ * A device failing QUARANTINE_AFTER times in a row is left out of the polls for a while so it
+ * can not hold up the rest of the bus. Each quarantine in a row is twice as long as the last.
+ * Once it ends the device is probing, one success clears it and one failure quarantines it again.
+ */
+public class I2CBusHealth {
+
+    public static final int MAX_ADDRESS = 127;
+
+    private static final long BACKOFF_BASE_NS = 50_000;      //first pause before a retry
+    private static final long BACKOFF_MAX_NS = 5_000_000;    //pauses double up to this
+    private static final int QUARANTINE_AFTER = 3;           //consecutive failures
+    private static final long QUARANTINE_BASE_NS = 100_000_000L;
+    private static final long QUARANTINE_MAX_NS = 10_000_000_000L;
+
+    private final long[] errors = new long[MAX_ADDRESS+1];
+    private final long[] retries = new long[MAX_ADDRESS+1];
+    private final long[] successes = new long[MAX_ADDRESS+1];
+    private final long[] latencyTotalNS = new long[MAX_ADDRESS+1];
+    private final long[] latencyMaxNS = new long[MAX_ADDRESS+1];
+    private final int[] consecutiveFailures = new int[MAX_ADDRESS+1];
+    private final int[] quarantineLevel = new int[MAX_ADDRESS+1];
+    private final long[] quarantinedUntil = new long[MAX_ADDRESS+1];
+    private final boolean[] probing = new boolean[MAX_ADDRESS+1];
+    private long quarantines;
+
+    /**
+     * @return pause before this retry, zero based, doubling from 50us up to 5ms
+     */
+    public static long backoffNS(int attempt) {
+        return attempt >= 7 ? BACKOFF_MAX_NS : Math.min(BACKOFF_MAX_NS, BACKOFF_BASE_NS << attempt);
+    }
+
+    public boolean isQuarantined(int address, long nowNS) {
+        return 0 != quarantinedUntil[address] && nowNS < quarantinedUntil[address];
+    }
+
+    public void retry(int address) {
+        retries[address]++;
+    }
+
+    public void success(int address, long latencyNS) {
+        successes[address]++;
+        latencyTotalNS[address] += latencyNS;
+        latencyMaxNS[address] = Math.max(latencyMaxNS[address], latencyNS);
+        consecutiveFailures[address] = 0;
+        quarantineLevel[address] = 0;
+        quarantinedUntil[address] = 0;
+        probing[address] = false;
+    }
+
+    /**
+     * @return true if this failure put the address into quarantine
+     */
+    public boolean failure(int address, long nowNS) {
+        errors[address]++;
+        if (++consecutiveFailures[address] >= QUARANTINE_AFTER || probing[address]) {
+            consecutiveFailures[address] = 0;
+            probing[address] = true; //stays set until a success
+            int level = quarantineLevel[address]++;
+            long duration = level >= 7 ? QUARANTINE_MAX_NS : Math.min(QUARANTINE_MAX_NS, QUARANTINE_BASE_NS << level);
+            quarantinedUntil[address] = nowNS + duration;
+            quarantines++;
+            return true;
+        }
+        return false;
+    }
+
+    public long errors(int address) {
+        return errors[address];
+    }
+
+    public long retries(int address) {
+        return retries[address];
+    }
+
+    public long successes(int address) {
+        return successes[address];
+    }
+
+    public long meanLatencyNS(int address) {
+        return 0 == successes[address] ? 0 : latencyTotalNS[address] / successes[address];
+    }
+
+    public long maxLatencyNS(int address) {
+        return latencyMaxNS[address];
+    }
+
+    /**
+     * @return count of quarantines started on any address, a change means there is something to report
+     */
+    public long quarantines() {
+        return quarantines;
+    }
+
+    /**
+     * @return sum of errors on all the addresses
+     */
+    public long totalErrors() {
+        long sum = 0;
+        int a = errors.length;
+        while (--a >= 0) {
+            sum += errors[a];
+        }
+        return sum;
+    }
+
+    /**
+     * Appends one line for each address which has been used.
+     */
+    public <A extends Appendable> A appendCounters(A target, long nowNS) {
+        try {
+            for (int a = 0; a <= MAX_ADDRESS; a++) {
+                if (0 != successes[a] || 0 != errors[a]) {
+                    target.append("addr ");
+                    Appendables.appendValue(target, a).append(" ok ");
+                    Appendables.appendValue(target, successes[a]).append(" errors ");
+                    Appendables.appendValue(target, errors[a]).append(" retries ");
+                    Appendables.appendValue(target, retries[a]).append(" latency mean ");
+                    Appendables.appendValue(target, meanLatencyNS(a)).append("ns max ");
+                    Appendables.appendValue(target, latencyMaxNS[a]).append("ns");
+                    if (isQuarantined(a, nowNS)) {
+                        target.append(" quarantined");
+                    }
+                    target.append('\n');
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return target;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.ociweb.pronghorn.iot.i2c;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,76 +11,171 @@ import com.ociweb.gl.impl.schema.TrafficReleaseSchema;
 import com.ociweb.gl.impl.stage.AbstractTrafficOrderedStage;
 import com.ociweb.iot.hardware.HardwareImpl;
 import com.ociweb.iot.hardware.I2CConnection;
+import com.ociweb.iot.hardware.I2CFIFO;
+import com.ociweb.iot.hardware.I2CTrafficClass;
+import com.ociweb.pronghorn.iot.EDFPollSchedule;
+import com.ociweb.pronghorn.iot.PrecisionWait;
+import com.ociweb.pronghorn.iot.SpinWait;
+import com.ociweb.pronghorn.iot.ThreadAffinity;
+import com.ociweb.pronghorn.iot.i2c.impl.I2CCaptureBacking;
 import com.ociweb.pronghorn.iot.schema.I2CCommandSchema;
 import com.ociweb.pronghorn.iot.schema.I2CResponseSchema;
 import com.ociweb.pronghorn.network.mqtt.MQTTClientGraphBuilder;
 import com.ociweb.pronghorn.pipe.Pipe;
 import com.ociweb.pronghorn.pipe.PipeReader;
-import com.ociweb.pronghorn.pipe.PipeWriter;
 import com.ociweb.pronghorn.stage.scheduling.GraphManager;
-import com.ociweb.pronghorn.util.Appendables;
 import com.ociweb.pronghorn.util.math.ScriptedSchedule;
 
 public class I2CJFFIStage extends AbstractTrafficOrderedStage {
     
-    public static boolean debugCommands = true;
+    public static boolean debugCommands = false; //keeps a binary trace of bus events, see getTrace()
+    private static final int TRACE_BITS = 10; //1024 most recent events
+    private I2CTraceRing trace;
     
     private final Pipe<I2CCommandSchema>[] fromCommandChannels;
     private final Pipe<I2CResponseSchema> i2cResponsePipe;
     
     private static final Logger logger = LoggerFactory.getLogger(I2CJFFIStage.class);
     private ScriptedSchedule schedule;
+    private EDFPollSchedule edf; //used instead of the script when polling earliest deadline first
+    
+    private static final int MAX_ADDR = 127;
     
     private I2CConnection[] inputs = null;
     
     private byte[] workingBuffer;
     
+    //a command is sent before its release count is taken since that count may publish the ack,
+    //so commands from separate messages are never held back to share a transfer
+    private final int[] gatherLengths = new int[1];
+    private int gatherCount = 0;
+    private int gatherBytes = 0;
+    private int gatherAddress;
+    
+    //split phase polling, requests are sent then each read is collected after its own deadline
+    private static final long MIN_COMMAND_GAP_NS = 20_000; //smaller gaps are not worth sending commands in
+    private final boolean[] addressPending = new boolean[MAX_ADDR+1];
+    private int[] pendingIdx;
+    private long[] pendingDeadline;
+    private int pendingCount = 0;
+    private int responseSize;
+    
+    //poll results are only published when changed or when the heartbeat is due
+    private byte[][] lastPublished;
+    private long[] lastPublishedTime;
+    private final long heartbeatMS;
+    
+    //every change of device address costs an ioctl on the native backing
+    private int lastBusAddress = -1;
+    private long addressSwitches = 0;
+    private long switchWindowStart = 0;
+    private volatile long addressSwitchesPerSecond = 0;
+    
+    //devices read when their GPIO line fires instead of on the schedule
+    private static final long INTERRUPT_CHECK_RATE = 200_000; //ns, used when nothing is scheduled
+    private static final int INTERRUPT_WAIT_MS = 2; //with nothing scheduled the stage sleeps in poll() for edges, same as LATENCY_BUDGET_NS
+    private final int[] interruptInputs;
+    private final int[] interruptLines;
+    private boolean[] interruptOwed;
+    private GPIOEdgeBacking edgeBacking;
+    
+    //priority lanes, commands fill the bus time between polls by the traffic class of their device
+    private static final long BYTE_TIME_NS = 90_000; //9 clocks per byte at the 100KHz standard rate
+    private static final long LATENCY_BUDGET_NS = 2_000_000; //LATENCY commands waiting longer than this are late
+    private static final long BULK_MAX_DEFER_NS = 100_000_000; //BULK commands held this long are sent anyway so they are not starved
+    private final I2CTrafficClass[] trafficClass = new I2CTrafficClass[MAX_ADDR+1];
+    private final int[] lastCommandLength = new int[MAX_ADDR+1]; //estimate of the next bulk command size
+    private long[] waitingSince; //for each command pipe when its next command was first found waiting, 0 for none
+    private long busFreeUntil = Long.MAX_VALUE; //bulk commands must be off the bus by this time
+    private boolean bulkLaneOpen = true; //closed between the polls of one block
+    private final long[] missedDeadlines = new long[I2CTrafficClass.CLASSES.length];
+    private final long[] reportedMissedDeadlines = new long[I2CTrafficClass.CLASSES.length];
+    
     private int inProgressIdx = 0;
     private int scheduleIdx = 0;
     
     private long blockStartTime = 0;
+    private PrecisionWait precisionWait; //sleeps then spins to each poll, learns how late this platform wakes
+    private final boolean hardPolling; //owns a cpu and spins to each due time, see HardwareImpl.useHardI2CPolling
+    private SpinWait spin;
+    private long hardStartNS;
+    private static final long HARD_SLICE_NS = 10_000_000; //longest spin before giving the scheduler a chance to shut us down
     
     private boolean awaitingResponse = false;
     
-    private static final int MAX_ADDR = 127;
-    
     private final boolean processInputs;
     private Number rate;
     private long timeOut = 0;
+    private static final int MAX_RETRIES = 8; //with the backoff a failing operation gives up after about 11ms
+    private final I2CBusHealth health = new I2CBusHealth();
+    private long reportedErrors;
     private final int writeTime = 10; //it often takes 1 full ms just to contact the linux driver so this value must be a minimum of 3ms.
     
     //NOTE: on the pi without any RATE value this stage is run every .057 ms, this is how long 1 run takes to complete for the clock., 2 analog sensors.
     
-    public static final AtomicBoolean instanceCreated = new AtomicBoolean(false);
+    //one instance of this stage runs for each bus, it only gets the command channels bound to its bus
+    private final int bus;
     
     public I2CJFFIStage(GraphManager graphManager, Pipe<TrafficReleaseSchema>[] goPipe,
             Pipe<I2CCommandSchema>[] i2cPayloadPipes,
             Pipe<TrafficAckSchema>[] ackPipe,
             Pipe<I2CResponseSchema> i2cResponsePipe,
             HardwareImpl hardware) {
+    	this(graphManager, goPipe, i2cPayloadPipes, ackPipe, i2cResponsePipe, hardware, I2CConnection.DEFAULT_BUS);
+    }
+    
+    public I2CJFFIStage(GraphManager graphManager, Pipe<TrafficReleaseSchema>[] goPipe,
+            Pipe<I2CCommandSchema>[] i2cPayloadPipes,
+            Pipe<TrafficAckSchema>[] ackPipe,
+            Pipe<I2CResponseSchema> i2cResponsePipe,
+            HardwareImpl hardware, int bus) {
         super(graphManager, hardware, i2cPayloadPipes, goPipe, ackPipe, i2cResponsePipe);
         
-        assert(!instanceCreated.getAndSet(true)) : "Only one i2c manager can be running at a time";
-        
         this.fromCommandChannels = i2cPayloadPipes;
         this.i2cResponsePipe = i2cResponsePipe;
+        this.bus = hardware.i2cBusOf(bus);
+        
+        for(int a = 0; a<=MAX_ADDR; a++) {
+        	trafficClass[a] = hardware.getI2CTrafficClass(a);
+        }
         
         //force all commands to happen upon publish and release
         this.supportsBatchedPublish = false;
         this.supportsBatchedRelease = false;
         
-        this.inputs = hardware.getI2CInputs();
+        this.inputs = hardware.getI2CInputs(this.bus);
+        this.heartbeatMS = hardware.getI2CHeartbeatMS();
         
-        if (((HardwareImpl)this.hardware).hasI2CInputs()) {
-            this.schedule = ((HardwareImpl)this.hardware).buildI2CPollSchedule();
-            
-            logger.info("I2C Schedule: {} ", this.schedule);
-            
+        int interruptCount = 0;
+        for (int i = 0; i < inputs.length; i++) {
+        	if (I2CConnection.NO_INTERRUPT != inputs[i].interruptLine) {
+        		interruptCount++;
+        	}
+        }
+        this.interruptInputs = new int[interruptCount];
+        this.interruptLines = new int[interruptCount];
+        for (int i = 0; i < inputs.length; i++) {
+        	if (I2CConnection.NO_INTERRUPT != inputs[i].interruptLine) {
+        		interruptLines[--interruptCount] = inputs[i].interruptLine;
+        		interruptInputs[interruptCount] = i;
+        	}
+        }
+        
+        if (((HardwareImpl)this.hardware).hasI2CInputs(this.bus)) {
+            if (hardware.isHardI2CPolling() || hardware.isEarliestDeadlineFirstPolling()) {
+            	this.edf = ((HardwareImpl)this.hardware).buildI2CPollEDF(this.bus);
+            } else {
+            	this.schedule = ((HardwareImpl)this.hardware).buildI2CPollSchedule(this.bus);
+            	logger.info("I2C Schedule: {} ", this.schedule);
+            }
         } else {
             logger.debug("skipped buildI2CPollSchedule has no i2c inputs" );
         }
         
-        if (null!=this.schedule) {
+        if (null!=this.edf) {
+        	//wake often enough to sleep the last stretch to each due time ourselves
+        	GraphManager.addNota(graphManager, GraphManager.SCHEDULE_RATE, Math.min(edf.minPeriod()>>1, 1_000_000), this);
+        } else if (null!=this.schedule) {
             //The fastest message that can ever be sent on I2C 100K is once every 1.6MS
         
 			long computedRate = (this.schedule.commonClock);
@@ -104,11 +200,17 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
         
         }else{
             logger.debug("Schedule is null");
+            if (interruptInputs.length>0) {
+            	GraphManager.addNota(graphManager, GraphManager.SCHEDULE_RATE, INTERRUPT_CHECK_RATE, this);
+            }
         }
         
         rate = (Number)GraphManager.getNota(graphManager, this.stageId,  GraphManager.SCHEDULE_RATE, null);
         
-        processInputs = hardware.hasI2CInputs() && hasListeners();
+        //a bus read only on interrupts has nothing to spin for
+        this.hardPolling = hardware.isHardI2CPolling() && null!=this.edf;
+        
+        processInputs = hardware.hasI2CInputs(this.bus) && hasListeners();
         
 		GraphManager.addNota(graphManager, GraphManager.DOT_BACKGROUND, "darksalmon", this);
 
@@ -118,10 +220,44 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
     public void startup(){
         super.startup();
         
-        workingBuffer = new byte[2048]; //TODO: find a way to eliminate this temp storage.
+        workingBuffer = new byte[2048]; //only used to gather outgoing commands, reads go directly into the response pipe
+        if (debugCommands) {
+        	trace = new I2CTraceRing(TRACE_BITS);
+        }
+        
+        lastPublished = new byte[inputs.length][];
+        lastPublishedTime = new long[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+        	lastPublished[i] = new byte[inputs[i].readBytes];
+        	lastPublishedTime[i] = Long.MIN_VALUE/2;//first value is always published
+        }
+        
+        if (interruptInputs.length>0) {
+        	interruptOwed = new boolean[interruptInputs.length];
+        	edgeBacking = ((HardwareImpl)hardware).newGPIOEdgeBacking();
+        	edgeBacking.configure(interruptLines);
+        	logger.debug("I2C reads on interrupt from gpio lines {}", Arrays.toString(interruptLines));
+        }
+        
+        pendingIdx = new int[inputs.length];
+        pendingDeadline = new long[inputs.length];
+        
+        waitingSince = new long[fromCommandChannels.length];
+        int maxCommand = 0;
+        for (int i = 0; i < fromCommandChannels.length; i++) {
+        	maxCommand = Math.max(maxCommand, fromCommandChannels[i].maxVarLen);
+        }
+        Arrays.fill(lastCommandLength, maxCommand); //assume the worst until a command has been seen
+        responseSize = Pipe.sizeOf(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10);
         
         logger.debug("Polling "+this.inputs.length+" i2cInput(s)");
         
+        if (hardPolling) {
+        	//startup is on the same thread as run so this pins the polling
+        	ThreadAffinity.pinCurrentThread(((HardwareImpl)hardware).getHardI2CPollCPU());
+        	spin = new SpinWait(hardware::nanoTime);
+        }
+        precisionWait = new PrecisionWait(hardware::nanoTime); //still used for the delays of setup reads
         for (int i = 0; i < inputs.length; i++) {
             setupSingleInput(i);
         }
@@ -130,6 +266,11 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
         }
         
         blockStartTime = hardware.nanoTime();//critical Pronghorn contract ensure this start is called by the same thread as run
+        switchWindowStart = blockStartTime;
+        hardStartNS = blockStartTime;
+        if (null!=edf) {
+        	edf.start(blockStartTime);
+        }
         
         if (!hasListeners()) {
             logger.debug("No listeners are attached to I2C");
@@ -139,57 +280,41 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
     private void setupSingleInput(int i) {
         if (null != inputs[i].setup) {
             assert(hardware!=null);
-            I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking();
+            I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking(bus);
             I2CConnection connection = inputs[i];
             assert(i2cBacking!=null);
             timeOut = hardware.nanoTime() + (writeTime*35_000_000);
+            long requestNS = hardware.nanoTime();
+            int attempt = 0;
             while(!i2cBacking.write(connection.address,
                     connection.setup,
-                    connection.setup.length) && hardware.nanoTime()<timeOut){
-            	
-            		};
-                    if (hardware.nanoTime()>timeOut) {
-                        logger.warn("on setup failed to get I2C bus master, waited 35ms");
-                        //timeout trying to get the i2c bus
-                        return;
-                    }
+                    connection.setup.length)) {
+            	if (!backoff(connection.address, attempt++)) {
+            		busFailure(connection.address);
+            		logger.warn("on setup failed to get I2C bus master after {} tries", attempt);
+            		//timeout trying to get the i2c bus
+            		return;
+            	}
+            }
                     
                     if(connection.readBytesAtStartUp > 0){ // doing i2c read at start up
                         
                         long delayAfterRequestNS = connection.delayAfterRequestNS;
                         long delayUntil = hardware.nanoTime()+delayAfterRequestNS;
                         
-                        if (delayAfterRequestNS>0) {
-                            try {
-                            	//some slow platforms will not sleep long enough so we spin yield below
-                                Thread.sleep(delayAfterRequestNS/1_000_000,(int) (delayAfterRequestNS%1_000_000));
-                                long dif;
-                                while ((dif = (delayUntil-hardware.nanoTime()))>0) {
-                                	if (dif>100) {
-                                		Thread.yield();
-                                	}
-                                }
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                requestShutdown();
-                                return;
-                            }
-            				
+                        if (delayAfterRequestNS>0 && !precisionWait.until(delayUntil)) {
+                            requestShutdown();
+                            return;
                         }
                         
-                        PipeWriter.presumeWriteFragment(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10);
-                        PipeWriter.writeInt(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_ADDRESS_11, connection.address);
-                        PipeWriter.writeLong(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_TIME_13, hardware.currentTimeMillis());
-                        PipeWriter.writeInt(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_REGISTER_14, connection.setup[0]);
-                        
-                        workingBuffer[0] = -2;//this is the non-read case read did not populate the array.
-                        byte[] temp = i2cBacking.read(connection.address, workingBuffer, connection.readBytesAtStartUp);                        
-                        PipeWriter.writeBytes(i2cResponsePipe, 
-                        		  I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12, 
-                        		  temp, 0, connection.readBytesAtStartUp, Integer.MAX_VALUE);
-                        
-                        
-                        PipeWriter.publishWrites(i2cResponsePipe);
+                        long time = hardware.currentTimeMillis();
+                        //on failure the first byte is set to -2
+                        if (!readIntoResponse(i2cBacking, connection.address, connection.readBytesAtStartUp)) {
+                        	busFailure(connection.address);
+                        	logger.warn("on setup failed to read I2C addr {}", connection.address);
+                        	return;
+                        }
+                        publishResponse(connection.address, time, connection.setup[0], connection.readBytesAtStartUp, requestNS);
                         
                     }
         }
@@ -203,8 +328,12 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
         long prcRelease = hardware.nanoTime();
         
         
+        if (processInputs && null!=edgeBacking) {
+        	serviceInterrupts(((HardwareImpl)hardware).getI2CBacking(bus));
+        }
+        
         //never run poll if we have nothing to poll, in that case the array will have a single -1
-        if (processInputs) {
+        if (processInputs && null!=schedule) {
             do {
                 long waitTime = blockStartTime - hardware.nanoTime();
                 
@@ -213,102 +342,67 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
                 if(waitTime>0){
                     if (null==rate || (waitTime > rate.longValue())) {
                         if (hardware.nanoTime()>prcRelease) {
-                            processReleasedCommands(waitTime);
+                            releaseCommands(waitTime);
                         }
                         return; //Enough time has not elapsed to start next block on schedule
-                    } else {
-                    	int padding = 200; //ns
-                        long block = ((hardware.nanoTime()-blockStartTime)) - padding;
-                        if (block > 0) {
-                            try {
-                                Thread.sleep(block/1_000_000,(int)(block%1_000_000));
-                                long dif;
-                                while ((dif = (blockStartTime-hardware.nanoTime()))>0) {
-                                	if (dif>100) {
-                                		Thread.yield();
-                                	}
-                                }
-                            } catch (InterruptedException e) {
-                                requestShutdown();
-                                return;
-                            }//some slow platforms will NOT sleep long enough above so we spin below.
-                        }
+                    } else if (!precisionWait.until(blockStartTime)) {
+                        requestShutdown();
+                        return;
                     }
                 }
                 
-                I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking();
+                I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking(bus);
                 
                 do{
                     inProgressIdx = schedule.script[scheduleIdx];
                     
                     if(inProgressIdx != -1) {
                         
-                        if (!PipeWriter.hasRoomForWrite(i2cResponsePipe)) {
+                        I2CConnection connection = this.inputs[inProgressIdx];
+                        
+                        //a device can only answer one request at a time so any earlier request must be collected first
+                        collectPendingReads(i2cBacking, connection.address);
+                        
+                        //room is needed for this response and every response still pending
+                        if (!Pipe.hasRoomForWrite(i2cResponsePipe, (pendingCount+1)*responseSize)) {
+                            collectPendingReads(i2cBacking, -1);
                             if (hardware.nanoTime()>prcRelease) {
                                 //we are going to miss the schedule due to backup in the pipes, this is common when the unit tests run or the user has put in a break point.
-                                processReleasedCommands(rate.longValue());//if this backup runs long term we never release the commands so we must do it now.
+                                releaseCommands(rate.longValue());//if this backup runs long term we never release the commands so we must do it now.
                             }
                             logger.warn("outgoing pipe is backed up, unable to read new data  {}"+i2cResponsePipe);
                             return;//oops the pipe is full so we can not read, postpone this work until the pipe is cleared.
                         }
                         
-                        I2CConnection connection = this.inputs[inProgressIdx];
                         timeOut = hardware.nanoTime() + (writeTime*35_000_000);///I2C allows for clients to abandon master after 35 ms
                         
                         //          logger.info("i2c request read from address: {} register: {} ",connection.address, connection.readCmd[0]);//+Arrays.toString(Arrays.copyOfRange(connection.readCmd, 0, connection.readCmd.length)));
                         
-                        //Write the request to read
-                        
-                        while(!i2cBacking.write((byte)connection.address, connection.readCmd, connection.readCmd.length) && hardware.nanoTime()<timeOut){}
-                        
-                        if (hardware.nanoTime()>timeOut) {
-                            logger.warn("on write failed to get I2C bus master, waited 35ms");
-                            //timeout trying to get the i2c bus
-                            return;
+                        if (hardware.nanoTime() > blockStartTime+schedule.commonClock) {
+                        	missedDeadlines[I2CTrafficClass.DEADLINE.ordinal()]++; //this poll should have been done by the next block
                         }
                         
-                        long delayAfterRequestNS = this.inputs[inProgressIdx].delayAfterRequestNS;
-                        long delayUntil = hardware.nanoTime()+delayAfterRequestNS;
-                        
-                        if (delayAfterRequestNS>0) {
-                            try {
-                            	//some slow platforms will not sleep long enough so we spin yield below
-                                Thread.sleep(delayAfterRequestNS/1_000_000,(int) (delayAfterRequestNS%1_000_000));
-                                long dif;
-                                while ((dif = (delayUntil-hardware.nanoTime()))>0) {
-                                	if (dif>100) {
-                                		Thread.yield();
-                                	}
-                                }
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                requestShutdown();
-                                return;
-                            }
-                            
-                            
+                        if (!poll(i2cBacking, inProgressIdx)) {
+                        	collectPendingReads(i2cBacking, -1);
+                        	return;
                         }
-
-                        //logger.info("i2c reading result {} delay before read {} ",Arrays.toString(Arrays.copyOfRange(temp, 0, this.inputs[inProgressIdx].readBytes )),this.inputs[inProgressIdx].delayAfterRequestNS);
-                        
-                        PipeWriter.presumeWriteFragment(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10);
-                        PipeWriter.writeInt(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_ADDRESS_11, this.inputs[inProgressIdx].address);
-                        PipeWriter.writeLong(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_TIME_13, hardware.currentTimeMillis());
-                        PipeWriter.writeInt(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10_FIELD_REGISTER_14, this.inputs[inProgressIdx].register);
-                        
-                        workingBuffer[0] = -2;
-                        byte[] temp = i2cBacking.read(this.inputs[inProgressIdx].address, workingBuffer, this.inputs[inProgressIdx].readBytes);                       
-                        PipeWriter.writeBytes(i2cResponsePipe, 
-                        		   I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12, 
-                        		   temp, 0, this.inputs[inProgressIdx].readBytes, Integer.MAX_VALUE);
                         
-                        PipeWriter.publishWrites(i2cResponsePipe);
+                        collectExpiredReads(i2cBacking);
                         
+                        //latency commands are not held for the whole block while it has time to spare
+                        long slack = blockStartTime + (schedule.commonClock>>1) - hardware.nanoTime();
+                        if (slack > MIN_COMMAND_GAP_NS) {
+                        	releaseLatencyCommands(slack);
+                        }
                         
                     } else {
+                        //every block is finished with all of its reads complete
+                        collectPendingReads(i2cBacking, -1);
+                        updateAddressSwitchRate();
+                        
                         if (rate.longValue()>500_000) {
                             if (hardware.nanoTime()>prcRelease) {
-                                processReleasedCommands(rate.longValue());
+                                releaseCommands(rate.longValue());
                                 prcRelease+=rate.longValue();
                             }
                         }
@@ -319,16 +413,546 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
                 blockStartTime += schedule.commonClock;
                 
             } while (true);
+        } else if (processInputs && null!=edf) {
+        	runEarliestDeadlineFirst();
         } else {
             
             //System.err.println("nothing to poll, should choose a simpler design");
             if (hardware.nanoTime()>prcRelease) {
-                processReleasedCommands(rate.longValue());
+                releaseCommands(rate.longValue());
                 prcRelease+=rate.longValue();
             }
         }
     }
     
+    private void runEarliestDeadlineFirst() {
+    	I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking(bus);
+    	//when hard polling we spin to every poll due within the slice instead of returning to the scheduler
+    	long sliceEnd = hardware.nanoTime()+HARD_SLICE_NS;
+    	do {
+    		long due = edf.nextDue();
+    		long wait = due - hardware.nanoTime();
+    		if (hardPolling ? due-sliceEnd > 0 : wait > rate.longValue()) {
+    			collectPendingReads(i2cBacking, -1);
+    			updateAddressSwitchRate();
+    			releaseCommands(due - hardware.nanoTime()); //commands fill the gap before the next poll
+    			return;
+    		}
+    		
+    		int idx = edf.nextId();
+    		I2CConnection connection = this.inputs[idx];
+    		
+    		//a device can only answer one request at a time so any earlier request must be collected first
+    		collectPendingReads(i2cBacking, connection.address);
+    		
+    		if (!Pipe.hasRoomForWrite(i2cResponsePipe, (pendingCount+1)*responseSize)) {
+    			collectPendingReads(i2cBacking, -1);
+    			releaseCommands(rate.longValue());
+    			logger.warn("outgoing pipe is backed up, unable to read new data  {}"+i2cResponsePipe);
+    			return;
+    		}
+    		
+    		if (hardPolling) {
+    			spin.until(due);
+    		} else if (wait > 0 && !precisionWait.until(due)) {
+    			requestShutdown();
+    			return;
+    		}
+    		
+    		timeOut = hardware.nanoTime() + (writeTime*35_000_000);///I2C allows for clients to abandon master after 35 ms
+    		long actual = hardware.nanoTime();
+    		if (!poll(i2cBacking, idx)) {
+    			collectPendingReads(i2cBacking, -1);
+    			return; //not sampled so it is tried again on the next run
+    		}
+    		if (!edf.sampled(actual)) {
+    			missedDeadlines[I2CTrafficClass.DEADLINE.ordinal()]++; //a full period late so samples were skipped
+    		}
+    		
+    		collectExpiredReads(i2cBacking);
+    		
+    		long slack = edf.nextDue() - hardware.nanoTime();
+    		if (slack > MIN_COMMAND_GAP_NS) {
+    			releaseCommands(slack);
+    		}
+    	} while (true);
+    }
+    
+    /**
+     * @return planned and actual times of each poll with the jitter histogram, null unless polling earliest deadline first
+     */
+    public EDFPollSchedule getPollSchedule() {
+    	return edf;
+    }
+    
+    /**
+     * @return polls taken per second since startup, only kept when polling earliest deadline first
+     */
+    public double getAchievedRate() {
+    	long elapsed = hardware.nanoTime()-hardStartNS;
+    	return null==edf || elapsed<=0 ? 0 : (edf.samples()*1_000_000_000d)/elapsed;
+    }
+    
+    @Override
+    public String toString() {
+    	//the jitter is shown with the stage in the telemetry graph
+    	return null==edf ? super.toString() : super.toString()+" "+Math.round(getAchievedRate())+"/s "+edf;
+    }
+    
+    /**
+     * Reads each device whose interrupt line has fired since the last check.
+     * A read which can not be done now, e.g. the pipe is full, stays owed until a later run.
+     */
+    private void serviceInterrupts(I2CBacking i2cBacking) {
+    	//when no polls are scheduled and no commands wait the thread blocks in the kernel until a line fires,
+    	//so this stage must not share its thread. Otherwise lines are only checked.
+    	edgeBacking.pollEdges(interruptOwed, null==schedule && null==edf && !hasWaitingCommands() ? INTERRUPT_WAIT_MS : 0);
+    	int i = interruptInputs.length;
+    	while (--i>=0) {
+    		if (interruptOwed[i]) {
+    			int idx = interruptInputs[i];
+    			collectPendingReads(i2cBacking, inputs[idx].address);
+    			if (!Pipe.hasRoomForWrite(i2cResponsePipe, (pendingCount+1)*responseSize)) {
+    				break;
+    			}
+    			timeOut = hardware.nanoTime() + (writeTime*35_000_000);
+    			if (poll(i2cBacking, idx)) {
+    				interruptOwed[i] = false;
+    			}
+    		}
+    	}
+    	collectPendingReads(i2cBacking, -1);
+    }
+    
+    private boolean hasWaitingCommands() {
+    	int i = fromCommandChannels.length;
+    	while (--i>=0) {
+    		if (PipeReader.hasContentToRead(fromCommandChannels[i])) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Sends released commands of every class, bulk only when it fits in the gap before the next poll.
+     */
+    private void releaseCommands(long gapNS) {
+    	busFreeUntil = null==schedule && null==edf ? Long.MAX_VALUE : hardware.nanoTime()+gapNS;
+    	bulkLaneOpen = true;
+    	processReleasedCommands(gapNS);
+    }
+    
+    /**
+     * Sends released commands between the polls of a block, bulk commands wait for the end of the block.
+     */
+    private void releaseLatencyCommands(long gapNS) {
+    	bulkLaneOpen = false;
+    	processReleasedCommands(gapNS);
+    	bulkLaneOpen = true;
+    }
+    
+    /**
+     * @return true if the next command on this pipe may use the bus now.
+     */
+    private boolean isLaneOpen(int activePipe, Pipe<I2CCommandSchema> pipe) {
+    	long now = hardware.nanoTime();
+    	if (0 == waitingSince[activePipe]) {
+    		waitingSince[activePipe] = now;
+    	}
+    	if (!PipeReader.peekMsg(pipe, I2CCommandSchema.MSG_COMMAND_7)) {
+    		return true; //blocking messages take no bus time
+    	}
+    	int addr = PipeReader.peekInt(pipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_ADDRESS_12);
+    	if (I2CTrafficClass.BULK != trafficClass[addr]) {
+    		return true;
+    	}
+    	if (bulkLaneOpen && busFreeUntil-now >= BYTE_TIME_NS*(gatherBytes+lastCommandLength[addr]+1)) {
+    		return true;
+    	}
+    	if (now-waitingSince[activePipe] > BULK_MAX_DEFER_NS) {
+    		missedDeadlines[I2CTrafficClass.BULK.ordinal()]++;
+    		return true; //held too long, it is sent even if a poll is made late
+    	}
+    	return false;
+    }
+    
+    /**
+     * @return count of polls started after their block should have ended, LATENCY commands sent
+     * late and BULK commands which had to be forced out.
+     */
+    public long getMissedDeadlines(I2CTrafficClass trafficClass) {
+    	return missedDeadlines[trafficClass.ordinal()];
+    }
+    
+    private void reportMissedDeadlines() {
+    	int c = missedDeadlines.length;
+    	boolean changed = false;
+    	while (--c>=0) {
+    		changed |= missedDeadlines[c]!=reportedMissedDeadlines[c];
+    		reportedMissedDeadlines[c] = missedDeadlines[c];
+    	}
+    	if (changed) {
+    		logger.warn("I2C bus {} missed deadlines, polls {} latency {} bulk {}", bus,
+    				    missedDeadlines[I2CTrafficClass.DEADLINE.ordinal()],
+    				    missedDeadlines[I2CTrafficClass.LATENCY.ordinal()],
+    				    missedDeadlines[I2CTrafficClass.BULK.ordinal()]);
+    	}
+    }
+    
+    private void busAddress(int address) {
+    	if (address != lastBusAddress) {
+    		lastBusAddress = address;
+    		addressSwitches++;
+    	}
+    }
+    
+    private void updateAddressSwitchRate() {
+    	long duration = hardware.nanoTime() - switchWindowStart;
+    	if (duration >= 1_000_000_000L) {
+    		addressSwitchesPerSecond = (addressSwitches*1_000_000_000L)/duration;
+    		logger.debug("I2C address switches per second {}", addressSwitchesPerSecond);
+    		reportMissedDeadlines();
+    		if (reportedErrors != health.totalErrors()) {
+    			reportedErrors = health.totalErrors();
+    			logger.info("I2C bus {} health\n{}", bus, health.appendCounters(new StringBuilder(), hardware.nanoTime()));
+    		}
+    		addressSwitches = 0;
+    		switchWindowStart += duration;
+    	}
+    }
+    
+    /**
+     * @return count of times the bus moved from one device address to another over the last second
+     */
+    public long getAddressSwitchesPerSecond() {
+    	return addressSwitchesPerSecond;
+    }
+    
+    private boolean poll(I2CBacking i2cBacking, int connectionIdx) {
+    	I2CConnection connection = inputs[connectionIdx];
+    	if (health.isQuarantined(connection.address, hardware.nanoTime())) {
+    		return true; //skipped so a failing device does not hold up the rest of the bus
+    	}
+    	if (null != connection.fifo) {
+    		return pollFIFO(i2cBacking, connectionIdx);
+    	} else {
+    		return connection.writeReadCombined 
+    			   ? pollCombined(i2cBacking, connectionIdx) 
+    			   : requestRead(i2cBacking, connectionIdx);
+    	}
+    }
+    
+    /**
+     * Reads the fill level of the device FIFO then drains all the queued samples,
+     * they are published together as one response so the listener gets them as a batch.
+     */
+    private boolean pollFIFO(I2CBacking i2cBacking, int connectionIdx) {
+    	I2CConnection connection = inputs[connectionIdx];
+    	I2CFIFO fifo = connection.fifo;
+    	busAddress(connection.address);
+    	long time = hardware.currentTimeMillis();
+    	long requestNS = hardware.nanoTime();
+    	
+    	byte[] blob = Pipe.blob(i2cResponsePipe);
+    	int pos = Pipe.getWorkingBlobHeadPosition(i2cResponsePipe);
+    	int mask = Pipe.blobMask(i2cResponsePipe);
+    	
+    	//the status byte lands where the samples will go, it is overwritten by them
+    	int attempt = 0;
+    	while(!i2cBacking.writeRead(connection.address, fifo.statusCmd, fifo.statusCmd.length, blob, pos, mask, 1)) {
+    		if (!backoff(connection.address, attempt++)) {
+    			busFailure(connection.address);
+    			return false;
+    		}
+    	}
+    	
+    	//anything left behind is picked up by the next poll
+    	int count = Math.min(blob[pos&mask] & fifo.countMask, 
+    			             Math.min(fifo.depth, i2cResponsePipe.maxVarLen/connection.readBytes));
+    	if (0 == count) {
+    		return true;
+    	}
+    	
+    	if (fifo.burst) {
+    		attempt = 0;
+    		while(!i2cBacking.writeRead(connection.address, connection.readCmd, connection.readCmd.length, 
+    				                    blob, pos, mask, count*connection.readBytes)) {
+    			if (!backoff(connection.address, attempt++)) {
+    				busFailure(connection.address);
+    				return false;
+    			}
+    		}
+    	} else {
+    		//each sample must be its own transaction, they are still written back to back in the blob
+    		for (int i = 0; i < count; i++) {
+    			int samplePos = pos+(i*connection.readBytes);
+    			if (null == fifo.partCmds) {
+    				if (!readFIFOPart(i2cBacking, connection.address, connection.readCmd, blob, samplePos, mask, connection.readBytes)) {
+    					return false;
+    				}
+    			} else {
+    				for (int p = 0; p < fifo.partCmds.length; p++) {
+    					if (!readFIFOPart(i2cBacking, connection.address, fifo.partCmds[p], blob, samplePos, mask, fifo.partBytes[p])) {
+    						return false;
+    					}
+    					samplePos += fifo.partBytes[p];
+    				}
+    			}
+    		}
+    	}
+    	health.success(connection.address, hardware.nanoTime()-requestNS);
+    	
+    	publishResponse(connection.address, time, connection.register, count*connection.readBytes, requestNS);
+    	return true;
+    }
+    
+    private boolean readFIFOPart(I2CBacking i2cBacking, byte address, byte[] cmd, byte[] blob, int pos, int mask, int length) {
+    	int attempt = 0;
+    	while(!i2cBacking.writeRead(address, cmd, cmd.length, blob, pos, mask, length)) {
+    		if (!backoff(address, attempt++)) {
+    			busFailure(address);
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    
+    private boolean pollCombined(I2CBacking i2cBacking, int connectionIdx) {
+    	I2CConnection connection = inputs[connectionIdx];
+    	busAddress(connection.address);
+    	//request and response are done in a single transaction, one syscall and the bus is held only once.
+    	long time = hardware.currentTimeMillis();
+    	long requestNS = hardware.nanoTime();
+    	//bytes land directly in the outgoing blob, nothing is recorded until publishResponse
+    	int attempt = 0;
+    	while(!i2cBacking.writeRead(connection.address, connection.readCmd, connection.readCmd.length, 
+    			                    Pipe.blob(i2cResponsePipe), Pipe.getWorkingBlobHeadPosition(i2cResponsePipe), Pipe.blobMask(i2cResponsePipe), 
+    			                    connection.readBytes)) {
+    		if (!backoff(connection.address, attempt++)) {
+    			busFailure(connection.address);
+    			return false;
+    		}
+    	}
+    	health.success(connection.address, hardware.nanoTime()-requestNS);
+
+    	if (isPublishRequired(connectionIdx)) {
+    		publishResponse(connection.address, time, connection.register, connection.readBytes, requestNS);
+    	}
+    	return true;
+    }
+
+    private boolean requestRead(I2CBacking i2cBacking, int connectionIdx) {
+        I2CConnection connection = inputs[connectionIdx];
+        busAddress(connection.address);
+        //Write the request to read
+        long requestNS = hardware.nanoTime();
+        int attempt = 0;
+        while(!i2cBacking.write((byte)connection.address, connection.readCmd, connection.readCmd.length)) {
+        	if (!backoff(connection.address, attempt++)) {
+        		busFailure(connection.address);
+        		return false;
+        	}
+        }
+        
+        //the read is collected once this deadline passes, other devices are polled while we wait.
+        pendingIdx[pendingCount] = connectionIdx;
+        pendingDeadline[pendingCount] = requestNS+connection.delayAfterRequestNS; //less the delay this is the request time
+        pendingCount++;
+        addressPending[connection.address] = true;
+        return true;
+    }
+
+    /**
+     * Pauses before a failed bus operation is tried again, the pause doubles with each attempt.
+     * @return false when the operation should be given up as failed
+     */
+    private boolean backoff(int address, int attempt) {
+    	return backoff(address, attempt, timeOut);
+    }
+    
+    private boolean backoff(int address, int attempt, long deadline) {
+    	long pause = I2CBusHealth.backoffNS(attempt);
+    	if (attempt>=MAX_RETRIES || hardware.nanoTime()+pause>deadline) {
+    		return false;
+    	}
+    	health.retry(address);
+    	LockSupport.parkNanos(pause);
+    	return true;
+    }
+    
+    private void busFailure(int address) {
+    	if (health.failure(address, hardware.nanoTime())) {
+    		logger.warn("I2C addr {} keeps failing, it is left out of the polls for a while", address);
+    	}
+    }
+    
+    /**
+     * @return error, retry and latency counters of each address on this bus
+     */
+    public I2CBusHealth getBusHealth() {
+    	return health;
+    }
+    
+    private void collectExpiredReads(I2CBacking i2cBacking) {
+        long now = hardware.nanoTime();
+        int p = pendingCount;
+        while (--p>=0) {
+            if (pendingDeadline[p]<=now) {
+                collectRead(i2cBacking, p);
+            }
+        }
+    }
+
+    /**
+     * Blocks until the pending reads are collected, use -1 for all addresses.
+     * Outgoing commands for other addresses are sent first, then the wait sleeps.
+     */
+    private void collectPendingReads(I2CBacking i2cBacking, int address) {
+        if (address>=0 && !addressPending[address]) {
+            return;
+        }
+        while (pendingCount>0) {
+            //find the next deadline of interest
+            int next = -1;
+            int p = pendingCount;
+            while (--p>=0) {
+                if ((address<0 || inputs[pendingIdx[p]].address==address)
+                    && (next<0 || pendingDeadline[p]<pendingDeadline[next])) {
+                    next = p;
+                }
+            }
+            if (next<0) {
+                return;
+            }
+            
+            long gap = pendingDeadline[next]-hardware.nanoTime();
+            if (gap>MIN_COMMAND_GAP_NS) {
+                releaseCommands(gap);
+            }
+            //the waiting commands are out, sleep the rest of the way instead of spinning on the clock
+            if (hardPolling) {
+                spin.until(pendingDeadline[next]);
+            } else if (!precisionWait.until(pendingDeadline[next])) {
+                requestShutdown();
+                return;
+            }
+            collectRead(i2cBacking, next);
+        }
+    }
+
+    private void collectRead(I2CBacking i2cBacking, int p) {
+        I2CConnection connection = inputs[pendingIdx[p]];
+        
+        //logger.info("i2c reading result {} delay before read {} ",Arrays.toString(Arrays.copyOfRange(temp, 0, connection.readBytes )),connection.delayAfterRequestNS);
+        
+        busAddress(connection.address);
+        long time = hardware.currentTimeMillis();
+        long requestNS = pendingDeadline[p]-connection.delayAfterRequestNS;
+        if (!readIntoResponse(i2cBacking, connection.address, connection.readBytes)) {
+        	busFailure(connection.address); //stuck or missing device, nothing is published for this poll
+        } else {
+        	health.success(connection.address, hardware.nanoTime()-requestNS);
+        	if (isPublishRequired(pendingIdx[p])) {
+        		publishResponse(connection.address, time, connection.register, connection.readBytes, requestNS);
+        	}
+        }
+        
+        addressPending[connection.address] = false;
+        //order of pending reads does not matter so the last takes this place
+        pendingCount--;
+        pendingIdx[p] = pendingIdx[pendingCount];
+        pendingDeadline[p] = pendingDeadline[pendingCount];
+    }
+
+    private boolean readIntoResponse(I2CBacking i2cBacking, byte address, int length) {
+    	//device bytes are read directly into the outgoing blob ring, no intermediate copy
+    	return i2cBacking.readInto(address, 
+    			                   Pipe.blob(i2cResponsePipe), 
+    			                   Pipe.getWorkingBlobHeadPosition(i2cResponsePipe), 
+    			                   Pipe.blobMask(i2cResponsePipe), 
+    			                   length);
+    }
+    
+    /**
+     * Compares the bytes just read into the blob against the last ones published for this connection.
+     * Unchanged values are only sent again once the heartbeat has passed, unless sendEveryValue is set.
+     */
+    private boolean isPublishRequired(int connectionIdx) {
+    	I2CConnection connection = inputs[connectionIdx];
+    	if (connection.sendEveryValue) {
+    		return true;
+    	}
+    	
+    	byte[] blob = Pipe.blob(i2cResponsePipe);
+    	int pos = Pipe.getWorkingBlobHeadPosition(i2cResponsePipe);
+    	int mask = Pipe.blobMask(i2cResponsePipe);
+    	byte[] last = lastPublished[connectionIdx];
+    	
+    	boolean changed = false;
+    	int i = connection.readBytes;
+    	while (--i>=0) {
+    		byte b = blob[mask & (pos+i)];
+    		if (b != last[i]) {
+    			last[i] = b;
+    			changed = true;
+    		}
+    	}
+    	
+    	long now = hardware.currentTimeMillis();
+    	if (changed || now-lastPublishedTime[connectionIdx] >= heartbeatMS) {
+    		lastPublishedTime[connectionIdx] = now;
+    		return true;
+    	} else {
+    		return false;
+    	}
+    }
+    
+    /**
+     * Publishes a response whose bytes have already been read into the blob at the working head.
+     * The capture time is when the read was requested, the duration runs from then until now.
+     */
+    private void publishResponse(int address, long time, int register, int length, long requestNS) {
+        int size = Pipe.addMsgIdx(i2cResponsePipe, I2CResponseSchema.MSG_RESPONSE_10);
+        Pipe.addIntValue(address, i2cResponsePipe);
+        Pipe.addLongValue(time, i2cResponsePipe);
+        Pipe.addIntValue(register, i2cResponsePipe);
+        Pipe.moveBlobPointerAndRecordPosAndLength(length, i2cResponsePipe);
+        long now = hardware.nanoTime();
+        Pipe.addLongValue(requestNS, i2cResponsePipe);
+        Pipe.addLongValue(now-requestNS, i2cResponsePipe);
+        Pipe.addIntValue(bus, i2cResponsePipe);
+        if (null!=trace) {
+        	trace.record(now, stageId, address, I2CTraceRing.MSG_RESPONSE, length, now-requestNS);
+        }
+        Pipe.confirmLowLevelWrite(i2cResponsePipe, size);
+        Pipe.publishWrites(i2cResponsePipe);
+    }
+    
+    /**
+     * @return recent bus events, render with appendText on demand, null unless debugCommands was set at startup
+     */
+    public I2CTraceRing getTrace() {
+    	return trace;
+    }
+    
+    @Override
+    public void shutdown() {
+    	super.shutdown();
+    	I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking(bus);
+    	if (i2cBacking instanceof I2CCaptureBacking) {
+    		((I2CCaptureBacking)i2cBacking).close(); //on this thread so it can not cut the log under a record
+    	}
+    	if (hardPolling) {
+    		logger.info("I2C bus {} hard polling on cpu {} achieved {} polls/s, {}", bus, ((HardwareImpl)hardware).getHardI2CPollCPU(), Math.round(getAchievedRate()), edf);
+    	} else if (null!=precisionWait) {
+    		logger.debug("I2C bus {} poll wake up {}", bus, precisionWait);
+    	}
+    	if (null!=trace && logger.isDebugEnabled()) {
+    		logger.debug("I2C bus {} trace of the last {} events\n{}", bus, Math.min(trace.recorded(), 1<<TRACE_BITS), trace);
+    	}
+    }
+    
     private boolean hasListeners() {
         return i2cResponsePipe != null;
     }
@@ -354,12 +978,14 @@ public class I2CJFFIStage extends AbstractTrafficOrderedStage {
 //				PipeReader.hasContentToRead(pipe),
 //				pipe
 //				);
-I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking();
+I2CBacking i2cBacking = ((HardwareImpl)hardware).getI2CBacking(bus);
 
 while ( hasReleaseCountRemaining(activePipe)
         && isChannelUnBlocked(activePipe)
         && PipeReader.hasContentToRead(pipe)
         && isConnectionUnBlocked(PipeReader.peekInt(pipe, 1)) //peek next connection and check that it is not blocking for some time
+        && isAddressUnPending(pipe) //commands to a device must wait while it still owes us a read
+        && isLaneOpen(activePipe, pipe) //bulk commands wait until they fit before the next poll
         && PipeReader.tryReadFragment(pipe)){
     
     int msgIdx = PipeReader.getMsgIdx(pipe);
@@ -377,26 +1003,31 @@ while ( hasReleaseCountRemaining(activePipe)
             int pos = PipeReader.readBytesPosition(pipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_BYTEARRAY_2);
             int mask = PipeReader.readBytesMask(pipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_BYTEARRAY_2);
             
+            
+            lastCommandLength[addr] = len;
+            if (I2CTrafficClass.LATENCY == trafficClass[addr] && hardware.nanoTime()-waitingSince[activePipe] > LATENCY_BUDGET_NS) {
+            	missedDeadlines[I2CTrafficClass.LATENCY.ordinal()]++;
+            }
+            
             //must grow if calls are needing more room.
-            if (workingBuffer.length < len) {
-            	workingBuffer = new byte[len*2];
+            if (workingBuffer.length < gatherBytes+len) {
+            	workingBuffer = Arrays.copyOf(workingBuffer, (gatherBytes+len)*2);
             }
 
             Pipe.copyBytesFromToRing(backing, pos, mask, 
-            		                 workingBuffer, 0, Integer.MAX_VALUE, 
+            		                 workingBuffer, gatherBytes, Integer.MAX_VALUE, 
             		                 len);
             
-            if (debugCommands) {
-                logger.info("{} pipe {} send addr {} command {} {}",Appendables.appendEpochTime(new StringBuilder(), System.currentTimeMillis())
-                		              ,activePipe, addr, Appendables.appendArray(new StringBuilder(), '[', backing, pos, mask, ']', len), pipe);
+            if (null!=trace) {
+            	trace.recordCommand(hardware.nanoTime(), stageId, addr, backing, pos, mask, len);
             }
             
             //    logger.info("i2c request write to address: {} register: {}  ",addr, workingBuffer[0]);//+Arrays.toString(Arrays.copyOfRange(connection.readCmd, 0, connection.readCmd.length)));
             
-            
-            timeOut = hardware.currentTimeMillis() + writeTime;
-            
-            while(!i2cBacking.write((byte) addr, workingBuffer, len) && hardware.currentTimeMillis()<timeOut){}
+            //sent with one transfer before the count of this message is taken
+            gatherAddress = addr;
+            gatherLengths[gatherCount++] = len;
+            gatherBytes += len;
             
         }
         break;
@@ -404,8 +1035,9 @@ while ( hasReleaseCountRemaining(activePipe)
         case I2CCommandSchema.MSG_BLOCKCHANNEL_22:
         {
             hardware.blockChannelDuration(PipeReader.readLong(pipe, I2CCommandSchema.MSG_BLOCKCHANNEL_22_FIELD_DURATIONNANOS_13), goPipeId(activePipe));
-            if (debugCommands) {
-                logger.info("CommandChannel blocked for {} millis ",PipeReader.readLong(pipe, I2CCommandSchema.MSG_BLOCKCHANNEL_22_FIELD_DURATIONNANOS_13));
+            if (null!=trace) {
+            	trace.record(hardware.nanoTime(), stageId, 0, I2CTraceRing.MSG_BLOCKCHANNEL, 0, 
+            			     PipeReader.readLong(pipe, I2CCommandSchema.MSG_BLOCKCHANNEL_22_FIELD_DURATIONNANOS_13));
             }
         }
         break;
@@ -418,9 +1050,10 @@ while ( hasReleaseCountRemaining(activePipe)
             int addr = PipeReader.readInt(pipe, I2CCommandSchema.MSG_BLOCKCONNECTION_20_FIELD_ADDRESS_12);
             long duration = PipeReader.readLong(pipe, I2CCommandSchema.MSG_BLOCKCONNECTION_20_FIELD_DURATIONNANOS_13);
             
+            
             blockConnectionDuration(connection, duration);
-            if (debugCommands) {
-                logger.info("I2C addr {} {} blocked for {} nanos  {}", addr, connection, duration, pipe);
+            if (null!=trace) {
+            	trace.record(hardware.nanoTime(), stageId, addr, I2CTraceRing.MSG_BLOCKCONNECTION, 0, duration);
             }
         }
         break;
@@ -430,9 +1063,11 @@ while ( hasReleaseCountRemaining(activePipe)
             int connection = PipeReader.readInt(pipe, I2CCommandSchema.MSG_BLOCKCONNECTIONUNTIL_21_FIELD_CONNECTOR_11);
             int addr = PipeReader.readInt(pipe, I2CCommandSchema.MSG_BLOCKCONNECTIONUNTIL_21_FIELD_ADDRESS_12);
             long time = PipeReader.readLong(pipe, I2CCommandSchema.MSG_BLOCKCONNECTIONUNTIL_21_FIELD_TIMEMS_14);
+            
+            
             blockConnectionUntil(connection, time);
-            if (debugCommands) {
-                logger.info("I2C addr {} {} blocked until {} millis {}", addr, connection, time, pipe);
+            if (null!=trace) {
+            	trace.record(hardware.nanoTime(), stageId, addr, I2CTraceRing.MSG_BLOCKCONNECTIONUNTIL, 0, time);
             }
         }
         
@@ -442,6 +1077,10 @@ while ( hasReleaseCountRemaining(activePipe)
             
     }
     PipeReader.releaseReadLock(pipe);
+    waitingSince[activePipe] = 0; //the next command starts waiting when it is checked
+    
+    //the ack may go out with this count so the command must be on the bus first
+    sendGatheredCommands(i2cBacking);
     
     //only do now after we know its not blocked and was completed
     decReleaseCount(activePipe);
@@ -450,6 +1089,55 @@ while ( hasReleaseCountRemaining(activePipe)
 
     }
     
+    private boolean isAddressUnPending(Pipe<I2CCommandSchema> pipe) {
+    	return 0==pendingCount 
+    		   || !PipeReader.peekMsg(pipe, I2CCommandSchema.MSG_COMMAND_7)
+    		   || !addressPending[PipeReader.peekInt(pipe, I2CCommandSchema.MSG_COMMAND_7_FIELD_ADDRESS_12)];
+    }
     
+    private void sendGatheredCommands(I2CBacking i2cBacking) {
+    	if (gatherCount>0) {
+    		busAddress(gatherAddress);
+    		long start = hardware.nanoTime();
+    		long deadline = start + (writeTime*1_000_000L); //local, the polls keep their own timeOut
+    		
+    		int sent = 0;
+    		int pos = 0;
+    		int attempt = 0;
+    		int batch = gatherCount;
+    		while (sent<gatherCount) {
+    			int request = Math.min(batch, gatherCount-sent);
+    			int count = i2cBacking.transfer((byte) gatherAddress, workingBuffer, pos, gatherLengths, sent, request);
+    			for (int i = 0; i<count; i++) {
+    				pos += gatherLengths[sent++];
+    			}
+    			if (count>0) {
+    				attempt = 0;
+    			}
+    			if (count==request) {
+    				continue;
+    			}
+    			//the batch stopped short, resume from the first unsent message one at a time
+    			//so a second failure can not push out any message twice
+    			batch = 1;
+    			if (!backoff(gatherAddress, attempt++, deadline)) {
+    				busFailure(gatherAddress);
+    				break;
+    			}
+    		}
+    		if (sent>0) {
+    			health.success(gatherAddress, hardware.nanoTime()-start);
+    		}
+    		if (null!=trace) {
+    			trace.record(hardware.nanoTime(), stageId, gatherAddress, I2CTraceRing.MSG_TRANSFER, gatherBytes, sent);
+    		}
+    		if (sent<gatherCount) {
+    			logger.warn("unable to send {} of {} commands to I2C addr {}, waited {}ms", gatherCount-sent, gatherCount, gatherAddress, writeTime);
+    		}
+    		
+    		gatherCount = 0;
+    		gatherBytes = 0;
+    	}
+    }
     
 }
\ No newline at end of file
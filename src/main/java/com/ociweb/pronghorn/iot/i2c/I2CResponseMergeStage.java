@@ -0,0 +1,69 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import com.ociweb.pronghorn.iot.schema.I2CResponseSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeReader;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.PronghornStage;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+/**
+ * Merges the responses from each I2C bus into the single pipe consumed by the listeners.
+ * Order is kept for each bus but there is no ordering between buses, each response carries its bus.
+ */
+public class I2CResponseMergeStage extends PronghornStage {
+
+    private final Pipe<I2CResponseSchema>[] inputs;
+    private final Pipe<I2CResponseSchema> output;
+    private int shutdownCount;
+
+    public I2CResponseMergeStage(GraphManager graphManager, Pipe<I2CResponseSchema>[] inputs, Pipe<I2CResponseSchema> output) {
+        super(graphManager, inputs, output);
+        this.inputs = inputs;
+        this.output = output;
+        GraphManager.addNota(graphManager, GraphManager.DOT_BACKGROUND, "darksalmon", this);
+    }
+
+    @Override
+    public void run() {
+        int i = inputs.length;
+        while (--i>=0) {
+            Pipe<I2CResponseSchema> input = inputs[i];
+            while (PipeWriter.hasRoomForWrite(output) && PipeReader.tryReadFragment(input)) {
+
+                int msgIdx = PipeReader.getMsgIdx(input);
+                switch (msgIdx) {
+                    case I2CResponseSchema.MSG_RESPONSE_10:
+                        PipeWriter.presumeWriteFragment(output, I2CResponseSchema.MSG_RESPONSE_10);
+                        PipeWriter.writeInt(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_ADDRESS_11,
+                                PipeReader.readInt(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_ADDRESS_11));
+                        PipeWriter.writeLong(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_TIME_13,
+                                PipeReader.readLong(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_TIME_13));
+                        PipeWriter.writeInt(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_REGISTER_14,
+                                PipeReader.readInt(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_REGISTER_14));
+                        PipeWriter.writeBytes(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12,
+                                PipeReader.readBytesBackingArray(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12),
+                                PipeReader.readBytesPosition(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12),
+                                PipeReader.readBytesLength(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12),
+                                PipeReader.readBytesMask(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BYTEARRAY_12));
+                        PipeWriter.writeLong(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_CAPTURENS_15,
+                                PipeReader.readLong(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_CAPTURENS_15));
+                        PipeWriter.writeLong(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_READDURATIONNS_16,
+                                PipeReader.readLong(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_READDURATIONNS_16));
+                        PipeWriter.writeInt(output, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BUS_17,
+                                PipeReader.readInt(input, I2CResponseSchema.MSG_RESPONSE_10_FIELD_BUS_17));
+                        PipeWriter.publishWrites(output);
+                        break;
+                    case -1:
+                        if (++shutdownCount == inputs.length) {
+                            PipeWriter.publishEOF(output);
+                            requestShutdown();
+                        }
+                        break;
+                }
+                PipeReader.releaseReadLock(input);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import java.io.IOException;
+
+import com.ociweb.pronghorn.util.Appendables;
+
+/**
+ * Fixed size binary trace of bus events, written from the bus thread without allocation or logging.
+ * Each record is three longs: nano time, the packed stage, address, message id and length, then
+ * one value whose meaning depends on the message, e.g. the first command bytes or a duration.
+ * Once full the oldest records are overwritten, use {@link #appendText(Appendable)} to render it.
+ */
+public class I2CTraceRing {
+
+    //message ids are those of the schemas where there is one
+    public static final int MSG_COMMAND = 7;            //I2CCommandSchema.MSG_COMMAND_7, value holds up to 8 command bytes
+    public static final int MSG_BLOCKCONNECTION = 20;   //value is the duration in ns
+    public static final int MSG_BLOCKCONNECTIONUNTIL = 21; //value is the time in ms
+    public static final int MSG_BLOCKCHANNEL = 22;      //value is the duration in ns
+    public static final int MSG_RESPONSE = 10;          //I2CResponseSchema.MSG_RESPONSE_10, value is the read duration in ns
+    public static final int MSG_TRANSFER = 1;           //gathered commands put on the bus, value is the count of commands sent
+
+    private static final int RECORD_LONGS = 3;
+
+    private final long[] ring;
+    private final int mask;
+    private long head; //count of records ever written
+
+    /**
+     * @param recordsBits ring holds 2^recordsBits records
+     */
+    public I2CTraceRing(int recordsBits) {
+        this.ring = new long[RECORD_LONGS << recordsBits];
+        this.mask = (1 << recordsBits) - 1;
+    }
+
+    public void record(long timeNS, int stage, int address, int msgId, int length, long value) {
+        int pos = RECORD_LONGS * (mask & (int)head);
+        ring[pos]   = timeNS;
+        ring[pos+1] = ((0xFFFFL & stage) << 48) | ((0xFFL & address) << 40) | ((0xFFL & msgId) << 32) | (0xFFFFFFFFL & length);
+        ring[pos+2] = value;
+        head++;
+    }
+
+    /**
+     * Records a command with up to its first 8 bytes packed into the value, first byte highest.
+     */
+    public void recordCommand(long timeNS, int stage, int address, byte[] backing, int position, int bMask, int length) {
+        long value = 0;
+        int i = Math.min(8, length);
+        for (int j = 0; j < i; j++) {
+            value = (value << 8) | (0xFF & backing[bMask & (position + j)]);
+        }
+        record(timeNS, stage, address, MSG_COMMAND, length, value);
+    }
+
+    /**
+     * @return count of records written since the ring was created, including overwritten ones.
+     */
+    public long recorded() {
+        return head;
+    }
+
+    /**
+     * Renders the records still held, oldest first. This is meant to be called on demand, when it runs
+     * while the bus thread is writing the newest record may be shown half written.
+     */
+    public <A extends Appendable> A appendText(A target) {
+        try {
+            long end = head;
+            long start = Math.max(0, end - (mask + 1));
+            for (long r = start; r < end; r++) {
+                int pos = RECORD_LONGS * (mask & (int)r);
+                long packed = ring[pos+1];
+                int msgId = (int)(0xFF & (packed >>> 32));
+                int length = (int)(0xFFFFFFFFL & packed);
+                long value = ring[pos+2];
+
+                Appendables.appendValue(target, ring[pos]).append("ns stage ");
+                Appendables.appendValue(target, (int)(0xFFFF & (packed >>> 48))).append(" addr ");
+                Appendables.appendValue(target, (int)(0xFF & (packed >>> 40))).append(' ');
+                target.append(name(msgId)).append(" len ");
+                Appendables.appendValue(target, length).append(' ');
+                if (MSG_COMMAND == msgId) {
+                    target.append('[');
+                    int i = Math.min(8, length);
+                    while (--i >= 0) {
+                        int b = (int)(0xFF & (value >>> (i<<3)));
+                        target.append(Character.forDigit(b>>4, 16)).append(Character.forDigit(b&0xF, 16)).append(i>0 ? " " : "");
+                    }
+                    target.append(length > 8 ? " ...]" : "]");
+                } else {
+                    Appendables.appendValue(target, value).append(unit(msgId));
+                }
+                target.append('\n');
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return target;
+    }
+
+    private static String name(int msgId) {
+        switch (msgId) {
+            case MSG_COMMAND:              return "command";
+            case MSG_BLOCKCONNECTION:      return "block connection";
+            case MSG_BLOCKCONNECTIONUNTIL: return "block connection until";
+            case MSG_BLOCKCHANNEL:         return "block channel";
+            case MSG_RESPONSE:             return "response";
+            case MSG_TRANSFER:             return "transfer";
+            default:                       return "msg "+msgId;
+        }
+    }
+
+    private static String unit(int msgId) {
+        switch (msgId) {
+            case MSG_BLOCKCONNECTIONUNTIL: return "ms";
+            case MSG_TRANSFER:             return " sent";
+            default:                       return "ns";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return appendText(new StringBuilder()).toString();
+    }
+
+}
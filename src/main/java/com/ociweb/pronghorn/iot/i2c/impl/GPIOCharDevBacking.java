@@ -0,0 +1,270 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.pronghorn.iot.i2c.GPIOEdgeBacking;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+
+/**
+ * GPIO lines on a Linux /dev/gpiochipN character device using the v2 uAPI. The inputs and the
+ * outputs are each one line request so every read or write of the values is a single ioctl,
+ * edges are queued by the kernel with their timestamps and read from the request fd.
+ *
+ * As a {@link GPIOEdgeBacking} the lines are inputs and only their rising edges are reported.
+ */
+public class GPIOCharDevBacking implements GPIOLineBacking, GPIOEdgeBacking {
+
+    private static final Logger logger = LoggerFactory.getLogger(GPIOCharDevBacking.class);
+
+    private static final UnixIoctlLib c = UnixIoctlLib.instance;
+
+    //struct gpio_v2_line_request
+    static final int REQUEST_SIZE = 592;
+    static final int REQUEST_CONSUMER = 256;
+    static final int REQUEST_FLAGS = 288;        //config.flags
+    static final int REQUEST_NUM_ATTRS = 296;    //config.num_attrs
+    static final int REQUEST_ATTRS = 320;        //config.attrs[10], 24 bytes each
+    static final int REQUEST_NUM_LINES = 560;
+    static final int REQUEST_FD = 588;
+    private static final int CONSUMER_MAX = 31;
+
+    //struct gpio_v2_line_event
+    static final int EVENT_SIZE = 48;
+    static final int EVENT_ID = 8;
+    static final int EVENT_OFFSET = 12;
+    private static final int EVENT_CAPACITY = 64;
+
+    static final long FLAG_INPUT = 1L<<2;
+    static final long FLAG_OUTPUT = 1L<<3;
+    static final long FLAG_EDGE_RISING = 1L<<4;
+    static final long FLAG_EDGE_FALLING = 1L<<5;
+    static final int ATTR_ID_OUTPUT_VALUES = 2;
+
+    private static final int VALUES_SIZE = 16; //struct gpio_v2_line_values {u64 bits; u64 mask;}
+
+    private final String path;
+    private final String consumer;
+    private int inputFd = -1;
+    private int outputFd = -1;
+    private int[] inputs;
+    private long inputMask;
+    private long outputMask;
+
+    private Pointer values;
+    private Pointer events;
+    private Pointer pollFd;
+    private byte[] eventBytes;
+    private ByteBuffer eventBuffer;
+
+    //only used as a GPIOEdgeBacking
+    private long[] edgeTime;
+    private int[] edgeInput;
+    private int[] edgeKind;
+
+    public GPIOCharDevBacking() {
+        this("/dev/gpiochip0");
+    }
+
+    public GPIOCharDevBacking(String path) {
+        this(path, "foglight");
+    }
+
+    public GPIOCharDevBacking(String path, String consumer) {
+        this.path = path;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void configure(int[] inputs, int[] outputs, long initialOutputs) {
+        if (null != this.inputs) {
+            throw new IllegalStateException("Lines are already configured.");
+        }
+        if (inputs.length > MAX_LINES || outputs.length > MAX_LINES) {
+            throw new UnsupportedOperationException("At most "+MAX_LINES+" inputs and "+MAX_LINES+" outputs may be requested");
+        }
+        this.inputs = inputs;
+        this.inputMask = mask(inputs.length);
+        this.outputMask = mask(outputs.length);
+
+        jnr.ffi.Runtime runtime = jnr.ffi.Runtime.getRuntime(c);
+        values = Memory.allocateDirect(runtime, VALUES_SIZE);
+        events = Memory.allocateDirect(runtime, EVENT_SIZE * EVENT_CAPACITY);
+        pollFd = Memory.allocateDirect(runtime, 8);
+        eventBytes = new byte[EVENT_SIZE * EVENT_CAPACITY];
+        eventBuffer = ByteBuffer.wrap(eventBytes).order(ByteOrder.nativeOrder());
+
+        int chipFd = c.open(path, UnixIoctlLib.O_RDWR);
+        if (chipFd < 0) {
+            throw new RuntimeException("Could not open " + path);
+        }
+        try {
+            Pointer request = Memory.allocateDirect(runtime, REQUEST_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(REQUEST_SIZE).order(ByteOrder.nativeOrder());
+            if (inputs.length > 0) {
+                encodeRequest(buffer, inputs, consumer, FLAG_INPUT | FLAG_EDGE_RISING | FLAG_EDGE_FALLING, 0);
+                inputFd = requestLines(chipFd, request, buffer);
+            }
+            if (outputs.length > 0) {
+                encodeRequest(buffer, outputs, consumer, FLAG_OUTPUT, initialOutputs);
+                outputFd = requestLines(chipFd, request, buffer);
+            }
+        } finally {
+            c.close(chipFd);
+        }
+        logger.debug("requested {} inputs and {} outputs on {}", inputs.length, outputs.length, path);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                GPIOCharDevBacking.this.close();
+            }
+        });
+    }
+
+    private int requestLines(int chipFd, Pointer request, ByteBuffer buffer) {
+        request.put(0, buffer.array(), 0, REQUEST_SIZE);
+        if (c.ioctl(chipFd, UnixIoctlLib.GPIO_V2_GET_LINE_IOCTL, request) < 0) {
+            throw new RuntimeException("Could not request lines on " + path);
+        }
+        return request.getInt(REQUEST_FD);
+    }
+
+    /**
+     * Fills in a struct gpio_v2_line_request, output values are only set when the flags ask for outputs.
+     */
+    static void encodeRequest(ByteBuffer target, int[] lines, String consumer, long flags, long outputValues) {
+        target.clear();
+        while (target.hasRemaining()) {
+            target.put((byte)0);
+        }
+        for (int i = 0; i < lines.length; i++) {
+            target.putInt(i<<2, lines[i]);
+        }
+        byte[] name = consumer.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < Math.min(CONSUMER_MAX, name.length); i++) {
+            target.put(REQUEST_CONSUMER+i, name[i]);
+        }
+        target.putLong(REQUEST_FLAGS, flags);
+        if (0 != (FLAG_OUTPUT & flags)) {
+            target.putInt(REQUEST_NUM_ATTRS, 1);
+            target.putInt(REQUEST_ATTRS, ATTR_ID_OUTPUT_VALUES);
+            target.putLong(REQUEST_ATTRS+8, outputValues);
+            target.putLong(REQUEST_ATTRS+16, mask(lines.length));
+        }
+        target.putInt(REQUEST_NUM_LINES, lines.length);
+        target.clear();
+    }
+
+    /**
+     * Reads edges out of a buffer of struct gpio_v2_line_event.
+     * @return count of edges which belong to the lines
+     */
+    static int decodeEvents(ByteBuffer source, int count, int[] lines, long[] timeNS, int[] input, int[] kind) {
+        int found = 0;
+        for (int e = 0; e < count; e++) {
+            int base = e * EVENT_SIZE;
+            int offset = source.getInt(base + EVENT_OFFSET);
+            int i = lines.length;
+            while (--i >= 0 && lines[i] != offset) {
+            }
+            if (i >= 0) {
+                timeNS[found] = source.getLong(base);
+                input[found] = i;
+                kind[found] = source.getInt(base + EVENT_ID);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static long mask(int lines) {
+        return lines >= 64 ? -1L : (1L<<lines)-1;
+    }
+
+    @Override
+    public long readInputs() {
+        if (inputFd < 0) {
+            return 0;
+        }
+        values.putLong(0, 0);
+        values.putLong(8, inputMask);
+        if (c.ioctl(inputFd, UnixIoctlLib.GPIO_V2_LINE_GET_VALUES_IOCTL, values) < 0) {
+            throw new RuntimeException("Could not read lines on " + path);
+        }
+        return inputMask & values.getLong(0);
+    }
+
+    @Override
+    public void writeOutputs(long bits, long mask) {
+        if (outputFd < 0 || 0 == (mask & outputMask)) {
+            return;
+        }
+        values.putLong(0, bits);
+        values.putLong(8, mask & outputMask);
+        if (c.ioctl(outputFd, UnixIoctlLib.GPIO_V2_LINE_SET_VALUES_IOCTL, values) < 0) {
+            throw new RuntimeException("Could not write lines on " + path);
+        }
+    }
+
+    @Override
+    public int readEdges(long[] timeNS, int[] input, int[] kind, int timeoutMS) {
+        if (inputFd < 0) {
+            return 0;
+        }
+        pollFd.putInt(0, inputFd);
+        pollFd.putShort(4, UnixIoctlLib.POLLIN);
+        pollFd.putShort(6, (short)0);
+        if (c.poll(pollFd, 1, timeoutMS) <= 0) {
+            return 0;
+        }
+        //the kernel only hands out whole events
+        int max = Math.min(timeNS.length, EVENT_CAPACITY);
+        int bytes = c.read(inputFd, events, max * EVENT_SIZE);
+        if (bytes < EVENT_SIZE) {
+            return 0;
+        }
+        events.get(0, eventBytes, 0, bytes);
+        return decodeEvents(eventBuffer, bytes / EVENT_SIZE, inputs, timeNS, input, kind);
+    }
+
+    @Override
+    public void configure(int[] lines) {
+        configure(lines, new int[0], 0);
+        edgeTime = new long[EVENT_CAPACITY];
+        edgeInput = new int[EVENT_CAPACITY];
+        edgeKind = new int[EVENT_CAPACITY];
+    }
+
+    @Override
+    public int pollEdges(boolean[] fired, int timeoutMS) {
+        int count = 0;
+        int edges = readEdges(edgeTime, edgeInput, edgeKind, timeoutMS);
+        for (int e = 0; e < edges; e++) {
+            if (EDGE_RISING == edgeKind[e] && !fired[edgeInput[e]]) {
+                fired[edgeInput[e]] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (inputFd >= 0) {
+            c.close(inputFd);
+            inputFd = -1;
+        }
+        if (outputFd >= 0) {
+            c.close(outputFd);
+            outputFd = -1;
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.pronghorn.iot.i2c.GPIOEdgeBacking;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+
+/**
+ * {@link GPIOLineBacking} for boards which only have the sysfs GPIO files. Inputs are set to
+ * report both edges and their value files are watched with poll() for POLLPRI. Each line is
+ * still its own file so the bulk reads and writes are a loop, and sysfs has no event time so
+ * edges are stamped when poll() returns.
+ *
+ * As a {@link GPIOEdgeBacking} the lines are inputs set to report rising edges only, so a pulse
+ * is seen even when it has ended before poll() returns.
+ */
+public class GPIOSysfsLineBacking implements GPIOLineBacking, GPIOEdgeBacking {
+
+    private static final Logger logger = LoggerFactory.getLogger(GPIOSysfsLineBacking.class);
+
+    private static final UnixIoctlLib c = UnixIoctlLib.instance;
+
+    private static final byte[] IN = "in".getBytes();
+    private static final byte[] HIGH = "high".getBytes(); //output which starts high
+    private static final byte[] LOW = "low".getBytes();   //output which starts low
+    private static final byte[] BOTH = "both".getBytes();
+    private static final byte[] RISING = "rising".getBytes();
+    private static final byte[] ONE = "1".getBytes();
+    private static final byte[] ZERO = "0".getBytes();
+
+    private static final int POLL_FD_SIZE = 8;
+    private static final int POLL_EVENTS_OFFSET = 4;
+    private static final int POLL_REVENTS_OFFSET = 6;
+
+    private final String root;
+    private int[] inputFds;
+    private int[] outputFds;
+    private long lastInputs;
+    private Pointer pollFds;
+    private final byte[] valueBuffer = new byte[8];
+
+    public GPIOSysfsLineBacking() {
+        this("/sys/class/gpio");
+    }
+
+    public GPIOSysfsLineBacking(String root) {
+        this.root = root;
+    }
+
+    @Override
+    public void configure(int[] inputs, int[] outputs, long initialOutputs) {
+        configure(inputs, BOTH, outputs, initialOutputs);
+    }
+
+    @Override
+    public void configure(int[] lines) {
+        configure(lines, RISING, new int[0], 0);
+    }
+
+    private void configure(int[] inputs, byte[] inputEdge, int[] outputs, long initialOutputs) {
+        if (null != inputFds) {
+            throw new IllegalStateException("Lines are already configured.");
+        }
+        if (inputs.length > MAX_LINES || outputs.length > MAX_LINES) {
+            throw new UnsupportedOperationException("At most "+MAX_LINES+" inputs and "+MAX_LINES+" outputs may be requested");
+        }
+        inputFds = new int[inputs.length];
+        outputFds = new int[outputs.length];
+        pollFds = Memory.allocateDirect(jnr.ffi.Runtime.getRuntime(c), POLL_FD_SIZE * Math.max(1, inputs.length));
+
+        for (int i = 0; i < inputs.length; i++) {
+            inputFds[i] = open(inputs[i], IN, inputEdge, UnixIoctlLib.O_RDONLY);
+            pollFds.putInt(i * POLL_FD_SIZE, inputFds[i]);
+            pollFds.putShort(i * POLL_FD_SIZE + POLL_EVENTS_OFFSET, (short) (UnixIoctlLib.POLLPRI | UnixIoctlLib.POLLERR));
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            //direction high or low sets the value along with the direction so there is no glitch
+            outputFds[i] = open(outputs[i], 0 != (initialOutputs & (1L<<i)) ? HIGH : LOW, null, UnixIoctlLib.O_RDWR);
+        }
+        //reading the values clears any edge pending from before we started
+        lastInputs = readInputs();
+        logger.debug("requested {} inputs and {} outputs under {}", inputs.length, outputs.length, root);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                GPIOSysfsLineBacking.this.close();
+            }
+        });
+    }
+
+    private int open(int line, byte[] direction, byte[] edge, int flags) {
+        Path gpio = Paths.get(root, "gpio" + line);
+        try {
+            if (!gpio.toFile().exists()) {
+                Files.write(Paths.get(root, "export"), Integer.toString(line).getBytes());
+            }
+            Files.write(gpio.resolve("direction"), direction);
+            if (null != edge) {
+                Files.write(gpio.resolve("edge"), edge);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        String value = gpio.resolve("value").toString();
+        int fd = c.open(value, flags);
+        if (fd < 0) {
+            throw new RuntimeException("Could not open " + value);
+        }
+        return fd;
+    }
+
+    private boolean readHigh(int fd) {
+        c.lseek(fd, 0, UnixIoctlLib.SEEK_SET);
+        return c.read(fd, valueBuffer, valueBuffer.length) > 0 && '1' == valueBuffer[0];
+    }
+
+    @Override
+    public long readInputs() {
+        long result = 0;
+        int i = inputFds.length;
+        while (--i >= 0) {
+            if (readHigh(inputFds[i])) {
+                result |= 1L<<i;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void writeOutputs(long values, long mask) {
+        int i = outputFds.length;
+        while (--i >= 0) {
+            if (0 != (mask & (1L<<i))) {
+                c.lseek(outputFds[i], 0, UnixIoctlLib.SEEK_SET);
+                c.write(outputFds[i], 0 != (values & (1L<<i)) ? ONE : ZERO, 1);
+            }
+        }
+    }
+
+    private boolean pollInputs(int timeoutMS) {
+        return inputFds.length > 0 && c.poll(pollFds, inputFds.length, timeoutMS) > 0;
+    }
+
+    private boolean hasEdge(int i) {
+        return 0 != (UnixIoctlLib.POLLPRI & pollFds.getShort(i * POLL_FD_SIZE + POLL_REVENTS_OFFSET));
+    }
+
+    @Override
+    public int readEdges(long[] timeNS, int[] input, int[] kind, int timeoutMS) {
+        if (!pollInputs(timeoutMS)) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        int count = 0;
+        for (int i = 0; i < inputFds.length && count < timeNS.length; i++) {
+            if (hasEdge(i)) {
+                //the read also arms the next edge, a pulse shorter than our wake up is not seen
+                long bit = 1L<<i;
+                boolean high = readHigh(inputFds[i]);
+                if (high != (0 != (lastInputs & bit))) {
+                    lastInputs ^= bit;
+                    timeNS[count] = now;
+                    input[count] = i;
+                    kind[count] = high ? EDGE_RISING : EDGE_FALLING;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int pollEdges(boolean[] fired, int timeoutMS) {
+        int count = 0;
+        if (pollInputs(timeoutMS)) {
+            for (int i = 0; i < inputFds.length; i++) {
+                if (hasEdge(i)) {
+                    readHigh(inputFds[i]); //must read the value from the start to arm the next edge
+                    if (!fired[i]) {
+                        fired[i] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeAll(inputFds);
+        closeAll(outputFds);
+    }
+
+    private static void closeAll(int[] fds) {
+        if (null != fds) {
+            for (int i = 0; i < fds.length; i++) {
+                if (fds[i] >= 0) {
+                    c.close(fds[i]);
+                    fds[i] = -1;
+                }
+            }
+        }
+    }
+
+}
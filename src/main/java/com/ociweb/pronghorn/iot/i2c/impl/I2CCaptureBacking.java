@@ -0,0 +1,185 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.pronghorn.iot.i2c.I2CBacking;
+
+/**
+ * Records every message moved by another backing into a memory-mapped binary log so
+ * a session on real hardware can be replayed later with {@link I2CReplayBacking}.
+ *
+ * The log starts with a header of magic, version, bus and the wall clock time of capture.
+ * Each record that follows is the nano time, direction, address, success flag, payload
+ * length and the payload bytes. A combined write and read is logged as two records.
+ */
+public class I2CCaptureBacking implements I2CBacking {
+
+    private static final Logger logger = LoggerFactory.getLogger(I2CCaptureBacking.class);
+
+    public static final int MAGIC = 0x46493243; //FI2C
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;     //int magic, short version, byte bus, byte pad, long start millis
+    public static final int RECORD_HEADER_SIZE = 13; //long nanos, byte direction, byte address, byte ok, short length
+
+    public static final byte DIR_WRITE = 0; //master to device
+    public static final byte DIR_READ = 1;  //device to master
+
+    //file is mapped one region at a time, the next is mapped when a record does not fit
+    private static final int REGION_SIZE = 1<<24;
+
+    private final I2CBacking backing;
+    private final Path file;
+
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    public I2CCaptureBacking(I2CBacking backing, Path file) {
+        this.backing = backing;
+        this.file = file;
+    }
+
+    @Override
+    public I2CCaptureBacking configure(byte bus) {
+        if (null != channel) {
+            throw new IllegalStateException("Bus is already configured.");
+        }
+        //the wrapped backing is expected to be configured already
+        try {
+            if (null != file.getParent()) {
+                Files.createDirectories(file.getParent());
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            mapRegion(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open capture file " + file, e);
+        }
+        region.putInt(MAGIC);
+        region.putShort(VERSION);
+        region.put(bus);
+        region.put((byte) 0);
+        region.putLong(System.currentTimeMillis());
+        logger.info("capturing I2C bus {} to {}", bus, file);
+        return this;
+    }
+
+    private void mapRegion(long start) throws IOException {
+        if (null != region) {
+            region.force();
+        }
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void ensureRoom(int length) {
+        if (region.remaining() < RECORD_HEADER_SIZE + length) {
+            try {
+                mapRegion(regionStart + region.position());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void recordHeader(byte direction, byte address, boolean ok, int length) {
+        ensureRoom(length);
+        region.putLong(System.nanoTime());
+        region.put(direction);
+        region.put(address);
+        region.put((byte) (ok ? 1 : 0));
+        region.putShort((short) length);
+    }
+
+    private void record(byte direction, byte address, boolean ok, byte[] data, int pos, int mask, int length) {
+        if (null == region) {
+            return; //closed on shutdown
+        }
+        recordHeader(direction, address, ok, length);
+        for (int i = 0; i < length; i++) {
+            region.put(data[mask & (pos + i)]);
+        }
+    }
+
+    /**
+     * @return bytes of the log written so far.
+     */
+    public long captured() {
+        return null == region ? 0 : regionStart + region.position();
+    }
+
+    /**
+     * Drops the unused tail of the last region. Must be called by the thread which records, the bus
+     * stage does this in its shutdown. A log which was never closed is still read by the replay,
+     * its zeroed tail ends it.
+     */
+    public void close() {
+        if (null != channel) {
+            try {
+                long length = captured();
+                region.force();
+                region = null;
+                channel.truncate(length);
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("unable to close capture file {}", file, e);
+            }
+            channel = null;
+        }
+    }
+
+    @Override
+    public byte[] read(byte address, byte[] target, int bufferSize) {
+        byte[] result = backing.read(address, target, bufferSize);
+        int length = Math.min(bufferSize, result.length);
+        record(DIR_READ, address, length > 0 && -2 != result[0], result, 0, Integer.MAX_VALUE, length);
+        return result;
+    }
+
+    @Override
+    public boolean readInto(byte address, byte[] target, int pos, int mask, int length) {
+        boolean ok = backing.readInto(address, target, pos, mask, length);
+        record(DIR_READ, address, ok, target, pos, mask, length);
+        return ok;
+    }
+
+    @Override
+    public boolean write(byte address, byte[] message, int length) {
+        boolean ok = backing.write(address, message, length);
+        record(DIR_WRITE, address, ok, message, 0, Integer.MAX_VALUE, length);
+        return ok;
+    }
+
+    @Override
+    public boolean writeRead(byte address, byte[] message, int length, byte[] target, int pos, int mask, int readLength) {
+        boolean ok = backing.writeRead(address, message, length, target, pos, mask, readLength);
+        if (length > 0) {
+            record(DIR_WRITE, address, ok, message, 0, Integer.MAX_VALUE, length);
+        }
+        record(DIR_READ, address, ok, target, pos, mask, readLength);
+        return ok;
+    }
+
+    @Override
+    public int transfer(byte address, byte[] data, int dataPos, int[] lengths, int lengthsPos, int count) {
+        int sent = backing.transfer(address, data, dataPos, lengths, lengthsPos, count);
+        //only the messages which reached the device are logged, the rest will be retried
+        for (int i = 0; i < sent; i++) {
+            int len = lengths[lengthsPos + i];
+            record(DIR_WRITE, address, true, data, dataPos, Integer.MAX_VALUE, len);
+            dataPos += len;
+        }
+        return sent;
+    }
+
+}
@@ -5,6 +5,9 @@ import org.slf4j.LoggerFactory;
 
 import com.ociweb.pronghorn.iot.i2c.I2CBacking;
 
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+
 /**
  * Native I2C backing implementation for a GrovePi using ioctl.h.
  *
@@ -30,6 +33,22 @@ public class I2CNativeLinuxBacking implements I2CBacking {
     //Most recent address we've handled in order to restrict duplicat IOCTL calls.
     private byte lastAddress = (byte) -127;
 
+    //Largest payload which can be moved in a single message of a combined transaction.
+    private static final int MAX_TRANSFER_BYTES = 4096;
+    //Most messages the kernel will accept in one I2C_RDWR call, see I2C_RDWR_IOCTL_MAX_MSGS
+    private static final int MAX_TRANSFER_MSGS = 42;
+    
+    //struct i2c_msg {__u16 addr; __u16 flags; __u16 len; __u8 *buf;} the pointer is always aligned at 8
+    private static final int MSG_BUF_OFFSET = 8;
+    
+    //Native memory for I2C_RDWR, allocated once on configure so no garbage is created per transaction.
+    private int addressSize;
+    private int msgSize;
+    private Pointer rdwrData;  //struct i2c_rdwr_ioctl_data {struct i2c_msg *msgs; __u32 nmsgs;}
+    private Pointer msgs;
+    private Pointer writeBuffer;
+    private Pointer readBuffer;
+
     /**
      * Configures I2C to communicate with the specified byte address.
      *
@@ -61,6 +80,33 @@ public class I2CNativeLinuxBacking implements I2CBacking {
         }
     }
 
+    private void allocateTransferBuffers() {
+        jnr.ffi.Runtime runtime = jnr.ffi.Runtime.getRuntime(c);
+        addressSize = runtime.addressSize();
+        msgSize = MSG_BUF_OFFSET + addressSize;
+
+        msgs = Memory.allocateDirect(runtime, msgSize * MAX_TRANSFER_MSGS);
+        rdwrData = Memory.allocateDirect(runtime, addressSize * 2);
+        rdwrData.putAddress(0, msgs);
+
+        writeBuffer = Memory.allocateDirect(runtime, MAX_TRANSFER_BYTES);
+        readBuffer = Memory.allocateDirect(runtime, MAX_TRANSFER_BYTES);
+    }
+
+    private void populateMessage(int idx, byte address, int flags, int length, Pointer buffer, long bufferOffset) {
+        long base = idx * msgSize;
+        msgs.putShort(base, address);
+        msgs.putShort(base + 2, (short) flags);
+        msgs.putShort(base + 4, (short) length);
+        msgs.putAddress(base + MSG_BUF_OFFSET, buffer.address() + bufferOffset);
+    }
+
+    private int transferMessages(int count) {
+        rdwrData.putInt(addressSize, count);
+        //the ioctl returns the count of messages transfered, some adapters stop short without an error
+        return c.ioctl(i2cFile, UnixIoctlLib.I2C_RDWR, rdwrData);
+    }
+
     @Override
     public I2CNativeLinuxBacking configure(byte bus) {
         if (configured) {
@@ -82,6 +128,8 @@ public class I2CNativeLinuxBacking implements I2CBacking {
             logger.debug("Successfully opened {}", device);
         }
 
+        allocateTransferBuffers();
+
         //Close the file when the application shuts down.
         Runtime.getRuntime().addShutdownHook(new Thread() {
             public void run() {
@@ -112,6 +160,32 @@ public class I2CNativeLinuxBacking implements I2CBacking {
         }
     }
 
+    @Override
+    public boolean readInto(byte address, byte[] target, int pos, int mask, int length) {
+        if (!configured) {
+            throw new IllegalStateException("Bus is not configured yet.");
+        }
+        assert (length > 0 && length <= MAX_TRANSFER_BYTES);
+
+        if (ensureI2CDevice(address) && length == c.read(i2cFile, readBuffer, length)) {
+            copyToRing(readBuffer, target, pos, mask, length);
+            return true;
+        } else {
+            target[pos & mask] = -2;//did not read so flag this as an error
+            return false;
+        }
+    }
+
+    private static void copyToRing(Pointer source, byte[] target, int pos, int mask, int length) {
+        int start = pos & mask;
+        //when the ring wraps the bytes are copied in two segments
+        int first = (int) Math.min(length, 1L + mask - start);
+        source.get(0, target, start, first);
+        if (first < length) {
+            source.get(first, target, 0, length - first);
+        }
+    }
+
     @Override
     public boolean write(byte address, byte[] message, int length) {
         if (!configured) {
@@ -126,4 +200,70 @@ public class I2CNativeLinuxBacking implements I2CBacking {
         return -1 != c.write(i2cFile, message, length);
 
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean writeRead(byte address, byte[] message, int length, byte[] target, int pos, int mask, int readLength) {
+        if (!configured) {
+            throw new IllegalStateException("Bus is not configured yet.");
+        }
+        if (address <= 0 || address > I2C_MAX_ADDRESSES) {
+            throw new RuntimeException(
+                    "I2C Device 0x" + Integer.toHexString(address) + " is outside of the possible I2C address range.");
+        }
+        assert (length >= 0 && length <= MAX_TRANSFER_BYTES);
+        assert (readLength > 0 && readLength <= MAX_TRANSFER_BYTES);
+
+        //the address is carried in each message so the I2C_SLAVE_FORCE ioctl is not needed here.
+        int count = 0;
+        if (length > 0) {
+            writeBuffer.put(0, message, 0, length);
+            populateMessage(count++, address, 0, length, writeBuffer, 0);
+        }
+        populateMessage(count++, address, UnixIoctlLib.I2C_M_RD, readLength, readBuffer, 0);
+
+        if (count == transferMessages(count)) {
+            copyToRing(readBuffer, target, pos, mask, readLength);
+            return true;
+        } else {
+            target[pos & mask] = -2;//did not read so flag this as an error
+            return false;
+        }
+    }
+
+    @Override
+    public int transfer(byte address, byte[] data, int dataPos, int[] lengths, int lengthsPos, int count) {
+        if (!configured) {
+            throw new IllegalStateException("Bus is not configured yet.");
+        }
+        if (address <= 0 || address > I2C_MAX_ADDRESSES) {
+            throw new RuntimeException(
+                    "I2C Device 0x" + Integer.toHexString(address) + " is outside of the possible I2C address range.");
+        }
+
+        int sent = 0;
+        while (sent < count) {
+            //pack as many messages as the kernel will take into one I2C_RDWR call
+            int msgCount = 0;
+            int bufferPos = 0;
+            while (sent + msgCount < count && msgCount < MAX_TRANSFER_MSGS) {
+                int len = lengths[lengthsPos + sent + msgCount];
+                assert (len >= 0 && len <= MAX_TRANSFER_BYTES);
+                if (bufferPos + len > MAX_TRANSFER_BYTES) {
+                    break;
+                }
+                writeBuffer.put(bufferPos, data, dataPos, len);
+                populateMessage(msgCount++, address, 0, len, writeBuffer, bufferPos);
+                bufferPos += len;
+                dataPos += len;
+            }
+            int done = transferMessages(msgCount);
+            if (done > 0) {
+                sent += Math.min(done, msgCount);
+            }
+            if (done != msgCount) {
+                break; //only the messages before this point went out, the caller resumes from there
+            }
+        }
+        return sent;
+    }
+}
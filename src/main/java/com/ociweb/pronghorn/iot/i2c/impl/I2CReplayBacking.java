@@ -0,0 +1,213 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.pronghorn.iot.i2c.I2CBacking;
+
+/**
+ * Serves the responses recorded by {@link I2CCaptureBacking} so a bus session from the field
+ * can be run again through the stages on any machine.
+ *
+ * Each address is replayed in the order it was captured, reads get the next recorded read for
+ * their address and writes consume the next recorded write. With original timing a record is
+ * not served before its captured offset from the first record, otherwise everything is served
+ * as fast as it is asked for. Once the log is used up reads fail as a missing device would.
+ */
+public class I2CReplayBacking implements I2CBacking {
+
+    private static final Logger logger = LoggerFactory.getLogger(I2CReplayBacking.class);
+
+    private static final int MAX_ADDRESS = 127;
+    private static final long SPIN_LIMIT_NS = 100_000; //closer than this to the due time we spin instead of park
+
+    private final Path file;
+    private final boolean originalTiming;
+
+    private MappedByteBuffer log;
+    private long captureStartMillis;
+    private long firstRecordNS;
+    private long replayStartNS = -1;
+
+    private final int[] readCursor = new int[MAX_ADDRESS + 1];
+    private final int[] writeCursor = new int[MAX_ADDRESS + 1];
+
+    private int recordLength;
+    private boolean recordOk;
+    private long mismatchedWrites;
+    private boolean reportedEnd;
+
+    public I2CReplayBacking(Path file, boolean originalTiming) {
+        this.file = file;
+        this.originalTiming = originalTiming;
+    }
+
+    @Override
+    public I2CReplayBacking configure(byte bus) {
+        if (null != log) {
+            throw new IllegalStateException("Bus is already configured.");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Capture file " + file + " is too large to replay");
+            }
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open capture file " + file, e);
+        }
+        log.order(ByteOrder.LITTLE_ENDIAN);
+        if (log.limit() < I2CCaptureBacking.HEADER_SIZE || I2CCaptureBacking.MAGIC != log.getInt(0)) {
+            throw new RuntimeException(file + " is not an I2C capture");
+        }
+        if (I2CCaptureBacking.VERSION != log.getShort(4)) {
+            throw new RuntimeException(file + " was captured with unsupported version " + log.getShort(4));
+        }
+        if (bus != log.get(6)) {
+            logger.info("replaying capture of bus {} as bus {}", log.get(6), bus);
+        }
+        captureStartMillis = log.getLong(8);
+        firstRecordNS = isRecord(I2CCaptureBacking.HEADER_SIZE) ? log.getLong(I2CCaptureBacking.HEADER_SIZE) : 0;
+
+        Arrays.fill(readCursor, I2CCaptureBacking.HEADER_SIZE);
+        Arrays.fill(writeCursor, I2CCaptureBacking.HEADER_SIZE);
+        return this;
+    }
+
+    /**
+     * @return wall clock time in millis when the replayed session was captured.
+     */
+    public long getCaptureStartMillis() {
+        return captureStartMillis;
+    }
+
+    /**
+     * @return count of writes which did not send the bytes found in the capture.
+     */
+    public long getMismatchedWrites() {
+        return mismatchedWrites;
+    }
+
+    private boolean isRecord(int pos) {
+        //a capture which was not closed still holds its zero filled tail
+        return pos + I2CCaptureBacking.RECORD_HEADER_SIZE <= log.limit() && 0 != log.getLong(pos);
+    }
+
+    private static int payloadLength(MappedByteBuffer log, int pos) {
+        return 0xFFFF & log.getShort(pos + 11);
+    }
+
+    /**
+     * Finds the next record for this address and direction, waits for its time when replaying at
+     * original timing and moves the cursor past it.
+     *
+     * @return position of the payload or -1 if the capture has no more records for this address.
+     */
+    private int next(int[] cursors, byte direction, byte address) {
+        if (null == log) {
+            throw new IllegalStateException("Bus is not configured yet.");
+        }
+        int pos = cursors[address];
+        while (isRecord(pos)) {
+            int length = payloadLength(log, pos);
+            if (direction == log.get(pos + 8) && address == log.get(pos + 9)) {
+                recordOk = 0 != log.get(pos + 10);
+                recordLength = length;
+                cursors[address] = pos + I2CCaptureBacking.RECORD_HEADER_SIZE + length;
+                if (originalTiming) {
+                    waitUntil(log.getLong(pos) - firstRecordNS);
+                }
+                return pos + I2CCaptureBacking.RECORD_HEADER_SIZE;
+            }
+            pos += I2CCaptureBacking.RECORD_HEADER_SIZE + length;
+        }
+        cursors[address] = pos;
+        if (!reportedEnd) {
+            reportedEnd = true;
+            logger.info("replay of {} has ended", file);
+        }
+        return -1;
+    }
+
+    private void waitUntil(long offsetNS) {
+        if (replayStartNS < 0) {
+            replayStartNS = System.nanoTime() - offsetNS;
+        }
+        long remaining;
+        while ((remaining = replayStartNS + offsetNS - System.nanoTime()) > 0) {
+            if (remaining > SPIN_LIMIT_NS) {
+                LockSupport.parkNanos(remaining - SPIN_LIMIT_NS);
+            }
+        }
+    }
+
+    private boolean serveRead(byte address, byte[] target, int pos, int mask, int length) {
+        int payload = next(readCursor, I2CCaptureBacking.DIR_READ, address);
+        if (payload < 0 || recordLength < length) {
+            target[mask & pos] = -2; //did not read so flag this as an error
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            target[mask & (pos + i)] = log.get(payload + i);
+        }
+        return recordOk;
+    }
+
+    private boolean consumeWrite(byte address, byte[] data, int dataPos, int length) {
+        int payload = next(writeCursor, I2CCaptureBacking.DIR_WRITE, address);
+        if (payload < 0) {
+            return true; //nothing left to compare with, accept it as the device would
+        }
+        boolean same = recordLength == length;
+        for (int i = 0; same && i < length; i++) {
+            same = data[dataPos + i] == log.get(payload + i);
+        }
+        if (!same) {
+            mismatchedWrites++;
+        }
+        return recordOk;
+    }
+
+    @Override
+    public byte[] read(byte address, byte[] target, int bufferSize) {
+        serveRead(address, target, 0, Integer.MAX_VALUE, bufferSize);
+        return target;
+    }
+
+    @Override
+    public boolean readInto(byte address, byte[] target, int pos, int mask, int length) {
+        return serveRead(address, target, pos, mask, length);
+    }
+
+    @Override
+    public boolean write(byte address, byte[] message, int length) {
+        return consumeWrite(address, message, 0, length);
+    }
+
+    @Override
+    public boolean writeRead(byte address, byte[] message, int length, byte[] target, int pos, int mask, int readLength) {
+        if (length > 0) {
+            consumeWrite(address, message, 0, length);
+        }
+        return serveRead(address, target, pos, mask, readLength);
+    }
+
+    @Override
+    public int transfer(byte address, byte[] data, int dataPos, int[] lengths, int lengthsPos, int count) {
+        int sent = 0;
+        while (sent < count && consumeWrite(address, data, dataPos, lengths[lengthsPos + sent])) {
+            dataPos += lengths[lengthsPos + sent];
+            sent++;
+        }
+        return sent;
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.ociweb.pronghorn.iot.i2c.impl;
 
 import jnr.ffi.LibraryLoader;
+import jnr.ffi.Pointer;
+import jnr.ffi.types.off_t;
+import jnr.ffi.types.size_t;
 
 /**
  * JNI library wrapper for IOCTL operations on a UNIX system
@@ -14,14 +17,33 @@ public interface UnixIoctlLib {
     //I2C constants.
     int I2C_SLAVE = 0x0703;
     int I2C_SLAVE_FORCE = 0x0706;
+    int I2C_RDWR = 0x0707;     //combined transactions, struct i2c_rdwr_ioctl_data
+    int I2C_M_RD = 0x0001;     //i2c_msg flag, read data from slave to master
 
     //Filesystem constants.
+    int O_RDONLY = 00000000;
     int O_RDWR = 00000002;
+    int SEEK_SET = 0;
+
+    //GPIO character device v2 constants, see linux/gpio.h
+    int GPIO_V2_GET_LINE_IOCTL = 0xC250B407;        //_IOWR(0xB4, 0x07, struct gpio_v2_line_request)
+    int GPIO_V2_LINE_GET_VALUES_IOCTL = 0xC010B40E; //_IOWR(0xB4, 0x0E, struct gpio_v2_line_values)
+    int GPIO_V2_LINE_SET_VALUES_IOCTL = 0xC010B40F; //_IOWR(0xB4, 0x0F, struct gpio_v2_line_values)
+
+    //poll() constants, struct pollfd {int fd; short events; short revents;}
+    short POLLIN = 0x0001;
+    short POLLPRI = 0x0002;
+    short POLLERR = 0x0008;
 
     //Native Methods///////////////////////////////////////////////////////////
     int ioctl(int fd, int cmd, long address);
+    int ioctl(int fd, int cmd, Pointer data);
     int open(String path, int flags);
     int close(int fd);
     int read(int fd, byte[] buffer, int count);
+    int read(int fd, Pointer buffer, int count);
     int write(int fd, byte[] buffer, int count);
+    @off_t long lseek(int fd, @off_t long offset, int whence); //off_t is 32 bits on ARM
+    int poll(Pointer fds, int nfds, int timeout);
+    int sched_setaffinity(int pid, @size_t long cpusetsize, byte[] mask); //pid 0 is the calling thread
 }
@@ -1,5 +1,7 @@
 package com.ociweb.pronghorn.iot.schema;
 
+import java.nio.ByteBuffer;
+
 import com.ociweb.pronghorn.pipe.FieldReferenceOffsetManager;
 import com.ociweb.pronghorn.pipe.MessageSchema;
 import com.ociweb.pronghorn.pipe.Pipe;
@@ -8,11 +10,11 @@ import com.ociweb.pronghorn.pipe.PipeWriter;
 public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
 
     public final static FieldReferenceOffsetManager FROM = new FieldReferenceOffsetManager(
-            new int[]{0xc0400005,0x80000000,0x90000000,0x80000001,0x90000001,0xc0200005,0xc0400005,0x80000002,0x90000000,0x80000003,0x90000002,0xc0200005,0xc0400007,0x80000004,0x90000000,0x88000005,0x88000006,0x80000007,0x90000003,0xc0200007},
+            new int[]{0xc0400007,0x80000000,0x90000000,0x80000001,0x90000001,0x90000002,0x90000003,0xc0200007,0xc0400007,0x80000002,0x90000000,0x80000003,0x90000004,0x90000002,0x90000003,0xc0200007,0xc0400009,0x80000004,0x90000000,0x88000005,0x88000006,0x88000007,0x90000005,0x90000002,0x90000003,0xc0200009,0xc0400007,0x90000000,0x90000006,0x90000007,0x90000008,0x90000002,0x90000003,0xc0200007,0xc0400008,0x80000008,0x90000000,0x90000009,0x80000009,0xb8000000,0x90000002,0x90000003,0xc0200008},
             (short)0,
-            new String[]{"DigitalSample","Connector","Time","Value","PrevDuration",null,"AnalogSample","Connector","Time","Value","PrevDuration",null,"Encoder","Connector","Time","Value","Delta","Speed","PrevDuration",null},
-            new long[]{20, 21, 11, 22, 25, 0, 30, 31, 11, 32, 35, 0, 70, 71, 11, 72, 73, 74, 75, 0},
-            new String[]{"global",null,null,null,null,null,"global",null,null,null,null,null,"global",null,null,null,null,null,null,null},
+            new String[]{"DigitalSample","Connector","Time","Value","PrevDuration","CaptureNS","ReadDurationNS",null,"AnalogSample","Connector","Time","Value","PrevDuration","CaptureNS","ReadDurationNS",null,"Encoder","Connector","Time","Value","Delta","Speed","PrevDuration","CaptureNS","ReadDurationNS",null,"DigitalBank","Time","Ports","Values","Changed","CaptureNS","ReadDurationNS",null,"AnalogBlock","Connector","Time","IntervalNS","Count","Samples","CaptureNS","ReadDurationNS",null},
+            new long[]{20, 21, 11, 22, 25, 12, 13, 0, 30, 31, 11, 32, 35, 12, 13, 0, 70, 71, 11, 72, 73, 74, 75, 12, 13, 0, 80, 11, 81, 82, 83, 12, 13, 0, 90, 91, 11, 92, 93, 94, 12, 13, 0},
+            new String[]{"global",null,null,null,null,null,null,null,"global",null,null,null,null,null,null,null,"global",null,null,null,null,null,null,null,null,null,"global",null,null,null,null,null,null,null,"global",null,null,null,null,null,null,null,null},
             "GroveResponse.xml",
             new long[]{2, 2, 0},
             new int[]{2, 2, 0});
@@ -30,18 +32,39 @@ public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
     public static final int MSG_DIGITALSAMPLE_20_FIELD_TIME_11 = 0x00800002;
     public static final int MSG_DIGITALSAMPLE_20_FIELD_VALUE_22 = 0x00000004;
     public static final int MSG_DIGITALSAMPLE_20_FIELD_PREVDURATION_25 = 0x00800005;
-    public static final int MSG_ANALOGSAMPLE_30 = 0x00000006;
+    public static final int MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12 = 0x00800007;
+    public static final int MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13 = 0x00800009;
+    public static final int MSG_ANALOGSAMPLE_30 = 0x00000008;
     public static final int MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31 = 0x00000001;
     public static final int MSG_ANALOGSAMPLE_30_FIELD_TIME_11 = 0x00800002;
     public static final int MSG_ANALOGSAMPLE_30_FIELD_VALUE_32 = 0x00000004;
     public static final int MSG_ANALOGSAMPLE_30_FIELD_PREVDURATION_35 = 0x00800005;
-    public static final int MSG_ENCODER_70 = 0x0000000c;
+    public static final int MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12 = 0x00800007;
+    public static final int MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13 = 0x00800009;
+    public static final int MSG_ENCODER_70 = 0x00000010;
     public static final int MSG_ENCODER_70_FIELD_CONNECTOR_71 = 0x00000001;
     public static final int MSG_ENCODER_70_FIELD_TIME_11 = 0x00800002;
     public static final int MSG_ENCODER_70_FIELD_VALUE_72 = 0x00400004;
     public static final int MSG_ENCODER_70_FIELD_DELTA_73 = 0x00400005;
     public static final int MSG_ENCODER_70_FIELD_SPEED_74 = 0x00000006;
     public static final int MSG_ENCODER_70_FIELD_PREVDURATION_75 = 0x00800007;
+    public static final int MSG_ENCODER_70_FIELD_CAPTURENS_12 = 0x00800009;
+    public static final int MSG_ENCODER_70_FIELD_READDURATIONNS_13 = 0x0080000b;
+    public static final int MSG_DIGITALBANK_80 = 0x0000001a;
+    public static final int MSG_DIGITALBANK_80_FIELD_TIME_11 = 0x00800001;
+    public static final int MSG_DIGITALBANK_80_FIELD_PORTS_81 = 0x00800003;
+    public static final int MSG_DIGITALBANK_80_FIELD_VALUES_82 = 0x00800005;
+    public static final int MSG_DIGITALBANK_80_FIELD_CHANGED_83 = 0x00800007;
+    public static final int MSG_DIGITALBANK_80_FIELD_CAPTURENS_12 = 0x00800009;
+    public static final int MSG_DIGITALBANK_80_FIELD_READDURATIONNS_13 = 0x0080000b;
+    public static final int MSG_ANALOGBLOCK_90 = 0x00000022;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91 = 0x00000001;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_TIME_11 = 0x00800002;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92 = 0x00800004;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_COUNT_93 = 0x00000006;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94 = 0x01c00007;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12 = 0x00800009;
+    public static final int MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13 = 0x0080000b;
 
 
     public static void consume(Pipe<GroveResponseSchema> input) {
@@ -57,6 +80,12 @@ public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
                 case MSG_ENCODER_70:
                     consumeEncoder(input);
                 break;
+                case MSG_DIGITALBANK_80:
+                    consumeDigitalBank(input);
+                break;
+                case MSG_ANALOGBLOCK_90:
+                    consumeAnalogBlock(input);
+                break;
                 case -1:
                    //requestShutdown();
                 break;
@@ -70,12 +99,16 @@ public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
         long fieldTime = PipeReader.readLong(input,MSG_DIGITALSAMPLE_20_FIELD_TIME_11);
         int fieldValue = PipeReader.readInt(input,MSG_DIGITALSAMPLE_20_FIELD_VALUE_22);
         long fieldPrevDuration = PipeReader.readLong(input,MSG_DIGITALSAMPLE_20_FIELD_PREVDURATION_25);
+        long fieldCaptureNS = PipeReader.readLong(input,MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12);
+        long fieldReadDurationNS = PipeReader.readLong(input,MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13);
     }
     public static void consumeAnalogSample(Pipe<GroveResponseSchema> input) {
         int fieldConnector = PipeReader.readInt(input,MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31);
         long fieldTime = PipeReader.readLong(input,MSG_ANALOGSAMPLE_30_FIELD_TIME_11);
         int fieldValue = PipeReader.readInt(input,MSG_ANALOGSAMPLE_30_FIELD_VALUE_32);
         long fieldPrevDuration = PipeReader.readLong(input,MSG_ANALOGSAMPLE_30_FIELD_PREVDURATION_35);
+        long fieldCaptureNS = PipeReader.readLong(input,MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12);
+        long fieldReadDurationNS = PipeReader.readLong(input,MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13);
     }
     public static void consumeEncoder(Pipe<GroveResponseSchema> input) {
         int fieldConnector = PipeReader.readInt(input,MSG_ENCODER_70_FIELD_CONNECTOR_71);
@@ -84,33 +117,56 @@ public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
         int fieldDelta = PipeReader.readInt(input,MSG_ENCODER_70_FIELD_DELTA_73);
         int fieldSpeed = PipeReader.readInt(input,MSG_ENCODER_70_FIELD_SPEED_74);
         long fieldPrevDuration = PipeReader.readLong(input,MSG_ENCODER_70_FIELD_PREVDURATION_75);
+        long fieldCaptureNS = PipeReader.readLong(input,MSG_ENCODER_70_FIELD_CAPTURENS_12);
+        long fieldReadDurationNS = PipeReader.readLong(input,MSG_ENCODER_70_FIELD_READDURATIONNS_13);
+    }
+    public static void consumeDigitalBank(Pipe<GroveResponseSchema> input) {
+        long fieldTime = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_TIME_11);
+        long fieldPorts = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_PORTS_81);
+        long fieldValues = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_VALUES_82);
+        long fieldChanged = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_CHANGED_83);
+        long fieldCaptureNS = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_CAPTURENS_12);
+        long fieldReadDurationNS = PipeReader.readLong(input,MSG_DIGITALBANK_80_FIELD_READDURATIONNS_13);
+    }
+    public static void consumeAnalogBlock(Pipe<GroveResponseSchema> input) {
+        int fieldConnector = PipeReader.readInt(input,MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91);
+        long fieldTime = PipeReader.readLong(input,MSG_ANALOGBLOCK_90_FIELD_TIME_11);
+        long fieldIntervalNS = PipeReader.readLong(input,MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92);
+        int fieldCount = PipeReader.readInt(input,MSG_ANALOGBLOCK_90_FIELD_COUNT_93);
+        ByteBuffer fieldSamples = PipeReader.readBytes(input,MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94,ByteBuffer.allocate(PipeReader.readBytesLength(input,MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94)));
+        long fieldCaptureNS = PipeReader.readLong(input,MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12);
+        long fieldReadDurationNS = PipeReader.readLong(input,MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13);
     }
 
-    public static boolean publishDigitalSample(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, long fieldPrevDuration) {
+    public static boolean publishDigitalSample(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, long fieldPrevDuration, long fieldCaptureNS, long fieldReadDurationNS) {
         boolean result = false;
         if (PipeWriter.tryWriteFragment(output, MSG_DIGITALSAMPLE_20)) {
             PipeWriter.writeInt(output,MSG_DIGITALSAMPLE_20_FIELD_CONNECTOR_21, fieldConnector);
             PipeWriter.writeLong(output,MSG_DIGITALSAMPLE_20_FIELD_TIME_11, fieldTime);
             PipeWriter.writeInt(output,MSG_DIGITALSAMPLE_20_FIELD_VALUE_22, fieldValue);
             PipeWriter.writeLong(output,MSG_DIGITALSAMPLE_20_FIELD_PREVDURATION_25, fieldPrevDuration);
+            PipeWriter.writeLong(output,MSG_DIGITALSAMPLE_20_FIELD_CAPTURENS_12, fieldCaptureNS);
+            PipeWriter.writeLong(output,MSG_DIGITALSAMPLE_20_FIELD_READDURATIONNS_13, fieldReadDurationNS);
             PipeWriter.publishWrites(output);
             result = true;
         }
         return result;
     }
-    public static boolean publishAnalogSample(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, long fieldPrevDuration) {
+    public static boolean publishAnalogSample(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, long fieldPrevDuration, long fieldCaptureNS, long fieldReadDurationNS) {
         boolean result = false;
         if (PipeWriter.tryWriteFragment(output, MSG_ANALOGSAMPLE_30)) {
             PipeWriter.writeInt(output,MSG_ANALOGSAMPLE_30_FIELD_CONNECTOR_31, fieldConnector);
             PipeWriter.writeLong(output,MSG_ANALOGSAMPLE_30_FIELD_TIME_11, fieldTime);
             PipeWriter.writeInt(output,MSG_ANALOGSAMPLE_30_FIELD_VALUE_32, fieldValue);
             PipeWriter.writeLong(output,MSG_ANALOGSAMPLE_30_FIELD_PREVDURATION_35, fieldPrevDuration);
+            PipeWriter.writeLong(output,MSG_ANALOGSAMPLE_30_FIELD_CAPTURENS_12, fieldCaptureNS);
+            PipeWriter.writeLong(output,MSG_ANALOGSAMPLE_30_FIELD_READDURATIONNS_13, fieldReadDurationNS);
             PipeWriter.publishWrites(output);
             result = true;
         }
         return result;
     }
-    public static boolean publishEncoder(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, int fieldDelta, int fieldSpeed, long fieldPrevDuration) {
+    public static boolean publishEncoder(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, int fieldValue, int fieldDelta, int fieldSpeed, long fieldPrevDuration, long fieldCaptureNS, long fieldReadDurationNS) {
         boolean result = false;
         if (PipeWriter.tryWriteFragment(output, MSG_ENCODER_70)) {
             PipeWriter.writeInt(output,MSG_ENCODER_70_FIELD_CONNECTOR_71, fieldConnector);
@@ -119,6 +175,37 @@ public class GroveResponseSchema extends MessageSchema<GroveResponseSchema> {
             PipeWriter.writeInt(output,MSG_ENCODER_70_FIELD_DELTA_73, fieldDelta);
             PipeWriter.writeInt(output,MSG_ENCODER_70_FIELD_SPEED_74, fieldSpeed);
             PipeWriter.writeLong(output,MSG_ENCODER_70_FIELD_PREVDURATION_75, fieldPrevDuration);
+            PipeWriter.writeLong(output,MSG_ENCODER_70_FIELD_CAPTURENS_12, fieldCaptureNS);
+            PipeWriter.writeLong(output,MSG_ENCODER_70_FIELD_READDURATIONNS_13, fieldReadDurationNS);
+            PipeWriter.publishWrites(output);
+            result = true;
+        }
+        return result;
+    }
+    public static boolean publishDigitalBank(Pipe<GroveResponseSchema> output, long fieldTime, long fieldPorts, long fieldValues, long fieldChanged, long fieldCaptureNS, long fieldReadDurationNS) {
+        boolean result = false;
+        if (PipeWriter.tryWriteFragment(output, MSG_DIGITALBANK_80)) {
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_TIME_11, fieldTime);
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_PORTS_81, fieldPorts);
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_VALUES_82, fieldValues);
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_CHANGED_83, fieldChanged);
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_CAPTURENS_12, fieldCaptureNS);
+            PipeWriter.writeLong(output,MSG_DIGITALBANK_80_FIELD_READDURATIONNS_13, fieldReadDurationNS);
+            PipeWriter.publishWrites(output);
+            result = true;
+        }
+        return result;
+    }
+    public static boolean publishAnalogBlock(Pipe<GroveResponseSchema> output, int fieldConnector, long fieldTime, long fieldIntervalNS, int fieldCount, byte[] fieldSamplesBacking, int fieldSamplesPosition, int fieldSamplesLength, long fieldCaptureNS, long fieldReadDurationNS) {
+        boolean result = false;
+        if (PipeWriter.tryWriteFragment(output, MSG_ANALOGBLOCK_90)) {
+            PipeWriter.writeInt(output,MSG_ANALOGBLOCK_90_FIELD_CONNECTOR_91, fieldConnector);
+            PipeWriter.writeLong(output,MSG_ANALOGBLOCK_90_FIELD_TIME_11, fieldTime);
+            PipeWriter.writeLong(output,MSG_ANALOGBLOCK_90_FIELD_INTERVALNS_92, fieldIntervalNS);
+            PipeWriter.writeInt(output,MSG_ANALOGBLOCK_90_FIELD_COUNT_93, fieldCount);
+            PipeWriter.writeBytes(output,MSG_ANALOGBLOCK_90_FIELD_SAMPLES_94, fieldSamplesBacking, fieldSamplesPosition, fieldSamplesLength);
+            PipeWriter.writeLong(output,MSG_ANALOGBLOCK_90_FIELD_CAPTURENS_12, fieldCaptureNS);
+            PipeWriter.writeLong(output,MSG_ANALOGBLOCK_90_FIELD_READDURATIONNS_13, fieldReadDurationNS);
             PipeWriter.publishWrites(output);
             result = true;
         }
@@ -0,0 +1,83 @@
+package com.ociweb.iot.hardware;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ociweb.iot.grove.i2c.I2CTwig;
+import com.ociweb.pronghorn.util.math.PMath;
+import com.ociweb.pronghorn.util.math.ScriptedSchedule;
+
+public class HardwareImplTest {
+
+	private static final long MS_TO_NS = 1_000_000;
+
+	@Test
+	public void groupByAddressMakesSameAddressSlotsAdjacent() {
+		long[] periods = new long[]{100*MS_TO_NS, 100*MS_TO_NS, 200*MS_TO_NS, 100*MS_TO_NS, 200*MS_TO_NS, 50*MS_TO_NS};
+		byte[] addresses = new byte[]{0x10, 0x20, 0x10, 0x30, 0x20, 0x10};
+		I2CConnection[] connections = new I2CConnection[addresses.length];
+		for (int i = 0; i < connections.length; i++) {
+			connections[i] = new I2CConnection(I2CTwig.I2C, addresses[i], null, 1, i, null, (int)(periods[i]/MS_TO_NS));
+		}
+
+		int[] original = PMath.buildScriptedSchedule(periods).script.clone();
+		int[] grouped = HardwareImpl.groupByAddress(PMath.buildScriptedSchedule(periods), connections).script;
+
+		assertEquals(original.length, grouped.length);
+		int start = 0;
+		while (start < original.length) {
+			int end = start;
+			while (end < original.length && -1 != original[end]) {
+				end++;
+			}
+			//block ends in the same slot so the schedule timing is untouched
+			if (end < original.length) {
+				assertEquals(-1, grouped[end]);
+			}
+			int[] before = Arrays.copyOfRange(original, start, end);
+			int[] after = Arrays.copyOfRange(grouped, start, end);
+
+			//same members in every block so each connection keeps its rate
+			int[] sortedBefore = before.clone();
+			int[] sortedAfter = after.clone();
+			Arrays.sort(sortedBefore);
+			Arrays.sort(sortedAfter);
+			assertArrayEquals(sortedBefore, sortedAfter);
+
+			//addresses in order of first appearance, each with its connections in their original order
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < before.length; i++) {
+				if (!expected.contains(before[i])) {
+					for (int k = i; k < before.length; k++) {
+						if (addresses[before[k]] == addresses[before[i]]) {
+							expected.add(before[k]);
+						}
+					}
+				}
+			}
+			for (int i = 0; i < after.length; i++) {
+				assertEquals(expected.get(i).intValue(), after[i]);
+			}
+
+			//one run of slots per address, the bus moves to each device once per block
+			int runs = after.length>0 ? 1 : 0;
+			List<Byte> distinct = new ArrayList<Byte>();
+			for (int i = 0; i < after.length; i++) {
+				if (i>0 && addresses[after[i]] != addresses[after[i-1]]) {
+					runs++;
+				}
+				if (!distinct.contains(addresses[after[i]])) {
+					distinct.add(addresses[after[i]]);
+				}
+			}
+			assertEquals(distinct.size(), runs);
+			start = end+1;
+		}
+	}
+
+}
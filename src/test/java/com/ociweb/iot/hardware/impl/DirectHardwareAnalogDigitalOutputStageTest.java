@@ -0,0 +1,81 @@
+package com.ociweb.iot.hardware.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ociweb.gl.impl.schema.TrafficAckSchema;
+import com.ociweb.gl.impl.schema.TrafficReleaseSchema;
+import com.ociweb.iot.hardware.impl.test.TestHardware;
+import com.ociweb.iot.maker.Port;
+import com.ociweb.pronghorn.iot.schema.GroveRequestSchema;
+import com.ociweb.pronghorn.pipe.Pipe;
+import com.ociweb.pronghorn.pipe.PipeReader;
+import com.ociweb.pronghorn.pipe.PipeWriter;
+import com.ociweb.pronghorn.stage.scheduling.GraphManager;
+
+public class DirectHardwareAnalogDigitalOutputStageTest {
+
+	private static final int CONNECTOR = 4;
+	private static final long BLOCK_NS = 20_000_000;
+
+	@Test
+	public void setBlockSetWritesBothAroundTheBlock() {
+		GraphManager gm = new GraphManager();
+		final List<String> writes = new ArrayList<String>();
+		final List<Long> writeTimes = new ArrayList<Long>();
+		TestHardware hardware = new TestHardware(gm, new String[0]) {
+			@Override
+			public void write(Port port, int value) {
+				super.write(port, value);
+				writes.add(port.port+"="+value);
+				writeTimes.add(System.nanoTime());
+			}
+		};
+
+		Pipe<GroveRequestSchema> requestPipe = GroveRequestSchema.instance.newPipe(16, 0);
+		Pipe<TrafficReleaseSchema> goPipe = TrafficReleaseSchema.instance.newPipe(16, 0);
+		Pipe<TrafficAckSchema> ackPipe = TrafficAckSchema.instance.newPipe(16, 0);
+		requestPipe.initBuffers();
+		goPipe.initBuffers();
+		ackPipe.initBuffers();
+
+		DirectHardwareAnalogDigitalOutputStage stage = new DirectHardwareAnalogDigitalOutputStage(gm,
+				new Pipe[]{requestPipe}, new Pipe[]{goPipe}, new Pipe[]{ackPipe}, hardware);
+		stage.startup();
+
+		GroveRequestSchema.publishDigitalSet(requestPipe, CONNECTOR, 1);
+		GroveRequestSchema.publishBlockConnection(requestPipe, CONNECTOR, BLOCK_NS);
+		GroveRequestSchema.publishDigitalSet(requestPipe, CONNECTOR, 0);
+		PipeWriter.presumeWriteFragment(goPipe, TrafficReleaseSchema.MSG_RELEASE_20);
+		PipeWriter.writeInt(goPipe, TrafficReleaseSchema.MSG_RELEASE_20_FIELD_COUNT_22, 3);
+		PipeWriter.publishWrites(goPipe);
+
+		//the first set is written before the block starts, the second is held by it
+		stage.run();
+		assertEquals(1, writes.size());
+		assertEquals(CONNECTOR+"=1", writes.get(0));
+
+		long limit = System.nanoTime()+1_000_000_000;
+		boolean acked = false;
+		while (!acked && System.nanoTime()<limit) {
+			stage.run();
+			if (PipeReader.tryReadFragment(ackPipe)) {
+				PipeReader.releaseReadLock(ackPipe);
+				acked = true;
+				//the ack only goes out once every set of the release is on the pins
+				assertEquals(2, writes.size());
+			}
+		}
+		assertTrue(acked);
+		assertEquals(CONNECTOR+"=0", writes.get(1));
+		//the block may be kept on the millisecond clock
+		assertTrue(writeTimes.get(1)-writeTimes.get(0) >= BLOCK_NS-1_000_000);
+
+		stage.shutdown();
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.ociweb.iot.hardware.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OutputCacheTest {
+
+	@Test
+	public void repeatsOfTheWrittenValueAreElided() {
+		OutputCache outputs = new OutputCache(9);
+
+		assertTrue(outputs.isChange(3, 1));
+		assertTrue(outputs.isChange(5, 0));
+		assertEquals(1, outputs.value(3));
+
+		//same values again, nothing reaches the hardware
+		assertFalse(outputs.isChange(3, 1));
+		assertFalse(outputs.isChange(5, 0));
+
+		assertTrue(outputs.isChange(3, 0));
+		assertEquals(0, outputs.value(3));
+
+		assertEquals(5, outputs.requested());
+		assertEquals(2, outputs.elided());
+	}
+
+	@Test
+	public void firstSetOfAPortIsAlwaysWritten() {
+		OutputCache outputs = new OutputCache(9);
+		//the port may hold anything before it is written, even the default of 0
+		assertTrue(outputs.isChange(7, 0));
+		assertEquals(0, outputs.elided());
+		assertFalse(outputs.isChange(7, 0));
+		assertEquals(1, outputs.elided());
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.ociweb.iot.hardware.impl.test.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class I2CDeviceEmulatorTest {
+
+	@Test
+	public void adxl345FIFODrains() {
+		ADXL345Emulator adxl = new ADXL345Emulator();
+		long now = 0;
+		adxl.write(new byte[]{0x2C, 0x0D}, 2, now); //800Hz
+		adxl.write(new byte[]{0x38, (byte)0x80}, 2, now); //stream mode
+		
+		byte[] data = new byte[6];
+		adxl.write(new byte[]{0x39}, 1, now);
+		adxl.read(data, 0, Integer.MAX_VALUE, 1, now); //sampling starts with the first read
+		now += 10_000_000; //at least 8 samples at 800Hz
+		adxl.write(new byte[]{0x39}, 1, now);
+		adxl.read(data, 0, Integer.MAX_VALUE, 1, now);
+		int queued = data[0];
+		assertTrue(queued >= 8);
+		
+		for (int i = 0; i < queued; i++) {
+			adxl.write(new byte[]{0x32}, 1, now);
+			adxl.read(data, 0, Integer.MAX_VALUE, 6, now);
+		}
+		adxl.write(new byte[]{0x39}, 1, now);
+		adxl.read(data, 0, Integer.MAX_VALUE, 1, now);
+		assertEquals(0, data[0]);
+	}
+	
+	@Test
+	public void lsm9ds1FIFODrainsInTwoPartsPerSlot() {
+		LSM9DS1Emulator imu = new LSM9DS1Emulator();
+		long now = 0;
+		imu.write(new byte[]{0x10, (byte)0xC0}, 2, now); //gyro and accel at 952Hz
+		imu.write(new byte[]{0x23, 0x02}, 2, now); //FIFO_EN
+		imu.write(new byte[]{0x2E, (byte)0xC0}, 2, now); //continuous mode
+		
+		byte[] data = new byte[6];
+		imu.write(new byte[]{0x2F}, 1, now);
+		imu.read(data, 0, Integer.MAX_VALUE, 1, now); //sampling starts with the first read
+		now += 10_000_000; //at least 9 samples at 952Hz
+		imu.write(new byte[]{0x2F}, 1, now);
+		imu.read(data, 0, Integer.MAX_VALUE, 1, now);
+		int queued = data[0]&0x3F;
+		assertTrue(queued >= 9);
+		
+		//gyro then accelerometer, the slot is only popped by the accelerometer read
+		for (int i = 0; i < queued; i++) {
+			imu.write(new byte[]{0x18}, 1, now);
+			imu.read(data, 0, Integer.MAX_VALUE, 6, now);
+			imu.write(new byte[]{0x2F}, 1, now);
+			imu.read(data, 0, Integer.MAX_VALUE, 1, now);
+			assertEquals(queued-i, data[0]&0x3F);
+			imu.write(new byte[]{0x28}, 1, now);
+			imu.read(data, 0, Integer.MAX_VALUE, 6, now);
+		}
+		imu.write(new byte[]{0x2F}, 1, now);
+		imu.read(data, 0, Integer.MAX_VALUE, 1, now);
+		assertEquals(0, data[0]&0x3F);
+	}
+	
+	@Test
+	public void ds1307KeepsTimeWritten() {
+		DS1307Emulator rtc = new DS1307Emulator();
+		//2017-03-04 05:06:07
+		rtc.write(new byte[]{0x00, 0x07, 0x06, 0x05, 0x06, 0x04, 0x03, 0x17}, 8, 0);
+		
+		byte[] data = new byte[7];
+		rtc.write(new byte[]{0x00}, 1, 3_000_000_000L);
+		rtc.read(data, 0, Integer.MAX_VALUE, 7, 3_000_000_000L);
+		assertEquals(0x10, data[0]);
+		assertEquals(0x06, data[1]);
+		assertEquals(0x17, data[6]);
+	}
+	
+	@Test
+	public void grovePiAnswersAnalogRead() {
+		GrovePiEmulator grove = new GrovePiEmulator();
+		grove.setAnalogInput(0, 700);
+		grove.write(new byte[]{1, 3, 0, 0, 0}, 5, 0);
+		
+		byte[] data = new byte[3];
+		grove.read(data, 0, Integer.MAX_VALUE, 3, 0);
+		assertTrue(700 == (((data[1]&0xFF)<<8) | (data[2]&0xFF)));
+	}
+	
+}
@@ -0,0 +1,37 @@
+package com.ociweb.pronghorn.iot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AnalogSampleBlockTest {
+
+	@Test
+	public void samplesSurviveWrapOfTheBlobRing() {
+		byte[] blob = new byte[32];
+		int mask = blob.length-1;
+		int[] samples = {0, 1023, -1, 0x12345678, 512};
+
+		//starts near the end so the block wraps
+		int pos = 26;
+		assertEquals(20, AnalogSampleBlock.write(samples, samples.length, blob, pos, mask));
+
+		int[] target = new int[8];
+		assertEquals(samples.length, AnalogSampleBlock.read(blob, pos, mask, 20, target));
+		for (int i = 0; i < samples.length; i++) {
+			assertEquals(samples[i], target[i]);
+		}
+	}
+
+	@Test
+	public void readStopsAtTargetLength() {
+		byte[] blob = new byte[64];
+		int[] samples = {7, 8, 9, 10};
+		int length = AnalogSampleBlock.write(samples, samples.length, blob, 0, 63);
+
+		int[] target = new int[2];
+		assertEquals(2, AnalogSampleBlock.read(blob, 0, 63, length, target));
+		assertEquals(8, target[1]);
+	}
+
+}
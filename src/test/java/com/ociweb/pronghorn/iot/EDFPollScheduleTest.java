@@ -0,0 +1,46 @@
+package com.ociweb.pronghorn.iot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EDFPollScheduleTest {
+
+	private static final long MS = 1_000_000;
+
+	@Test
+	public void oddPeriodsRunInDeadlineOrder() {
+		EDFPollSchedule edf = new EDFPollSchedule(new long[]{7*MS, 10*MS}, new int[]{4, 9});
+		edf.start(0);
+
+		//7ms and 10ms need a 1ms script of 70 blocks, here it is just the due times
+		long[] expectedDue = {0, 0, 7, 10, 14, 20, 21, 28, 30, 35};
+		int[] expectedId   = {4, 9, 4,  9,  4,  9,  4,  4,  9,  4};
+		for (int i = 0; i < expectedDue.length; i++) {
+			assertEquals(expectedDue[i]*MS, edf.nextDue());
+			assertEquals(expectedId[i], edf.nextId());
+			assertTrue(edf.sampled(edf.nextDue()));
+		}
+		assertEquals(expectedDue.length, edf.samples());
+		assertEquals(expectedDue.length, edf.jitterHistogram()[0]);
+		assertEquals(0, edf.latenessPercentile(99));
+	}
+
+	@Test
+	public void latenessIsRecordedAndOverrunsSkipped() {
+		EDFPollSchedule edf = new EDFPollSchedule(new long[]{10*MS}, new int[]{0});
+		edf.start(0);
+
+		assertTrue(edf.sampled(3000)); //3us late
+		assertEquals(0, edf.plannedTime(0));
+		assertEquals(3000, edf.actualTime(0));
+		assertEquals(1, edf.jitterHistogram()[12]); //2048 up to 4096
+
+		//25ms late, the samples due at 20 and 30 are skipped
+		assertFalse(edf.sampled(35*MS));
+		assertEquals(2, edf.overruns());
+		assertEquals(40*MS, edf.nextDue());
+		assertEquals(25*MS, edf.maxLateness());
+	}
+
+}
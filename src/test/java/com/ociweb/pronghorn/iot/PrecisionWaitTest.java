@@ -0,0 +1,63 @@
+package com.ociweb.pronghorn.iot;
+
+import static org.junit.Assert.*;
+
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+public class PrecisionWaitTest {
+
+	@Test
+	public void wakesAtDueAndRecordsTheError() {
+		PrecisionWait wait = new PrecisionWait();
+		assertTrue(wait.spinTailNS() >= wait.clockCostNS());
+
+		for (int i = 0; i < 5; i++) {
+			long due = System.nanoTime()+2_000_000;
+			assertTrue(wait.until(due));
+			assertTrue(System.nanoTime() >= due);
+		}
+		assertEquals(5, wait.waits());
+		long total = 0;
+		for (long count : wait.errorHistogram()) {
+			total += count;
+		}
+		assertEquals(5, total);
+		assertTrue(wait.spinShare() < 1);
+	}
+
+	@Test
+	public void waitsOnTheGivenClock() {
+		//a clock far ahead of System.nanoTime(), as the benchmark hardware clock runs ahead
+		long offset = 3_600_000_000_000L;
+		LongSupplier clock = () -> System.nanoTime()+offset;
+		PrecisionWait wait = new PrecisionWait(clock);
+
+		long start = System.nanoTime();
+		assertTrue(wait.until(clock.getAsLong()+2_000_000));
+		long took = System.nanoTime()-start;
+		assertTrue(took >= 2_000_000-wait.clockCostNS());
+		assertTrue(took < 1_000_000_000);
+		assertEquals(1, wait.waits());
+	}
+
+	@Test
+	public void pastDueIsNotAWait() {
+		PrecisionWait wait = new PrecisionWait();
+		assertTrue(wait.until(System.nanoTime()-1_000));
+		assertEquals(0, wait.waits());
+	}
+
+	@Test
+	public void interruptEndsTheWait() {
+		PrecisionWait wait = new PrecisionWait();
+		Thread.currentThread().interrupt();
+		try {
+			assertFalse(wait.until(System.nanoTime()+50_000_000));
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+}
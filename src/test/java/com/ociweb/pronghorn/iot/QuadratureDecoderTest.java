@@ -0,0 +1,44 @@
+package com.ociweb.pronghorn.iot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class QuadratureDecoderTest {
+
+	@Test
+	public void fullCyclesCountDetentsBothWays() {
+		QuadratureDecoder decoder = new QuadratureDecoder(1);
+		decoder.reset(0, 0b11);
+
+		int[] forward = {0b10, 0b00, 0b01, 0b11};
+		for (int i = 0; i < 3; i++) {
+			for (int s : forward) {
+				assertEquals(1, decoder.update(0, s));
+			}
+		}
+		assertEquals(3, decoder.detents(0));
+
+		//back one detent, the same state again is no step
+		int[] reverse = {0b01, 0b01, 0b00, 0b10, 0b11};
+		for (int s : reverse) {
+			decoder.update(0, s);
+		}
+		assertEquals(2, decoder.detents(0));
+		assertEquals(0, decoder.missed(0));
+	}
+
+	@Test
+	public void skippedTransitionKeepsDirection() {
+		QuadratureDecoder decoder = new QuadratureDecoder(2);
+		decoder.reset(1, 0b11);
+
+		decoder.update(1, 0b10);
+		assertEquals(2, decoder.update(1, 0b01)); //00 was never seen
+		decoder.update(1, 0b11);
+		assertEquals(1, decoder.detents(1));
+		assertEquals(1, decoder.missed(1));
+		assertEquals(0, decoder.quarterSteps(0));
+	}
+
+}
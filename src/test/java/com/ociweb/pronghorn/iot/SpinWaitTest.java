@@ -0,0 +1,47 @@
+package com.ociweb.pronghorn.iot;
+
+import static org.junit.Assert.*;
+
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+public class SpinWaitTest {
+
+	@Test
+	public void waitsUntilDueAndNotLonger() {
+		SpinWait spin = new SpinWait();
+		assertTrue(spin.clockCostNS() >= 0);
+
+		long start = System.nanoTime();
+		long due = start+200_000;
+		long late = spin.until(due);
+		long end = System.nanoTime();
+
+		assertTrue(late >= -spin.clockCostNS());
+		assertTrue(end-start >= 200_000-spin.clockCostNS());
+	}
+
+	@Test
+	public void spinsOnTheGivenClock() {
+		long offset = -3_600_000_000_000L;
+		LongSupplier clock = () -> System.nanoTime()+offset;
+		SpinWait spin = new SpinWait(clock);
+
+		long start = System.nanoTime();
+		long late = spin.until(clock.getAsLong()+200_000);
+		long took = System.nanoTime()-start;
+
+		assertTrue(late >= -spin.clockCostNS());
+		assertTrue(took >= 200_000-spin.clockCostNS());
+		assertTrue(took < 1_000_000_000);
+	}
+
+	@Test
+	public void pastDueReturnsAtOnce() {
+		SpinWait spin = new SpinWait();
+		long due = System.nanoTime()-1_000_000;
+		assertTrue(spin.until(due) >= 1_000_000);
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class I2CBusHealthTest {
+
+	private static final long MS = 1_000_000;
+
+	@Test
+	public void backoffDoublesUpToTheLimit() {
+		assertEquals(50_000, I2CBusHealth.backoffNS(0));
+		assertEquals(100_000, I2CBusHealth.backoffNS(1));
+		assertEquals(3_200_000, I2CBusHealth.backoffNS(6));
+		assertEquals(5_000_000, I2CBusHealth.backoffNS(7));
+		assertEquals(5_000_000, I2CBusHealth.backoffNS(40));
+	}
+
+	@Test
+	public void repeatedFailuresQuarantineUntilSuccess() {
+		I2CBusHealth health = new I2CBusHealth();
+		int addr = 0x04;
+
+		assertFalse(health.failure(addr, 0));
+		assertFalse(health.failure(addr, 0));
+		assertTrue(health.failure(addr, 0));
+		assertTrue(health.isQuarantined(addr, 99*MS));
+		assertFalse(health.isQuarantined(addr, 100*MS));
+
+		//the probe fails, the next quarantine starts at once and is twice as long
+		assertTrue(health.failure(addr, 100*MS));
+		assertTrue(health.isQuarantined(addr, 299*MS));
+		assertEquals(2, health.quarantines());
+		assertEquals(4, health.errors(addr));
+
+		health.success(addr, 2000);
+		assertFalse(health.isQuarantined(addr, 200*MS));
+		assertEquals(2000, health.meanLatencyNS(addr));
+		assertEquals(4, health.totalErrors());
+	}
+
+	@Test
+	public void successfulProbeEndsProbing() {
+		I2CBusHealth health = new I2CBusHealth();
+		int addr = 0x04;
+
+		health.failure(addr, 0);
+		health.failure(addr, 0);
+		assertTrue(health.failure(addr, 0));
+
+		health.success(addr, 2000);
+		//a healthy device again needs several failures in a row
+		assertFalse(health.failure(addr, 100*MS));
+		assertFalse(health.failure(addr, 100*MS));
+		assertTrue(health.failure(addr, 100*MS));
+		assertTrue(health.isQuarantined(addr, 199*MS)); //back to the shortest quarantine
+		assertFalse(health.isQuarantined(addr, 200*MS));
+	}
+
+}
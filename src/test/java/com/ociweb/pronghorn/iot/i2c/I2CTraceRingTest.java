@@ -0,0 +1,25 @@
+package com.ociweb.pronghorn.iot.i2c;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class I2CTraceRingTest {
+
+	@Test
+	public void oldestRecordsAreOverwritten() {
+		I2CTraceRing trace = new I2CTraceRing(2);
+		byte[] command = {0x2D, 0x08};
+		for (int i = 0; i < 6; i++) {
+			trace.recordCommand(100+i, 3, 0x53, command, 0, Integer.MAX_VALUE, command.length);
+		}
+		trace.record(200, 3, 0x53, I2CTraceRing.MSG_RESPONSE, 6, 1500);
+		assertEquals(7, trace.recorded());
+
+		String[] lines = trace.toString().split("\n");
+		assertEquals(4, lines.length);
+		assertEquals("103ns stage 3 addr 83 command len 2 [2d 08]", lines[0]);
+		assertEquals("200ns stage 3 addr 83 response len 6 1500ns", lines[3]);
+	}
+
+}
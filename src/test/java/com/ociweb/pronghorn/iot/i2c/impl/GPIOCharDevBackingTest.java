@@ -0,0 +1,80 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.ociweb.iot.hardware.impl.test.TestGPIOLineBacking;
+import com.ociweb.pronghorn.iot.i2c.GPIOLineBacking;
+
+public class GPIOCharDevBackingTest {
+
+	@Test
+	public void outputRequestLayout() {
+		ByteBuffer request = ByteBuffer.allocate(GPIOCharDevBacking.REQUEST_SIZE).order(ByteOrder.nativeOrder());
+		GPIOCharDevBacking.encodeRequest(request, new int[]{17, 27, 22}, "foglight", GPIOCharDevBacking.FLAG_OUTPUT, 0x5);
+
+		assertEquals(27, request.getInt(4));
+		assertEquals('f', request.get(GPIOCharDevBacking.REQUEST_CONSUMER));
+		assertEquals(GPIOCharDevBacking.FLAG_OUTPUT, request.getLong(GPIOCharDevBacking.REQUEST_FLAGS));
+		assertEquals(1, request.getInt(GPIOCharDevBacking.REQUEST_NUM_ATTRS));
+		assertEquals(GPIOCharDevBacking.ATTR_ID_OUTPUT_VALUES, request.getInt(GPIOCharDevBacking.REQUEST_ATTRS));
+		assertEquals(0x5, request.getLong(GPIOCharDevBacking.REQUEST_ATTRS+8));
+		assertEquals(0x7, request.getLong(GPIOCharDevBacking.REQUEST_ATTRS+16));
+		assertEquals(3, request.getInt(GPIOCharDevBacking.REQUEST_NUM_LINES));
+		assertEquals(0, request.getInt(GPIOCharDevBacking.REQUEST_FD));
+	}
+
+	@Test
+	public void eventsAreMappedToInputs() {
+		ByteBuffer events = ByteBuffer.allocate(3*GPIOCharDevBacking.EVENT_SIZE).order(ByteOrder.nativeOrder());
+		int[] offsets = {27, 5, 17};
+		for (int e = 0; e < 3; e++) {
+			int base = e*GPIOCharDevBacking.EVENT_SIZE;
+			events.putLong(base, 1000+e);
+			events.putInt(base+GPIOCharDevBacking.EVENT_ID, 0==e ? GPIOLineBacking.EDGE_RISING : GPIOLineBacking.EDGE_FALLING);
+			events.putInt(base+GPIOCharDevBacking.EVENT_OFFSET, offsets[e]);
+		}
+		long[] time = new long[4];
+		int[] input = new int[4];
+		int[] kind = new int[4];
+		//line 5 was not requested and is dropped
+		assertEquals(2, GPIOCharDevBacking.decodeEvents(events, 3, new int[]{17, 27}, time, input, kind));
+		assertEquals(1000, time[0]);
+		assertEquals(1, input[0]);
+		assertEquals(GPIOLineBacking.EDGE_RISING, kind[0]);
+		assertEquals(1002, time[1]);
+		assertEquals(0, input[1]);
+		assertEquals(GPIOLineBacking.EDGE_FALLING, kind[1]);
+	}
+
+	@Test
+	public void standInQueuesEdges() {
+		TestGPIOLineBacking chip = new TestGPIOLineBacking();
+		chip.configure(new int[]{4, 9}, new int[]{12, 13}, 0x1);
+		assertTrue(chip.getOutput(12));
+
+		chip.writeOutputs(0x2, 0x3);
+		assertFalse(chip.getOutput(12));
+		assertTrue(chip.getOutput(13));
+
+		chip.setInput(9, true);
+		chip.setInput(9, true); //no change, no edge
+		chip.setInput(9, false);
+		assertEquals(0, chip.readInputs());
+
+		long[] time = new long[4];
+		int[] input = new int[4];
+		int[] kind = new int[4];
+		assertEquals(2, chip.readEdges(time, input, kind, 0));
+		assertEquals(1, input[0]);
+		assertEquals(GPIOLineBacking.EDGE_RISING, kind[0]);
+		assertEquals(GPIOLineBacking.EDGE_FALLING, kind[1]);
+		assertTrue(time[1] >= time[0]);
+		assertEquals(0, chip.readEdges(time, input, kind, 0));
+	}
+
+}
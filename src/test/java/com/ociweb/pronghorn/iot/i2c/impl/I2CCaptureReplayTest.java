@@ -0,0 +1,50 @@
+package com.ociweb.pronghorn.iot.i2c.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.ociweb.iot.hardware.impl.test.TestI2CBacking;
+
+public class I2CCaptureReplayTest {
+
+	@Test
+	public void replayServesCapturedReads() throws IOException {
+		Path file = Files.createTempFile("i2c", ".cap");
+		try {
+			TestI2CBacking device = new TestI2CBacking().configure((byte)1);
+			I2CCaptureBacking capture = new I2CCaptureBacking(device, file).configure((byte)1);
+			
+			byte[] ring = new byte[8];
+			device.setValueToRead((byte)4, new byte[]{1,2,3}, 3);
+			assertTrue(capture.writeRead((byte)4, new byte[]{9}, 1, ring, 6, 7, 3)); //wraps the ring
+			device.setValueToRead((byte)4, new byte[]{4,5,6}, 3);
+			capture.write((byte)4, new byte[]{9}, 1);
+			capture.readInto((byte)4, ring, 0, 7, 3);
+			capture.close();
+			
+			I2CReplayBacking replay = new I2CReplayBacking(file, false).configure((byte)1);
+			byte[] target = new byte[3];
+			assertTrue(replay.writeRead((byte)4, new byte[]{9}, 1, target, 0, Integer.MAX_VALUE, 3));
+			assertArrayEquals(new byte[]{1,2,3}, target);
+			assertTrue(replay.write((byte)4, new byte[]{8}, 1));
+			assertEquals(1, replay.getMismatchedWrites());
+			assertTrue(replay.readInto((byte)4, target, 0, Integer.MAX_VALUE, 3));
+			assertArrayEquals(new byte[]{4,5,6}, target);
+			
+			//the capture is used up so the device looks missing
+			assertFalse(replay.readInto((byte)4, target, 0, Integer.MAX_VALUE, 3));
+			assertEquals(-2, target[0]);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+}